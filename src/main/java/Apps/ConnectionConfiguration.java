@@ -17,9 +17,20 @@ import java.util.Scanner;
  * <p>
  * The class will create a connection from the configuration in src/main/resources if it exists. If it doesnt, it
  * creates the file from user input via stdin
+ * <p>
+ * Setting the {@value #JDBC_URL_PROPERTY} system property overrides the file, for example to point the prescribers at
+ * a local database filled with synthetic data
  */
 public final class ConnectionConfiguration {
+    /**
+     * The system property that, when set, is used as the JDBC connection string instead of the config file
+     */
+    public static final String JDBC_URL_PROPERTY = "fdb.jdbc.url";
     private static final File CONFIG_FILE = new File("src/main/resources/databaseConnectionConfig.txt");
+    private static final String CONNECTION_FAILED_MESSAGE =
+            "Please add the JDBC connection string to src/main/resources/databaseConnectionConfig.txt"
+                    + "\nThis string is of the form jdbc:sqlserver://[serverName[\\instanceName][:portNumber]][;property=value[;property=value]]";
+    private static final int CONNECTION_VALIDATION_TIMEOUT_SECONDS = 5;
 
     /**
      * For testing if the connection works
@@ -35,22 +46,79 @@ public final class ConnectionConfiguration {
      * @return a JDBC connection to a database
      */
     public static final Connection getJdbcConnection() {
-        Validate.isTrue(connectionConfigFileHasBeenCreated(), "Could not create connection config file");
         while (true) {
             try {
-                String configFileAsString = readConfigFile();
+                String configFileAsString = readConnectionString();
                 System.out.printf("Current SQL String: %s\n\n", configFileAsString);
                 System.out.println("Creating connection from file...");
                 return createJdbcConnection(configFileAsString);
             } catch (SQLException e) {
                 System.out.println("Connection failed");
-                String errorMessage = "Please add the JDBC connection string to src/main/resources/databaseConnectionConfig.txt";
-                errorMessage += "\nThis string is of the form jdbc:sqlserver://[serverName[\\instanceName][:portNumber]][;property=value[;property=value]]";
-                throw new IllegalStateException(errorMessage);
+                throw new IllegalStateException(CONNECTION_FAILED_MESSAGE);
             }
         }
     }
 
+    /**
+     * Creates a pool of JDBC connections from the file in src/main/resources. If this files does not exist, we create
+     * it via stdin
+     * <p>
+     * The configuration is read once, and every connection in the pool is opened from the same connection string
+     *
+     * @return a pool of JDBC connections to a database
+     */
+    public static final ConnectionPool getJdbcConnectionPool() {
+        String configFileAsString = readConnectionString();
+        System.out.printf("Current SQL String: %s\n\n", configFileAsString);
+        System.out.println("Creating connection pool from file...");
+        ConnectionPool connectionPool = ConnectionPool.createConnectionPool(() -> createJdbcConnection(configFileAsString));
+
+        // Open the first connection now so a bad connection string fails here rather than on the first query
+        if (connectionWorks(connectionPool))
+            return connectionPool;
+
+        System.out.println("Connection failed");
+        try {
+            connectionPool.close();
+        } catch (SQLException closeFailure) {
+            // No connection was opened, so there is nothing left to close
+        }
+        throw new IllegalStateException(CONNECTION_FAILED_MESSAGE);
+    }
+
+    /**
+     * Borrows a connection from the pool and checks that the database answers on it, then gives it back
+     *
+     * @param connectionPool the pool to check
+     * @return true if a connection could be opened and is valid
+     */
+    private static final boolean connectionWorks(ConnectionPool connectionPool) {
+        try {
+            Connection connection = connectionPool.borrowConnection();
+            try {
+                return connection.isValid(CONNECTION_VALIDATION_TIMEOUT_SECONDS);
+            } finally {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the JDBC connection string from the {@value #JDBC_URL_PROPERTY} system property if it is set, or from the
+     * config file otherwise
+     *
+     * @return the JDBC connection string
+     */
+    private static final String readConnectionString() {
+        String jdbcUrl = System.getProperty(JDBC_URL_PROPERTY);
+        if (jdbcUrl != null && !jdbcUrl.trim().isEmpty())
+            return jdbcUrl.trim();
+        Validate.isTrue(connectionConfigFileHasBeenCreated(), "Could not create connection config file");
+        return readConfigFile();
+    }
+
     /**
      * Reads the config file (src/main/resources/databaseConnectionConfig.json) for creating a JDBC connection
      *
@@ -0,0 +1,599 @@
+package Apps;
+
+import org.apache.commons.lang3.Validate;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of JDBC connections.
+ * <p>
+ * A connection is borrowed for a single query with {@link #borrowConnection()} and given back by closing it, so the
+ * usual way to use the pool is a try-with-resources block. Borrowing blocks until a connection is free or the borrow
+ * timeout runs out, which bounds the number of physical connections opened against the database.
+ * <p>
+ * Every borrowed connection is validated first. Connections that have been idle for longer than the maximum idle time
+ * are closed by a background task, and connections that are older than the maximum lifetime are closed instead of
+ * being handed out again
+ * <p>
+ * Each physical connection also keeps its own cache of prepared statements, so preparing the same SQL text again on a
+ * borrowed connection reuses the statement that is already open on the server. SQL that is built for a single query,
+ * like an IN list of ids, is prepared with {@link #prepareUncachedStatement(Connection, String)} instead, so it does not
+ * push the statements that are reused out of the cache
+ */
+public final class ConnectionPool implements AutoCloseable {
+
+    /**
+     * Creates the physical connections held by a pool
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection createConnection() throws SQLException;
+    }
+
+    private static final int DEFAULT_MAX_POOL_SIZE = 8;
+    private static final long DEFAULT_BORROW_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long DEFAULT_MAX_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final long DEFAULT_MAX_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    // One daemon thread evicts idle connections for every pool in the JVM
+    private static final ScheduledExecutorService HOUSEKEEPER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ConnectionFactory CONNECTION_FACTORY;
+    private final int MAX_POOL_SIZE;
+    private final long BORROW_TIMEOUT_MILLIS;
+    private final long MAX_IDLE_MILLIS;
+    private final long MAX_LIFETIME_MILLIS;
+    private final int STATEMENT_CACHE_SIZE;
+    private final Semaphore PERMITS;
+    private final Deque<PooledConnection> IDLE_CONNECTIONS = new ArrayDeque<>();
+    private final ScheduledFuture<?> EVICTION_TASK;
+
+    private final AtomicLong BORROW_COUNT = new AtomicLong();
+    private final AtomicLong BORROW_TIMEOUT_COUNT = new AtomicLong();
+    private final AtomicLong TOTAL_WAIT_NANOS = new AtomicLong();
+    private final AtomicLong MAX_WAIT_NANOS = new AtomicLong();
+    private final AtomicLong CREATED_COUNT = new AtomicLong();
+    private final AtomicLong FAILED_VALIDATION_COUNT = new AtomicLong();
+    private final AtomicLong IDLE_EVICTION_COUNT = new AtomicLong();
+    private final AtomicLong LIFETIME_EXPIRY_COUNT = new AtomicLong();
+    private final AtomicLong STATEMENT_HIT_COUNT = new AtomicLong();
+    private final AtomicLong STATEMENT_MISS_COUNT = new AtomicLong();
+    private final AtomicLong STATEMENT_EVICTION_COUNT = new AtomicLong();
+
+    private int openConnections;
+    private boolean closed;
+
+    private ConnectionPool(ConnectionFactory connectionFactory, int maxPoolSize, long borrowTimeoutMillis,
+                           long maxIdleMillis, long maxLifetimeMillis, int statementCacheSize) {
+        Validate.notNull(connectionFactory, "The connection factory of a pool cannot be null");
+        Validate.isTrue(maxPoolSize > 0, "A pool must allow at least one connection");
+        Validate.isTrue(borrowTimeoutMillis >= 0 && maxIdleMillis > 0 && maxLifetimeMillis > 0, "Pool timeouts must be positive");
+        Validate.isTrue(statementCacheSize > 0, "A pool must cache at least one statement per connection");
+
+        CONNECTION_FACTORY = connectionFactory;
+        MAX_POOL_SIZE = maxPoolSize;
+        BORROW_TIMEOUT_MILLIS = borrowTimeoutMillis;
+        MAX_IDLE_MILLIS = maxIdleMillis;
+        MAX_LIFETIME_MILLIS = maxLifetimeMillis;
+        STATEMENT_CACHE_SIZE = statementCacheSize;
+        PERMITS = new Semaphore(maxPoolSize, true);
+
+        long evictionPeriod = Math.max(1000, maxIdleMillis / 2);
+        EVICTION_TASK = HOUSEKEEPER.scheduleWithFixedDelay(this::evictIdleConnections, evictionPeriod, evictionPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a pool with a maximum of 8 connections and the default timeouts
+     *
+     * @param connectionFactory creates the physical connections
+     */
+    public static ConnectionPool createConnectionPool(ConnectionFactory connectionFactory) {
+        return createConnectionPool(connectionFactory, DEFAULT_MAX_POOL_SIZE);
+    }
+
+    /**
+     * Creates a pool with the default timeouts
+     *
+     * @param connectionFactory creates the physical connections
+     * @param maxPoolSize       the most connections that can be open at once
+     */
+    public static ConnectionPool createConnectionPool(ConnectionFactory connectionFactory, int maxPoolSize) {
+        return createConnectionPool(connectionFactory, maxPoolSize, DEFAULT_BORROW_TIMEOUT_MILLIS,
+                DEFAULT_MAX_IDLE_MILLIS, DEFAULT_MAX_LIFETIME_MILLIS, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a pool
+     *
+     * @param connectionFactory   creates the physical connections
+     * @param maxPoolSize         the most connections that can be open at once
+     * @param borrowTimeoutMillis how long {@link #borrowConnection()} waits for a free connection
+     * @param maxIdleMillis       how long a connection can sit unused in the pool before it is closed
+     * @param maxLifetimeMillis   how long a connection is used for before it is closed and replaced
+     * @param statementCacheSize  the most prepared statements each connection keeps open
+     */
+    public static ConnectionPool createConnectionPool(ConnectionFactory connectionFactory, int maxPoolSize,
+                                                      long borrowTimeoutMillis, long maxIdleMillis, long maxLifetimeMillis,
+                                                      int statementCacheSize) {
+        return new ConnectionPool(connectionFactory, maxPoolSize, borrowTimeoutMillis, maxIdleMillis, maxLifetimeMillis,
+                statementCacheSize);
+    }
+
+    /**
+     * Borrows a validated connection from the pool, opening a new one if none are idle
+     * <p>
+     * Closing the returned connection gives it back to the pool rather than closing the physical connection
+     *
+     * @return a connection that is only used by the caller until it is closed
+     * @throws SQLTransientConnectionException if no connection became free before the borrow timeout
+     * @throws SQLException                    if the pool is closed, a new connection could not be opened, or the
+     *                                         {@link QueryCancellation} bound to the current thread was cancelled
+     */
+    public Connection borrowConnection() throws SQLException {
+        QueryCancellation queryCancellation = QueryCancellation.current();
+        if (queryCancellation != null)
+            queryCancellation.throwIfCancelled();
+        long waitStart = System.nanoTime();
+        try {
+            if (!PERMITS.tryAcquire(BORROW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                BORROW_TIMEOUT_COUNT.incrementAndGet();
+                throw new SQLTransientConnectionException("Timed out after " + BORROW_TIMEOUT_MILLIS + "ms waiting for a pooled connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        }
+        recordWait(System.nanoTime() - waitStart);
+
+        try {
+            PooledConnection pooledConnection = takeValidConnection();
+            BORROW_COUNT.incrementAndGet();
+            return pooledConnection.lend();
+        } catch (SQLException | RuntimeException e) {
+            PERMITS.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Prepares a statement that is not kept in the statement cache of a pooled connection, for SQL whose text is built
+     * for one query and will not be prepared again. The caller closes the statement when it is done with it
+     *
+     * @param connection a connection borrowed from a pool, or any other connection
+     * @param sql        the SQL text of the statement
+     * @return a statement that is closed on the server when it is closed
+     * @throws SQLException if the statement could not be prepared
+     */
+    public static PreparedStatement prepareUncachedStatement(Connection connection, String sql) throws SQLException {
+        // Only the one argument form of prepareStatement is served from the cache
+        return connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    }
+
+    /**
+     * @return a snapshot of the counters of this pool
+     */
+    public Metrics getMetrics() {
+        int idleConnections;
+        int connectionsOpen;
+        synchronized (IDLE_CONNECTIONS) {
+            idleConnections = IDLE_CONNECTIONS.size();
+            connectionsOpen = openConnections;
+        }
+        return new Metrics(MAX_POOL_SIZE, connectionsOpen, idleConnections, BORROW_COUNT.get(), BORROW_TIMEOUT_COUNT.get(),
+                TOTAL_WAIT_NANOS.get(), MAX_WAIT_NANOS.get(), CREATED_COUNT.get(), FAILED_VALIDATION_COUNT.get(),
+                IDLE_EVICTION_COUNT.get(), LIFETIME_EXPIRY_COUNT.get(), STATEMENT_HIT_COUNT.get(), STATEMENT_MISS_COUNT.get(),
+                STATEMENT_EVICTION_COUNT.get());
+    }
+
+    /**
+     * Closes every idle connection, along with its cached statements, and stops handing out connections. Connections
+     * that are currently borrowed are closed when they are given back
+     *
+     * @throws SQLException if any idle connection could not be closed
+     */
+    @Override
+    public void close() throws SQLException {
+        List<PooledConnection> connectionsToClose;
+        synchronized (IDLE_CONNECTIONS) {
+            if (closed)
+                return;
+            closed = true;
+            connectionsToClose = new ArrayList<>(IDLE_CONNECTIONS);
+            IDLE_CONNECTIONS.clear();
+        }
+        EVICTION_TASK.cancel(false);
+
+        SQLException firstFailure = null;
+        for (PooledConnection pooledConnection : connectionsToClose) {
+            try {
+                closePhysicalConnection(pooledConnection);
+            } catch (SQLException e) {
+                if (firstFailure == null)
+                    firstFailure = e;
+            }
+        }
+        if (firstFailure != null)
+            throw firstFailure;
+    }
+
+    /**
+     * Takes the most recently used idle connection that is still valid, or opens a new one. The caller must hold a
+     * permit
+     */
+    private PooledConnection takeValidConnection() throws SQLException {
+        while (true) {
+            PooledConnection pooledConnection;
+            synchronized (IDLE_CONNECTIONS) {
+                if (closed)
+                    throw new SQLException("The connection pool has been closed");
+                pooledConnection = IDLE_CONNECTIONS.pollFirst();
+                if (pooledConnection == null) {
+                    openConnections++;
+                    break;
+                }
+            }
+
+            if (pooledConnection.hasOutlived(MAX_LIFETIME_MILLIS)) {
+                LIFETIME_EXPIRY_COUNT.incrementAndGet();
+                closeQuietly(pooledConnection);
+            } else if (!pooledConnection.isValid()) {
+                FAILED_VALIDATION_COUNT.incrementAndGet();
+                closeQuietly(pooledConnection);
+            } else {
+                return pooledConnection;
+            }
+        }
+
+        try {
+            PooledConnection pooledConnection = new PooledConnection(CONNECTION_FACTORY.createConnection());
+            CREATED_COUNT.incrementAndGet();
+            return pooledConnection;
+        } catch (SQLException | RuntimeException e) {
+            synchronized (IDLE_CONNECTIONS) {
+                openConnections--;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool
+     */
+    private void giveBack(PooledConnection pooledConnection) {
+        try {
+            boolean reusable = !pooledConnection.hasOutlived(MAX_LIFETIME_MILLIS) && pooledConnection.reset();
+            if (!reusable) {
+                if (pooledConnection.hasOutlived(MAX_LIFETIME_MILLIS))
+                    LIFETIME_EXPIRY_COUNT.incrementAndGet();
+                closeQuietly(pooledConnection);
+                return;
+            }
+            synchronized (IDLE_CONNECTIONS) {
+                if (!closed) {
+                    IDLE_CONNECTIONS.offerFirst(pooledConnection);
+                    return;
+                }
+            }
+            closeQuietly(pooledConnection);
+        } finally {
+            PERMITS.release();
+        }
+    }
+
+    /**
+     * Closes the connections that have been idle or alive for too long. Idle connections are ordered from most to
+     * least recently used, so the oldest are at the end
+     */
+    private void evictIdleConnections() {
+        List<PooledConnection> connectionsToClose = new ArrayList<>();
+        synchronized (IDLE_CONNECTIONS) {
+            Iterator<PooledConnection> idleIterator = IDLE_CONNECTIONS.iterator();
+            while (idleIterator.hasNext()) {
+                PooledConnection pooledConnection = idleIterator.next();
+                if (pooledConnection.hasBeenIdleFor(MAX_IDLE_MILLIS)) {
+                    IDLE_EVICTION_COUNT.incrementAndGet();
+                    connectionsToClose.add(pooledConnection);
+                    idleIterator.remove();
+                } else if (pooledConnection.hasOutlived(MAX_LIFETIME_MILLIS)) {
+                    LIFETIME_EXPIRY_COUNT.incrementAndGet();
+                    connectionsToClose.add(pooledConnection);
+                    idleIterator.remove();
+                }
+            }
+        }
+        connectionsToClose.forEach(this::closeQuietly);
+    }
+
+    private void recordWait(long waitNanos) {
+        TOTAL_WAIT_NANOS.addAndGet(waitNanos);
+        MAX_WAIT_NANOS.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private void closePhysicalConnection(PooledConnection pooledConnection) throws SQLException {
+        synchronized (IDLE_CONNECTIONS) {
+            openConnections--;
+        }
+        pooledConnection.STATEMENT_CACHE.close();
+        pooledConnection.PHYSICAL_CONNECTION.close();
+    }
+
+    private void closeQuietly(PooledConnection pooledConnection) {
+        try {
+            closePhysicalConnection(pooledConnection);
+        } catch (SQLException e) {
+            // The connection is being thrown away anyways
+        }
+    }
+
+    /**
+     * A physical connection along with the timestamps the pool needs to retire it
+     */
+    private final class PooledConnection {
+        private final Connection PHYSICAL_CONNECTION;
+        private final PreparedStatementCache STATEMENT_CACHE;
+        private final long CREATED_AT_MILLIS = System.currentTimeMillis();
+        private volatile long lastReturnedAtMillis = CREATED_AT_MILLIS;
+
+        private PooledConnection(Connection physicalConnection) {
+            PHYSICAL_CONNECTION = physicalConnection;
+            STATEMENT_CACHE = new PreparedStatementCache(physicalConnection, STATEMENT_CACHE_SIZE, STATEMENT_HIT_COUNT,
+                    STATEMENT_MISS_COUNT, STATEMENT_EVICTION_COUNT);
+        }
+
+        /**
+         * Wraps the physical connection in a proxy whose {@link Connection#close()} gives it back to the pool. The
+         * proxy stops working once it is closed, so a caller cannot use a connection that was lent to someone else
+         * <p>
+         * {@link Connection#prepareStatement(String)} is served from the statement cache of the connection, while the
+         * other forms of prepareStatement prepare a statement of the borrower's own. If a
+         * {@link QueryCancellation} is bound to the borrowing thread, every statement prepared is registered with it
+         * until the connection is given back
+         */
+        private Connection lend() {
+            QueryCancellation queryCancellation = QueryCancellation.current();
+            InvocationHandler handler = new InvocationHandler() {
+                private final List<Statement> CANCELLABLE_STATEMENTS = new ArrayList<>();
+                private boolean returned;
+
+                @Override
+                public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!returned) {
+                                returned = true;
+                                for (Statement statement : CANCELLABLE_STATEMENTS)
+                                    queryCancellation.unregister(statement);
+                                giveBack(PooledConnection.this);
+                            }
+                            return null;
+                        case "isClosed":
+                            return returned || PHYSICAL_CONNECTION.isClosed();
+                        case "prepareStatement":
+                            if (!returned && args.length == 1)
+                                return registerCancellable(STATEMENT_CACHE.prepareStatement((String) args[0]));
+                            return registerCancellable(invokePhysical(method, args));
+                        case "createStatement":
+                        case "prepareCall":
+                            return registerCancellable(invokePhysical(method, args));
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Pooled " + PHYSICAL_CONNECTION;
+                        default:
+                            return invokePhysical(method, args);
+                    }
+                }
+
+                private Object registerCancellable(Object statement) throws SQLException {
+                    if (queryCancellation != null) {
+                        queryCancellation.register((Statement) statement);
+                        CANCELLABLE_STATEMENTS.add((Statement) statement);
+                    }
+                    return statement;
+                }
+
+                private Object invokePhysical(Method method, Object[] args) throws Throwable {
+                    if (returned)
+                        throw new SQLException("Connection has already been given back to the pool");
+                    try {
+                        return method.invoke(PHYSICAL_CONNECTION, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+        }
+
+        private boolean isValid() {
+            try {
+                return PHYSICAL_CONNECTION.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Undoes anything a borrower may have changed about the session
+         *
+         * @return false if the connection is broken and should not go back into the pool
+         */
+        private boolean reset() {
+            try {
+                if (PHYSICAL_CONNECTION.isClosed())
+                    return false;
+                if (!PHYSICAL_CONNECTION.getAutoCommit()) {
+                    PHYSICAL_CONNECTION.rollback();
+                    PHYSICAL_CONNECTION.setAutoCommit(true);
+                }
+                PHYSICAL_CONNECTION.clearWarnings();
+                lastReturnedAtMillis = System.currentTimeMillis();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private boolean hasOutlived(long lifetimeMillis) {
+            return System.currentTimeMillis() - CREATED_AT_MILLIS >= lifetimeMillis;
+        }
+
+        private boolean hasBeenIdleFor(long idleMillis) {
+            return System.currentTimeMillis() - lastReturnedAtMillis >= idleMillis;
+        }
+    }
+
+    /**
+     * An immutable snapshot of how a pool has been used
+     */
+    public static final class Metrics {
+        private final int MAX_POOL_SIZE;
+        private final int OPEN_CONNECTIONS;
+        private final int IDLE_CONNECTIONS;
+        private final long BORROW_COUNT;
+        private final long BORROW_TIMEOUT_COUNT;
+        private final long TOTAL_WAIT_NANOS;
+        private final long MAX_WAIT_NANOS;
+        private final long CREATED_COUNT;
+        private final long FAILED_VALIDATION_COUNT;
+        private final long IDLE_EVICTION_COUNT;
+        private final long LIFETIME_EXPIRY_COUNT;
+        private final long STATEMENT_HIT_COUNT;
+        private final long STATEMENT_MISS_COUNT;
+        private final long STATEMENT_EVICTION_COUNT;
+
+        private Metrics(int maxPoolSize, int openConnections, int idleConnections, long borrowCount, long borrowTimeoutCount,
+                        long totalWaitNanos, long maxWaitNanos, long createdCount, long failedValidationCount,
+                        long idleEvictionCount, long lifetimeExpiryCount, long statementHitCount, long statementMissCount,
+                        long statementEvictionCount) {
+            MAX_POOL_SIZE = maxPoolSize;
+            OPEN_CONNECTIONS = openConnections;
+            IDLE_CONNECTIONS = idleConnections;
+            BORROW_COUNT = borrowCount;
+            BORROW_TIMEOUT_COUNT = borrowTimeoutCount;
+            TOTAL_WAIT_NANOS = totalWaitNanos;
+            MAX_WAIT_NANOS = maxWaitNanos;
+            CREATED_COUNT = createdCount;
+            FAILED_VALIDATION_COUNT = failedValidationCount;
+            IDLE_EVICTION_COUNT = idleEvictionCount;
+            LIFETIME_EXPIRY_COUNT = lifetimeExpiryCount;
+            STATEMENT_HIT_COUNT = statementHitCount;
+            STATEMENT_MISS_COUNT = statementMissCount;
+            STATEMENT_EVICTION_COUNT = statementEvictionCount;
+        }
+
+        public final int getMaxPoolSize() {
+            return MAX_POOL_SIZE;
+        }
+
+        /**
+         * @return the number of physical connections, both borrowed and idle
+         */
+        public final int getOpenConnections() {
+            return OPEN_CONNECTIONS;
+        }
+
+        public final int getIdleConnections() {
+            return IDLE_CONNECTIONS;
+        }
+
+        public final long getBorrowCount() {
+            return BORROW_COUNT;
+        }
+
+        /**
+         * @return the number of borrows that gave up waiting for a free connection
+         */
+        public final long getBorrowTimeoutCount() {
+            return BORROW_TIMEOUT_COUNT;
+        }
+
+        /**
+         * @return the average time a successful borrow waited for a free connection, in nanoseconds
+         */
+        public final long getAverageWaitNanos() {
+            return BORROW_COUNT == 0 ? 0 : TOTAL_WAIT_NANOS / BORROW_COUNT;
+        }
+
+        public final long getMaxWaitNanos() {
+            return MAX_WAIT_NANOS;
+        }
+
+        public final long getCreatedCount() {
+            return CREATED_COUNT;
+        }
+
+        public final long getFailedValidationCount() {
+            return FAILED_VALIDATION_COUNT;
+        }
+
+        public final long getIdleEvictionCount() {
+            return IDLE_EVICTION_COUNT;
+        }
+
+        public final long getLifetimeExpiryCount() {
+            return LIFETIME_EXPIRY_COUNT;
+        }
+
+        /**
+         * @return the number of times a prepared statement was reused from a connection's statement cache
+         */
+        public final long getStatementHitCount() {
+            return STATEMENT_HIT_COUNT;
+        }
+
+        public final long getStatementMissCount() {
+            return STATEMENT_MISS_COUNT;
+        }
+
+        public final long getStatementEvictionCount() {
+            return STATEMENT_EVICTION_COUNT;
+        }
+
+        public final String toString() {
+            return new StringBuilder().append("Pool -> ")
+                                      .append("open: " + getOpenConnections() + "/" + getMaxPoolSize())
+                                      .append(" idle: " + getIdleConnections())
+                                      .append(" borrows: " + getBorrowCount())
+                                      .append(" timeouts: " + getBorrowTimeoutCount())
+                                      .append(" avg wait (ns): " + getAverageWaitNanos())
+                                      .append(" max wait (ns): " + getMaxWaitNanos())
+                                      .append(" created: " + getCreatedCount())
+                                      .append(" failed validation: " + getFailedValidationCount())
+                                      .append(" idle evictions: " + getIdleEvictionCount())
+                                      .append(" lifetime expiries: " + getLifetimeExpiryCount())
+                                      .append(" statement hits: " + getStatementHitCount())
+                                      .append(" statement misses: " + getStatementMissCount())
+                                      .append(" statement evictions: " + getStatementEvictionCount())
+                                      .toString();
+        }
+    }
+}
@@ -117,7 +117,7 @@ public class PatientCli {
                         list.add(a);
                     Drug drugChosen = chooseADrug(list,input);
                     if(drugChosen != null) {
-                        patient.getDrugsPrescribed().remove(drugChosen);
+                        patient.removeDrug(drugChosen);
                         System.out.println(drugChosen.getDisplayName() + " removed from " + patient.getName());
                     }
                 }else{
@@ -142,7 +142,7 @@ public class PatientCli {
                         list.add(a);
                     Allergy allergyChosen = chooseAAllergy(list,input);
                     if(allergyChosen != null) {
-                        patient.getPatientAllergies().remove(allergyChosen);
+                        patient.removeAllergy(allergyChosen);
                         System.out.println(allergyChosen.getName() + "removed from " + patient.getName());
                     }
                 }else{
@@ -0,0 +1,502 @@
+package Apps;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+import Prescriber.Prescriber;
+import Prescriber.PrescriptionRequest;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Screens every patient in a file for the interactions between the drugs they take, their allergies and food, and
+ * writes the interactions found to a CSV file
+ * <p>
+ * Usage: PopulationScreening [patients file] [output file] [threads] [snapshot file]
+ * <p>
+ * The patients file is either a CSV file with a header line and lines of {@code patient_id,drug_dins,allergen_ids},
+ * where the DINs and allergen ids are separated by semicolons, or, if its name ends in .jsonl, one object per line like
+ * {@code {"patient_id": "P1", "dins": [2242924, 2244993], "allergen_ids": [140]}}. Each patient is checked like
+ * {@link Prescriber#reviewRegimen(Patient)} checks a regimen: every drug against the patient's allergies and food, and
+ * against the drugs after it, so each interacting pair is written once. The drugs of one patient are checked with one
+ * call to {@link Prescriber#findInteractionsBatch(List)}
+ * <p>
+ * A line that cannot be read, such as a DIN that is not a number or a line with no patient id, is written to a
+ * .rejects file next to the output with its line number and the reason, and the other patients are still screened
+ * <p>
+ * Patients are read as the workers take them, and no more than a few per thread are waiting at once, so a file of any
+ * size is screened in constant memory. Results are written in the order of the file, and every
+ * {@value #CHECKPOINT_INTERVAL} patients the number of patients written and the lengths of the output and rejects files
+ * are saved to a checkpoint file next to the output. Running again with the same files resumes after the last
+ * checkpoint
+ */
+public final class PopulationScreening {
+
+    private static final int CHECKPOINT_INTERVAL = 1000;
+    private static final int PATIENTS_WAITING_PER_THREAD = 4;
+    private static final String OUTPUT_HEADER = "patient_id,din,interaction_type,severity,interaction_description";
+    private static final Pattern JSON_PATIENT_ID = Pattern.compile("\"patient_id\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern JSON_DINS = Pattern.compile("\"dins\"\\s*:\\s*\\[([^]]*)]");
+    private static final Pattern JSON_ALLERGEN_IDS = Pattern.compile("\"allergen_ids\"\\s*:\\s*\\[([^]]*)]");
+
+    private PopulationScreening() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path patientsFile = Paths.get(args.length > 0 ? args[0] : "patients.csv");
+        Path outputFile = Paths.get(args.length > 1 ? args[1] : "interactions.csv");
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Prescriber prescriber = args.length > 3 ? Prescriber.createFdbPrescriberFromSnapshotFile(Paths.get(args[3]))
+                : Prescriber.createFdbPrescriberWithCatalog();
+        try {
+            screenPopulation(prescriber, patientsFile, outputFile, threads);
+        } finally {
+            prescriber.closePrescriber();
+        }
+    }
+
+    /**
+     * Screens the patients of a file, resuming from the checkpoint of the output file if there is one
+     *
+     * @param prescriber   prescriber that finds the interactions
+     * @param patientsFile CSV or JSONL file of patients
+     * @param outputFile   CSV file the interactions are written to
+     * @param threads      the number of patients screened at once
+     */
+    static void screenPopulation(Prescriber prescriber, Path patientsFile, Path outputFile, int threads)
+            throws IOException, InterruptedException {
+        Path checkpointFile = Paths.get(outputFile + ".checkpoint");
+        Path rejectsFile = Paths.get(outputFile + ".rejects");
+        Checkpoint checkpoint = readCheckpoint(checkpointFile);
+        if (checkpoint.PATIENTS_WRITTEN > 0)
+            System.out.printf("Resuming after %d patients\n", checkpoint.PATIENTS_WRITTEN);
+
+        long start = System.nanoTime();
+        Map<Integer, Allergy> allergiesById = new HashMap<>();
+        for (Allergy allergy : prescriber.queryAllergies(""))
+            allergiesById.put(allergy.getId(), allergy);
+        System.out.printf("Loaded %d allergies in %d ms\n", allergiesById.size(), (System.nanoTime() - start) / 1_000_000);
+
+        boolean jsonLines = patientsFile.getFileName().toString().endsWith(".jsonl");
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try (BufferedReader patients = Files.newBufferedReader(patientsFile, StandardCharsets.UTF_8);
+             FileChannel output = openAtCheckpoint(outputFile, checkpoint.OUTPUT_LENGTH);
+             FileChannel rejects = openAtCheckpoint(rejectsFile, checkpoint.REJECTS_LENGTH)) {
+            ScreeningOutput screeningOutput = new ScreeningOutput(output, rejects, checkpointFile);
+            if (checkpoint.OUTPUT_LENGTH == 0) {
+                screeningOutput.INTERACTIONS_WRITER.write(OUTPUT_HEADER);
+                screeningOutput.INTERACTIONS_WRITER.newLine();
+            }
+
+            ScreeningProgress progress = new ScreeningProgress(checkpoint.PATIENTS_WRITTEN);
+            ArrayDeque<Future<Screening>> waiting = new ArrayDeque<>();
+            long patientsRead = 0;
+            long lineNumber = 0;
+            String line;
+            if (!jsonLines) {
+                patients.readLine();
+                lineNumber++;
+            }
+            while ((line = patients.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty() || patientsRead++ < checkpoint.PATIENTS_WRITTEN)
+                    continue;
+                String patientLine = line;
+                long patientLineNumber = lineNumber;
+                waiting.add(workers.submit(() -> screenPatient(prescriber, patientLine, patientLineNumber, jsonLines, allergiesById)));
+                // Waiting for the oldest patient keeps the reader from running ahead of the workers
+                while (waiting.size() >= threads * PATIENTS_WAITING_PER_THREAD || (!waiting.isEmpty() && waiting.peek().isDone()))
+                    writeScreening(waiting.remove(), screeningOutput, progress);
+            }
+            while (!waiting.isEmpty())
+                writeScreening(waiting.remove(), screeningOutput, progress);
+            screeningOutput.writeCheckpoint(progress.patientsWritten);
+            progress.printReport(System.nanoTime() - start);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static Screening screenPatient(Prescriber prescriber, String line, long lineNumber, boolean jsonLines,
+                                           Map<Integer, Allergy> allergiesById) {
+        long start = System.nanoTime();
+        PatientLine patientLine;
+        try {
+            patientLine = parsePatientLine(line, jsonLines);
+        } catch (IllegalArgumentException e) {
+            return Screening.createRejectedScreening(lineNumber + "\t" + e.getMessage() + "\t" + line + System.lineSeparator(),
+                    System.nanoTime() - start);
+        }
+
+        List<Drug> drugsFound = prescriber.getDrugsByDin(patientLine.DINS);
+        int unknownIds = patientLine.DINS.length - drugsFound.size();
+        Patient screenedPatient = new Patient();
+        for (Drug drug : drugsFound)
+            screenedPatient.addDrug(drug);
+        List<Allergy> allergies = new ArrayList<>();
+        for (int allergenId : patientLine.ALLERGEN_IDS) {
+            Allergy allergy = allergiesById.get(allergenId);
+            if (allergy == null)
+                unknownIds++;
+            else
+                allergies.add(allergy);
+        }
+
+        // Each drug is checked against the allergies and the drugs after it, so a pair is only reported once
+        List<Drug> drugsPrescribed = new ArrayList<>(screenedPatient.getDrugsPrescribed());
+        List<PrescriptionRequest> requests = new ArrayList<>(drugsPrescribed.size());
+        for (int i = 0; i < drugsPrescribed.size(); i++) {
+            Patient patient = new Patient();
+            patient.setName(patientLine.PATIENT_ID);
+            for (Allergy allergy : allergies)
+                patient.addAllergy(allergy);
+            for (Drug laterDrug : drugsPrescribed.subList(i + 1, drugsPrescribed.size()))
+                patient.addDrug(laterDrug);
+            requests.add(PrescriptionRequest.createPrescriptionRequest(drugsPrescribed.get(i), patient));
+        }
+
+        StringBuilder lines = new StringBuilder();
+        int interactions = 0;
+        for (List<DrugInteraction> interactionsOfRequest : prescriber.findInteractionsBatch(requests)) {
+            for (DrugInteraction interaction : interactionsOfRequest) {
+                lines.append(quoteCsv(patientLine.PATIENT_ID)).append(',')
+                        .append(interaction.getDrugBeingPrescribed().getId()).append(',')
+                        .append(interaction.getInteractionType()).append(',')
+                        .append(interaction.getSeverity()).append(',')
+                        .append(quoteCsv(interaction.getInteractionDescription())).append(System.lineSeparator());
+                interactions++;
+            }
+        }
+        return Screening.createScreening(lines.toString(), interactions, unknownIds, System.nanoTime() - start);
+    }
+
+    private static void writeScreening(Future<Screening> screening, ScreeningOutput screeningOutput,
+                                       ScreeningProgress progress) throws IOException, InterruptedException {
+        Screening patientScreening;
+        try {
+            patientScreening = screening.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not screen patient " + (progress.patientsWritten + 1)
+                    + ", rerun to resume from the last checkpoint", e.getCause());
+        }
+        if (patientScreening.REJECTION != null)
+            screeningOutput.REJECTS_WRITER.write(patientScreening.REJECTION);
+        else
+            screeningOutput.INTERACTIONS_WRITER.write(patientScreening.LINES);
+        progress.add(patientScreening);
+        if (progress.patientsWritten % CHECKPOINT_INTERVAL == 0) {
+            screeningOutput.writeCheckpoint(progress.patientsWritten);
+            progress.printProgress();
+        }
+    }
+
+    /**
+     * Reads one line of the patients file
+     *
+     * @param line      a line of the patients file that is not blank
+     * @param jsonLines whether the line is a JSON object rather than CSV
+     * @return the patient id, DINs and allergen ids of the line
+     * @throws IllegalArgumentException if the line has no patient id, the wrong number of fields, or an id that is not
+     *                                  a number
+     */
+    static PatientLine parsePatientLine(String line, boolean jsonLines) {
+        String patientId;
+        int[] dins;
+        int[] allergenIds;
+        if (jsonLines) {
+            patientId = findJsonValue(JSON_PATIENT_ID, line).replace("\\\"", "\"").replace("\\\\", "\\");
+            dins = parseIds(findJsonValue(JSON_DINS, line), ",");
+            allergenIds = parseIds(findJsonValue(JSON_ALLERGEN_IDS, line), ",");
+        } else {
+            List<String> fields = splitCsvLine(line);
+            if (fields.size() != 3)
+                throw new IllegalArgumentException("Expected patient_id,drug_dins,allergen_ids");
+            patientId = fields.get(0).trim();
+            dins = parseIds(fields.get(1), ";");
+            allergenIds = parseIds(fields.get(2), ";");
+        }
+        if (patientId.isEmpty())
+            throw new IllegalArgumentException("Missing patient_id");
+        return new PatientLine(patientId, dins, allergenIds);
+    }
+
+    /**
+     * Splits a CSV line into its fields, where a field in double quotes may hold commas and doubled quotes
+     *
+     * @throws IllegalArgumentException if a quote is never closed
+     */
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char character = line.charAt(i);
+            if (quoted && character == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                field.append('"');
+                i++;
+            } else if (character == '"') {
+                quoted = !quoted;
+            } else if (character == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(character);
+            }
+        }
+        if (quoted)
+            throw new IllegalArgumentException("Unclosed quote");
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * @return the number of patients written and the lengths of the output and rejects files at the last checkpoint,
+     * or zeros if there is no checkpoint
+     */
+    static Checkpoint readCheckpoint(Path checkpointFile) throws IOException {
+        if (!Files.exists(checkpointFile))
+            return new Checkpoint(0, 0, 0);
+        String[] fields = new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8).trim().split(" ");
+        // Checkpoints written before there was a rejects file only have the first two fields
+        return new Checkpoint(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                fields.length > 2 ? Long.parseLong(fields[2]) : 0);
+    }
+
+    /**
+     * Opens a file to write after a checkpoint, where anything written after the checkpoint is cut off to be written
+     * again
+     *
+     * @param file   the file to open, which is created if it does not exist
+     * @param length the length of the file at the checkpoint
+     */
+    static FileChannel openAtCheckpoint(Path file, long length) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(length);
+        channel.position(length);
+        return channel;
+    }
+
+    private static String findJsonValue(Pattern field, String line) {
+        Matcher matcher = field.matcher(line);
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    /**
+     * @throws IllegalArgumentException if an id is not a number
+     */
+    private static int[] parseIds(String ids, String separator) {
+        return Arrays.stream(ids.split(separator)).map(String::trim).filter(id -> !id.isEmpty())
+                .mapToInt(id -> {
+                    try {
+                        return Integer.parseInt(id);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Not an id: " + id);
+                    }
+                }).toArray();
+    }
+
+    private static String quoteCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+            return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * The patient id, DINs and allergen ids of one line of the patients file
+     */
+    static final class PatientLine {
+        final String PATIENT_ID;
+        final int[] DINS;
+        final int[] ALLERGEN_IDS;
+
+        private PatientLine(String patientId, int[] dins, int[] allergenIds) {
+            PATIENT_ID = patientId;
+            DINS = dins;
+            ALLERGEN_IDS = allergenIds;
+        }
+    }
+
+    /**
+     * How far a previous run got: the number of patients written, and the lengths of the output and rejects files
+     */
+    static final class Checkpoint {
+        final long PATIENTS_WRITTEN;
+        final long OUTPUT_LENGTH;
+        final long REJECTS_LENGTH;
+
+        private Checkpoint(long patientsWritten, long outputLength, long rejectsLength) {
+            PATIENTS_WRITTEN = patientsWritten;
+            OUTPUT_LENGTH = outputLength;
+            REJECTS_LENGTH = rejectsLength;
+        }
+    }
+
+    /**
+     * The output and rejects files of a run, and the checkpoint file that says how much of them is complete
+     */
+    private static final class ScreeningOutput {
+        private final FileChannel OUTPUT;
+        private final FileChannel REJECTS;
+        private final BufferedWriter INTERACTIONS_WRITER;
+        private final BufferedWriter REJECTS_WRITER;
+        private final Path CHECKPOINT_FILE;
+
+        private ScreeningOutput(FileChannel output, FileChannel rejects, Path checkpointFile) {
+            OUTPUT = output;
+            REJECTS = rejects;
+            INTERACTIONS_WRITER = new BufferedWriter(Channels.newWriter(output, StandardCharsets.UTF_8.newEncoder(), -1));
+            REJECTS_WRITER = new BufferedWriter(Channels.newWriter(rejects, StandardCharsets.UTF_8.newEncoder(), -1));
+            CHECKPOINT_FILE = checkpointFile;
+        }
+
+        /**
+         * Saves that the patients written so far are complete, once everything written for them is on disk
+         */
+        private void writeCheckpoint(long patientsWritten) throws IOException {
+            INTERACTIONS_WRITER.flush();
+            REJECTS_WRITER.flush();
+            OUTPUT.force(false);
+            REJECTS.force(false);
+            Path temporaryFile = Paths.get(CHECKPOINT_FILE + ".tmp");
+            Files.write(temporaryFile, (patientsWritten + " " + OUTPUT.position() + " " + REJECTS.position())
+                    .getBytes(StandardCharsets.UTF_8));
+            Files.move(temporaryFile, CHECKPOINT_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * The interactions of one patient, formatted as lines of the output, or the reason the patient's line was rejected
+     */
+    private static final class Screening {
+        private final String LINES;
+        private final String REJECTION;
+        private final int INTERACTIONS;
+        private final int UNKNOWN_IDS;
+        private final long LATENCY;
+
+        private Screening(String lines, String rejection, int interactions, int unknownIds, long latency) {
+            LINES = lines;
+            REJECTION = rejection;
+            INTERACTIONS = interactions;
+            UNKNOWN_IDS = unknownIds;
+            LATENCY = latency;
+        }
+
+        private static Screening createScreening(String lines, int interactions, int unknownIds, long latency) {
+            return new Screening(lines, null, interactions, unknownIds, latency);
+        }
+
+        private static Screening createRejectedScreening(String rejection, long latency) {
+            return new Screening("", rejection, 0, 0, latency);
+        }
+    }
+
+    /**
+     * Counts and latencies of the patients written in this run
+     */
+    private static final class ScreeningProgress {
+        private final long START = System.nanoTime();
+        private final long PATIENTS_BEFORE_RUN;
+        private final LatencyHistogram LATENCIES = new LatencyHistogram();
+        private long patientsWritten;
+        private long interactions;
+        private long unknownIds;
+        private long rejectedPatients;
+
+        private ScreeningProgress(long patientsBeforeRun) {
+            PATIENTS_BEFORE_RUN = patientsBeforeRun;
+            patientsWritten = patientsBeforeRun;
+        }
+
+        private void add(Screening screening) {
+            patientsWritten++;
+            interactions += screening.INTERACTIONS;
+            unknownIds += screening.UNKNOWN_IDS;
+            if (screening.REJECTION != null)
+                rejectedPatients++;
+            LATENCIES.add(screening.LATENCY);
+        }
+
+        private double patientsPerSecond() {
+            return (patientsWritten - PATIENTS_BEFORE_RUN) * 1e9 / Math.max(1, System.nanoTime() - START);
+        }
+
+        private void printProgress() {
+            System.out.printf("Screened %d patients (%.0f/s)\n", patientsWritten, patientsPerSecond());
+        }
+
+        private void printReport(long elapsed) {
+            System.out.printf("Screened %d patients in %d ms: %d interactions, %d unknown DINs or allergen ids, %d rejected lines\n",
+                    patientsWritten - PATIENTS_BEFORE_RUN, elapsed / 1_000_000, interactions, unknownIds, rejectedPatients);
+            System.out.printf("Throughput: %.0f patients/s\n", patientsPerSecond());
+            System.out.printf("Latency per patient: p50 %.2f ms, p95 %.2f ms, p99 %.2f ms\n",
+                    LATENCIES.percentile(50) / 1e6, LATENCIES.percentile(95) / 1e6, LATENCIES.percentile(99) / 1e6);
+        }
+    }
+
+    /**
+     * Counts latencies in buckets that are each 2% wider than the one before, so percentiles are kept to within 2% in
+     * the same memory however many patients are screened
+     */
+    static final class LatencyHistogram {
+        private static final double BUCKET_GROWTH = 1.02;
+        private static final double LOG_BUCKET_GROWTH = Math.log(BUCKET_GROWTH);
+        // Enough buckets for latencies of over an hour, in nanoseconds
+        private final long[] COUNTS = new long[1500];
+        private long count;
+
+        void add(long latencyNanos) {
+            COUNTS[bucketOf(latencyNanos)]++;
+            count++;
+        }
+
+        /**
+         * @return the nearest rank percentile, as the upper bound of the bucket it is in, or 0 if nothing was added
+         */
+        long percentile(int percent) {
+            if (count == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(percent / 100.0 * count));
+            long counted = 0;
+            for (int bucket = 0; bucket < COUNTS.length; bucket++) {
+                counted += COUNTS[bucket];
+                if (counted >= rank)
+                    return upperBoundOf(bucket);
+            }
+            return upperBoundOf(COUNTS.length - 1);
+        }
+
+        private int bucketOf(long latencyNanos) {
+            if (latencyNanos <= 1)
+                return 0;
+            return (int) Math.min(COUNTS.length - 1, Math.ceil(Math.log(latencyNanos) / LOG_BUCKET_GROWTH));
+        }
+
+        private static long upperBoundOf(int bucket) {
+            return (long) Math.ceil(Math.pow(BUCKET_GROWTH, bucket));
+        }
+    }
+}
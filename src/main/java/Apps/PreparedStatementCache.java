@@ -0,0 +1,133 @@
+package Apps;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The prepared statements of one physical connection, keyed by their SQL text
+ * <p>
+ * The statements handed out are proxies whose {@link PreparedStatement#close()} only clears their parameters, so the
+ * same server-side handle is reused the next time the same SQL is prepared. The physical statement is only closed when
+ * it is the least recently used one and the cache is full, or when the whole cache is closed along with its connection
+ * <p>
+ * A cache belongs to a single connection, and a pooled connection is only used by one borrower at a time, so the cache
+ * does not need to be thread safe
+ */
+final class PreparedStatementCache {
+
+    private final Connection PHYSICAL_CONNECTION;
+    private final Map<String, CachedStatement> STATEMENTS;
+    private final AtomicLong HIT_COUNT;
+    private final AtomicLong MISS_COUNT;
+    private final AtomicLong EVICTION_COUNT;
+
+    /**
+     * @param physicalConnection the connection statements are prepared on
+     * @param maxSize            the most statements kept open at once
+     * @param hitCount           incremented whenever a cached statement is reused
+     * @param missCount          incremented whenever a statement has to be prepared
+     * @param evictionCount      incremented whenever a statement is closed to make room for another
+     */
+    PreparedStatementCache(Connection physicalConnection, int maxSize, AtomicLong hitCount, AtomicLong missCount,
+                           AtomicLong evictionCount) {
+        PHYSICAL_CONNECTION = physicalConnection;
+        HIT_COUNT = hitCount;
+        MISS_COUNT = missCount;
+        EVICTION_COUNT = evictionCount;
+        STATEMENTS = new LinkedHashMap<String, CachedStatement>(maxSize + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= maxSize)
+                    return false;
+                EVICTION_COUNT.incrementAndGet();
+                eldest.getValue().closeQuietly();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached statement for some SQL, preparing it if it is not cached
+     *
+     * @param sql the SQL text of the statement
+     * @return a statement whose close method leaves the physical statement open for the next caller
+     * @throws SQLException if the statement could not be prepared
+     */
+    PreparedStatement prepareStatement(String sql) throws SQLException {
+        CachedStatement cachedStatement = STATEMENTS.get(sql);
+        if (cachedStatement != null && !cachedStatement.PHYSICAL_STATEMENT.isClosed()) {
+            HIT_COUNT.incrementAndGet();
+            return cachedStatement.REUSABLE_STATEMENT;
+        }
+
+        MISS_COUNT.incrementAndGet();
+        cachedStatement = new CachedStatement(PHYSICAL_CONNECTION.prepareStatement(sql));
+        STATEMENTS.put(sql, cachedStatement);
+        return cachedStatement.REUSABLE_STATEMENT;
+    }
+
+    /**
+     * Closes every cached statement
+     */
+    void close() {
+        List<CachedStatement> statementsToClose = new ArrayList<>(STATEMENTS.values());
+        STATEMENTS.clear();
+        statementsToClose.forEach(CachedStatement::closeQuietly);
+    }
+
+    /**
+     * A physical statement along with the proxy that is handed out in its place
+     */
+    private static final class CachedStatement {
+        private final PreparedStatement PHYSICAL_STATEMENT;
+        private final PreparedStatement REUSABLE_STATEMENT;
+
+        private CachedStatement(PreparedStatement physicalStatement) {
+            PHYSICAL_STATEMENT = physicalStatement;
+            REUSABLE_STATEMENT = createReusableStatement(physicalStatement);
+        }
+
+        /**
+         * Wraps a statement in a proxy that is cleared, not closed, when its user closes it
+         */
+        private static PreparedStatement createReusableStatement(PreparedStatement physicalStatement) {
+            InvocationHandler handler = (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "close":
+                        if (!physicalStatement.isClosed())
+                            physicalStatement.clearParameters();
+                        return null;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        try {
+                            return method.invoke(physicalStatement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            };
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, handler);
+        }
+
+        private void closeQuietly() {
+            try {
+                PHYSICAL_STATEMENT.close();
+            } catch (SQLException e) {
+                // The statement is being thrown away anyways
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package Apps;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Lets one thread cancel the queries another thread is running through a {@link ConnectionPool}
+ * <p>
+ * A cancellation is bound to the thread that runs the queries. Every statement prepared on a connection that thread
+ * borrows is then registered with the cancellation until the connection is given back, and {@link #cancel()} calls
+ * {@link Statement#cancel()} on each of them. The query that was running fails with an {@link SQLException}, and any
+ * connection the thread borrows afterwards fails right away, so the caller gives up at its next query
+ */
+public final class QueryCancellation {
+
+    /**
+     * The SQL state of an operation that was cancelled
+     */
+    public static final String CANCELLED_SQL_STATE = "HY008";
+
+    private static final ThreadLocal<QueryCancellation> CURRENT = new ThreadLocal<>();
+
+    private final Set<Statement> RUNNING_STATEMENTS = new HashSet<>();
+    private boolean cancelled;
+
+    private QueryCancellation() {
+    }
+
+    public static QueryCancellation createQueryCancellation() {
+        return new QueryCancellation();
+    }
+
+    /**
+     * @return the cancellation bound to the current thread, or null if there is none
+     */
+    static QueryCancellation current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds this cancellation to the current thread until the returned binding is closed
+     *
+     * @return the binding, which puts back whatever was bound before when closed
+     */
+    public Binding bindToCurrentThread() {
+        Binding binding = new Binding(CURRENT.get());
+        CURRENT.set(this);
+        return binding;
+    }
+
+    /**
+     * Unbinds whatever cancellation is bound to the current thread until the returned binding is closed, for work other
+     * threads are waiting on that must not be cancelled along with the queries of the thread that happens to run it
+     *
+     * @return the binding, which puts back whatever was bound before when closed
+     */
+    public static Binding unbindFromCurrentThread() {
+        Binding binding = new Binding(CURRENT.get());
+        CURRENT.remove();
+        return binding;
+    }
+
+    /**
+     * Cancels every statement currently running for this cancellation and every one registered later
+     */
+    public void cancel() {
+        synchronized (RUNNING_STATEMENTS) {
+            cancelled = true;
+            for (Statement statement : RUNNING_STATEMENTS) {
+                try {
+                    statement.cancel();
+                } catch (SQLException e) {
+                    // The statement may already have finished, either way there is nothing left to stop
+                }
+            }
+            RUNNING_STATEMENTS.clear();
+        }
+    }
+
+    public boolean isCancelled() {
+        synchronized (RUNNING_STATEMENTS) {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Fails if this was cancelled, so that no more work is started for it
+     *
+     * @throws SQLException with the {@link #CANCELLED_SQL_STATE} if this was cancelled
+     */
+    void throwIfCancelled() throws SQLException {
+        if (isCancelled())
+            throw new SQLException("Query was cancelled", CANCELLED_SQL_STATE);
+    }
+
+    /**
+     * Registers a statement to cancel
+     *
+     * @throws SQLException with the {@link #CANCELLED_SQL_STATE} if this was already cancelled
+     */
+    void register(Statement statement) throws SQLException {
+        synchronized (RUNNING_STATEMENTS) {
+            throwIfCancelled();
+            RUNNING_STATEMENTS.add(statement);
+        }
+    }
+
+    /**
+     * Stops cancelling a statement, once the connection it was prepared on has been given back and the statement may
+     * be reused by someone else
+     */
+    void unregister(Statement statement) {
+        synchronized (RUNNING_STATEMENTS) {
+            RUNNING_STATEMENTS.remove(statement);
+        }
+    }
+
+    /**
+     * Binds a cancellation to a thread for as long as it is open
+     */
+    public static final class Binding implements AutoCloseable {
+        private final QueryCancellation PREVIOUS;
+        private boolean closed;
+
+        private Binding(QueryCancellation previous) {
+            PREVIOUS = previous;
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+            closed = true;
+            if (PREVIOUS == null)
+                CURRENT.remove();
+            else
+                CURRENT.set(PREVIOUS);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package Apps;
+
+import Prescriber.FdbSnapshotFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Exports the FDB reference data of the database in the connection configuration to a snapshot file, for prescribers
+ * that run without a database
+ * <p>
+ * Usage: SnapshotFileExporter [snapshot file], where the file defaults to fdb.snapshot
+ */
+public class SnapshotFileExporter {
+
+    public static void main(String[] args) throws IOException {
+        Path snapshotFile = Paths.get(args.length > 0 ? args[0] : "fdb.snapshot");
+        long start = System.nanoTime();
+        FdbSnapshotFile.exportFdbSnapshotFile(snapshotFile);
+        System.out.printf("Exported %s (%d bytes) in %d ms\n", snapshotFile.toAbsolutePath(), Files.size(snapshotFile),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
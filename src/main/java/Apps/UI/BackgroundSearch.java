@@ -0,0 +1,179 @@
+package Apps.UI;
+
+import Apps.QueryCancellation;
+import Info.Displayable;
+
+import javax.swing.AbstractListModel;
+import javax.swing.ListModel;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Runs the searches of a dialog on a background thread so typing never waits on the database
+ * <p>
+ * A search only starts once the user stops typing for a moment. Starting a search cancels the one before it, including
+ * the query it is running, and results are handed to the Event Dispatch Thread as they are found, where Swing batches
+ * them into a few list updates per frame
+ * <p>
+ * Every method must be called on the Event Dispatch Thread
+ *
+ * @param <T> the type of what is searched
+ */
+final class BackgroundSearch<T extends Displayable> {
+
+    private static final int DEBOUNCE_MILLIS = 150;
+
+    private final Function<String, List<T>> SEARCH;
+    private final ResultListModel RESULTS = new ResultListModel();
+    private final Timer DEBOUNCE_TIMER;
+    private String pattern;
+    private SearchWorker currentSearch;
+
+    /**
+     * @param search finds everything matching a pattern, and is run off the Event Dispatch Thread
+     */
+    BackgroundSearch(Function<String, List<T>> search) {
+        SEARCH = search;
+        DEBOUNCE_TIMER = new Timer(DEBOUNCE_MILLIS, event -> startSearch());
+        DEBOUNCE_TIMER.setRepeats(false);
+    }
+
+    /**
+     * @return the display names of the results found so far, to show in a list
+     */
+    ListModel<String> getListModel() {
+        return RESULTS;
+    }
+
+    /**
+     * @return the results found so far, in the same order as the list model
+     */
+    List<T> getResults() {
+        return Collections.unmodifiableList(RESULTS.RESULTS);
+    }
+
+    /**
+     * Searches for a pattern once the user stops typing, unless it is the pattern already searched for
+     */
+    void search(String pattern) {
+        if (pattern.equals(this.pattern))
+            return;
+        this.pattern = pattern;
+        DEBOUNCE_TIMER.restart();
+    }
+
+    /**
+     * Stops any search that is waiting or running, for example when the dialog is closed
+     */
+    void cancel() {
+        DEBOUNCE_TIMER.stop();
+        if (currentSearch != null) {
+            currentSearch.stop();
+            currentSearch = null;
+        }
+    }
+
+    private void startSearch() {
+        cancel();
+        RESULTS.clear();
+        currentSearch = new SearchWorker(pattern);
+        currentSearch.execute();
+    }
+
+    /**
+     * Runs one search and publishes what it finds, unless it has been superseded
+     */
+    private final class SearchWorker extends SwingWorker<Void, T> {
+        private final String PATTERN;
+        private final QueryCancellation QUERY_CANCELLATION = QueryCancellation.createQueryCancellation();
+
+        private SearchWorker(String pattern) {
+            PATTERN = pattern;
+        }
+
+        @Override
+        @SuppressWarnings("try")
+        protected Void doInBackground() {
+            List<T> results;
+            // The binding is never used in the block, it only has to stay open while the search runs
+            try (QueryCancellation.Binding binding = QUERY_CANCELLATION.bindToCurrentThread()) {
+                results = SEARCH.apply(PATTERN);
+            } catch (RuntimeException e) {
+                // A cancelled query fails, which is expected once a newer search has started
+                if (QUERY_CANCELLATION.isCancelled())
+                    return null;
+                throw e;
+            }
+            for (T result : results) {
+                if (isCancelled())
+                    break;
+                publish(result);
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<T> results) {
+            if (currentSearch == this)
+                RESULTS.addAll(results);
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled())
+                return;
+            try {
+                get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Searching for \"" + PATTERN + "\" failed", e.getCause());
+            }
+        }
+
+        private void stop() {
+            cancel(false);
+            QUERY_CANCELLATION.cancel();
+        }
+    }
+
+    /**
+     * The results of the current search, which only tells the list about each batch of results once
+     */
+    private final class ResultListModel extends AbstractListModel<String> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> RESULTS = new ArrayList<>();
+
+        @Override
+        public int getSize() {
+            return RESULTS.size();
+        }
+
+        @Override
+        public String getElementAt(int index) {
+            return RESULTS.get(index).getDisplayName();
+        }
+
+        private void addAll(List<T> results) {
+            if (results.isEmpty())
+                return;
+            int firstIndex = RESULTS.size();
+            RESULTS.addAll(results);
+            fireIntervalAdded(this, firstIndex, RESULTS.size() - 1);
+        }
+
+        private void clear() {
+            if (RESULTS.isEmpty())
+                return;
+            int lastIndex = RESULTS.size() - 1;
+            RESULTS.clear();
+            fireIntervalRemoved(this, 0, lastIndex);
+        }
+    }
+}
@@ -20,9 +20,10 @@ public class newJDialog extends javax.swing.JDialog {
     public static final int ALLERGIES = 1;
 
     private final int flag;
-    private static FdbPrescriberUnoptimized garbage;
+    private static Prescriber garbage;
     private final Patient patient;
     private List<? extends Displayable > list = new ArrayList<>();
+    private final BackgroundSearch<? extends Displayable> search;
     private Frame parent;
     /**
      * Creates new form JDialog
@@ -30,11 +31,19 @@ public class newJDialog extends javax.swing.JDialog {
     public newJDialog(java.awt.Frame parent, boolean modal, Patient patient, int flag) {
         super(parent, modal);
         //This is the most garbage this ever, don't put static in interfaces
-        if (garbage==null){ this.garbage = (FdbPrescriberUnoptimized) Prescriber.createFdbPrescriberUnoptimized();}
+        if (garbage==null){ this.garbage = Prescriber.createFdbPrescriberUnoptimized();}
+        //Searches run in the background, so typing never waits on a query
+        if (flag == DRUGS){
+            this.search = new BackgroundSearch<>(TypeaheadSession.createDrugTypeaheadSession(garbage)::search);
+        }
+        else{
+            this.search = new BackgroundSearch<>(TypeaheadSession.createAllergyTypeaheadSession(garbage)::search);
+        }
         this.parent =parent;
         this.flag = flag;
         this.patient = patient;
         initComponents();
+        jList1.setModel(search.getListModel());
     }
 
     /**
@@ -114,6 +123,8 @@ public class newJDialog extends javax.swing.JDialog {
     }//GEN-LAST:event_jTextFieldActionPerformed
 
     private void jButton1ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton1ActionPerformed
+        search.cancel();
+        list = search.getResults();
         switch (flag){
             case DRUGS:{
                 for(int i: jList1.getSelectedIndices()){
@@ -145,19 +156,14 @@ public class newJDialog extends javax.swing.JDialog {
     }//GEN-LAST:event_jTextFieldKeyTyped
 
     private void jTextField1KeyReleased(java.awt.event.KeyEvent evt) {//GEN-FIRST:event_jTextField1KeyReleased
-        list = new ArrayList<>();
-        switch (flag){
-            case DRUGS:{
-                list = garbage.queryDrugs(jTextField1.getText());
-                break;
-            }
-            case ALLERGIES:{
-                list = garbage.queryAllergies(jTextField1.getText());
-                break;
-            }
-        }
-        jList1.setListData(list.stream().map(Displayable::getDisplayName).toArray(String[]::new));
+        search.search(jTextField1.getText());
     }//GEN-LAST:event_jTextField1KeyReleased
+
+    @Override
+    public void dispose() {
+        search.cancel();
+        super.dispose();
+    }
     
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
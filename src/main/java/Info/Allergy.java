@@ -1,6 +1,12 @@
 package Info;
 
+import java.util.Objects;
+
 public final class Allergy implements Displayable, Comparable<Allergy> {
+
+    // The allergies in use, so every query returning the same allergy returns the same instance
+    private static final WeakIdRegistry<Integer, Allergy> ALLERGIES = new WeakIdRegistry<>();
+
     private final int ID;
     private final String NAME;
 
@@ -9,8 +15,13 @@ public final class Allergy implements Displayable, Comparable<Allergy> {
         NAME = name;
     }
 
+    /**
+     * Returns the allergy with an allergen group and name, which is the same instance for as long as any part of the
+     * application still refers to it
+     */
     public static final Allergy createFdbAllergy(int damAllergenCode, String damAllergenName) {
-        return new Allergy(damAllergenCode, damAllergenName);
+        return ALLERGIES.intern(damAllergenCode, allergy -> Objects.equals(allergy.NAME, damAllergenName),
+                () -> new Allergy(damAllergenCode, damAllergenName));
     }
 
     public final int getId() {
@@ -1,7 +1,13 @@
 package Info;
 
+import java.util.Objects;
+
 public final class Drug implements Displayable, Comparable<Drug> {
 
+    // The drugs in use, so every query returning the same drug returns the same instance. A DIN can be listed under
+    // more than one name, so each listing is held under its DIN and name
+    private static final WeakIdRegistry<Listing, Drug> DRUGS = new WeakIdRegistry<>();
+
     private final int ID;
     private final int INGREDIENTS_ID;
     private final int GCN_SEQNO;
@@ -14,8 +20,14 @@ public final class Drug implements Displayable, Comparable<Drug> {
         DISPLAY_NAME = displayName;
     }
 
+    /**
+     * Returns the drug with a DIN and these fields, which is the same instance for as long as any part of the
+     * application still refers to it
+     */
     public static final Drug createFdbDrug(int din, int hicl, int gcn, String displayName) {
-        return new Drug(din, hicl, gcn, displayName);
+        return DRUGS.intern(new Listing(din, displayName),
+                drug -> drug.INGREDIENTS_ID == hicl && drug.GCN_SEQNO == gcn,
+                () -> new Drug(din, hicl, gcn, displayName));
     }
 
     public final int getId() {
@@ -48,6 +60,34 @@ public final class Drug implements Displayable, Comparable<Drug> {
         return getId() - drugToCompare.getId();
     }
 
+    /**
+     * A DIN along with one of the names it is listed under
+     */
+    private static final class Listing {
+        private final int DIN;
+        private final String DISPLAY_NAME;
+
+        private Listing(int din, String displayName) {
+            DIN = din;
+            DISPLAY_NAME = displayName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Listing))
+                return false;
+            Listing listing = (Listing) o;
+            return DIN == listing.DIN && Objects.equals(DISPLAY_NAME, listing.DISPLAY_NAME);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * DIN + Objects.hashCode(DISPLAY_NAME);
+        }
+    }
+
     public final String toString() {
         return new StringBuilder().append("Drug -> ")
                                   .append("DIN: " + getId())
@@ -1,5 +1,7 @@
 package Info;
 
+import java.util.Objects;
+
 //import org.apache.commons.lang3.Validate;
 
 
@@ -10,16 +12,32 @@ package Info;
 public class DrugInteraction {
     private final Drug DRUG_BEING_PRESCRIBED;// Drug causing the interaction
     private final InteractionType TYPE_OF_INTERACTION;
-    private final String INTERACTION_DESCRIPTION;
-
-    DrugInteraction(Drug drugBeingPrescribed, InteractionType typeOfInteraction, String interactionDescription) {
-       /* Validate.notNull(drugBeingPrescribed, "The a drug in a drug interaction cannot be null.");
-        Validate.notNull(typeOfInteraction, "The type of a drug interaction cannot be null.");
-        Validate.notEmpty(interactionDescription, "The description of a drug interaction cannot be empty or null.");*/
+    private final Drug DRUG_INTERACTING_WITH;// Only for drug to drug interactions
+    private final Allergy ALLERGY;// Only for allergy interactions
+    private final String EFFECT;// The food or drug to drug effect, not set for allergy interactions
+    private final String EFFECT_CODE;// Only for drug to drug interactions whose prescriber knows it
+    private final Severity SEVERITY;
+    // Built from the fields the first time it is asked for, since many interactions are filtered out before then
+    private String interactionDescription;
 
-        DRUG_BEING_PRESCRIBED = drugBeingPrescribed;
+    private DrugInteraction(Drug drugBeingPrescribed, InteractionType typeOfInteraction, Drug drugInteractingWith,
+                            Allergy allergy, String effect, String effectCode, Severity severity) {
+        // The description is only built when it is first asked for, so what it needs is checked here instead
+        DRUG_BEING_PRESCRIBED = Objects.requireNonNull(drugBeingPrescribed, "The drug in a drug interaction cannot be null");
         TYPE_OF_INTERACTION = typeOfInteraction;
-        INTERACTION_DESCRIPTION = interactionDescription;
+        if (typeOfInteraction == InteractionType.DRUG_TO_ALLERGY) {
+            Objects.requireNonNull(allergy, "The allergy of an allergy interaction cannot be null");
+            Objects.requireNonNull(allergy.getName(), "The allergy of an allergy interaction must have a name");
+        } else {
+            Objects.requireNonNull(effect, "The effect of a drug interaction cannot be null");
+        }
+        if (typeOfInteraction == InteractionType.DRUG_TO_DRUG)
+            Objects.requireNonNull(drugInteractingWith, "The other drug of a drug to drug interaction cannot be null");
+        DRUG_INTERACTING_WITH = drugInteractingWith;
+        ALLERGY = allergy;
+        EFFECT = effect;
+        EFFECT_CODE = effectCode;
+        SEVERITY = severity;
     }
 
     /**
@@ -36,7 +54,8 @@ public class DrugInteraction {
      */
 
     public static final DrugInteraction createFdbFoodInteraction(Drug drugBeingPrescribed, String foodInteractionDescription) {
-        return new DrugInteraction(drugBeingPrescribed, InteractionType.DRUG_TO_FOOD, foodInteractionDescription);
+        return new DrugInteraction(drugBeingPrescribed, InteractionType.DRUG_TO_FOOD, null, null,
+                foodInteractionDescription, null, Severity.UNKNOWN);
     }
 
     /**
@@ -44,17 +63,50 @@ public class DrugInteraction {
      * interaction using properties from the FDB database
      * 
      * @param drugBeingPrescribed Drug causing the harmful allergic reaction
-     * @throws NullPointerException  if the drug or description is null
-     * @throws IllegalStateException if the description is the empty string
+     * @throws NullPointerException  if the drug, the allergy or its name is null
      */
     public static final DrugInteraction createFdbAllergyInteraction(Allergy allergy, Drug drugBeingPrescribed) {
-        String description = "Patient is allergic to " + allergy.getName().trim() + " which is an  ingredient in \"" + drugBeingPrescribed.getDisplayName() + "\"";
-        return new DrugInteraction(drugBeingPrescribed, InteractionType.DRUG_TO_ALLERGY, description);
+        return new DrugInteraction(drugBeingPrescribed, InteractionType.DRUG_TO_ALLERGY, null, allergy, null, null,
+                Severity.UNKNOWN);
     }
 
+    /**
+     * Creates a drug to drug interaction whose severity is not known
+     *
+     * @see #createFdbDrugToDrugInteraction(Drug, Drug, String, Severity)
+     */
     public static final DrugInteraction createFdbDrugToDrugInteraction(Drug drugBeingPrescribed, Drug drugInteractingWith, String info) {
-        String description = drugBeingPrescribed.getDisplayName() + " " + info + " " + drugInteractingWith.getDisplayName();
-        return new DrugInteraction(drugBeingPrescribed, InteractionType.DRUG_TO_DRUG, description);
+        return createFdbDrugToDrugInteraction(drugBeingPrescribed, drugInteractingWith, info, Severity.UNKNOWN);
+    }
+
+    /**
+     * Creates a drug interaction corresponding to a harmful drug-drug interaction
+     * using properties from the FDB database
+     *
+     * @param drugBeingPrescribed Drug that is being prescribed
+     * @param drugInteractingWith Drug the patient takes that it interacts with
+     * @param info                The effect of the interaction, the property
+     *                            ADI_EFFTXT in the relation RADIMEF0
+     * @param severity            The severity of the interaction, from the
+     *                            property DDI_SL in the relation RADIMSL1
+     * @throws NullPointerException if either drug or the effect is null
+     */
+    public static final DrugInteraction createFdbDrugToDrugInteraction(Drug drugBeingPrescribed, Drug drugInteractingWith,
+                                                                       String info, Severity severity) {
+        return createFdbDrugToDrugInteraction(drugBeingPrescribed, drugInteractingWith, null, info, severity);
+    }
+
+    /**
+     * Creates a drug to drug interaction along with the code of its effect
+     *
+     * @param effectCode The code of the effect, the property ADI_EFFTC in the
+     *                   relation RADIMEF0, or null if it is not known
+     * @see #createFdbDrugToDrugInteraction(Drug, Drug, String, Severity)
+     */
+    public static final DrugInteraction createFdbDrugToDrugInteraction(Drug drugBeingPrescribed, Drug drugInteractingWith,
+                                                                       String effectCode, String info, Severity severity) {
+        return new DrugInteraction(drugBeingPrescribed, InteractionType.DRUG_TO_DRUG, drugInteractingWith, null, info,
+                effectCode, severity);
     }
 
     /**
@@ -68,11 +120,90 @@ public class DrugInteraction {
         return TYPE_OF_INTERACTION;
     }
 
+    /**
+     * @return The drug the patient takes that the drug being prescribed interacts with, or null if this is not a drug to
+     * drug interaction
+     */
+    public final Drug getDrugInteractingWith() {
+        return DRUG_INTERACTING_WITH;
+    }
+
+    /**
+     * @return The allergy of the patient, or null if this is not an allergy interaction
+     */
+    public final Allergy getAllergy() {
+        return ALLERGY;
+    }
+
+    /**
+     * @return The effect of a food or drug to drug interaction, or null for an allergy interaction
+     */
+    public final String getEffect() {
+        return EFFECT;
+    }
+
+    /**
+     * @return The code of the effect of a drug to drug interaction (ADI_EFFTC), which stays the same when FDB rewords
+     * the effect, or null if the prescriber does not know it or this is another kind of interaction
+     */
+    public final String getEffectCode() {
+        return EFFECT_CODE;
+    }
+
+    /**
+     * @return The severity of a drug to drug interaction, or {@link Severity#UNKNOWN} if the prescriber does not know it
+     * or this is another kind of interaction
+     */
+    public final Severity getSeverity() {
+        return SEVERITY;
+    }
+
     public final String getInteractionDescription() {
-        return INTERACTION_DESCRIPTION;
+        // Two threads may both build it, but they build the same string
+        String description = interactionDescription;
+        if (description == null) {
+            switch (TYPE_OF_INTERACTION) {
+                case DRUG_TO_ALLERGY:
+                    description = "Patient is allergic to " + ALLERGY.getName().trim() + " which is an  ingredient in \"" + DRUG_BEING_PRESCRIBED.getDisplayName() + "\"";
+                    break;
+                case DRUG_TO_DRUG:
+                    description = DRUG_BEING_PRESCRIBED.getDisplayName() + " " + EFFECT + " " + DRUG_INTERACTING_WITH.getDisplayName();
+                    break;
+                default:
+                    description = EFFECT;
+            }
+            interactionDescription = description;
+        }
+        return description;
     }
 
     public enum InteractionType {
         DRUG_TO_ALLERGY, DRUG_TO_FOOD, DRUG_TO_DRUG;
     }
+
+    /**
+     * The severity of an interaction, from the least to the most severe
+     */
+    public enum Severity {
+        NONE, UNKNOWN, MODERATE, SEVERE, CONTRAINDICATED;
+
+        /**
+         * @param severityLevel The property DDI_SL of an interaction in FDB
+         * @return The severity of the level, or {@link #NONE} for zero
+         */
+        public static Severity fromFdbSeverityLevel(int severityLevel) {
+            switch (severityLevel) {
+                case 0:
+                    return NONE;
+                case 1:
+                    return CONTRAINDICATED;
+                case 2:
+                    return SEVERE;
+                case 3:
+                    return MODERATE;
+                default:
+                    return UNKNOWN;
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package Info;
+
+import java.lang.reflect.Array;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.function.ToIntFunction;
+
+/**
+ * An immutable set of drugs or allergies sorted by id, backed by a sorted array of the ids and a parallel array of the
+ * elements
+ * <p>
+ * Adding or removing returns a new set and leaves this one as it was, so a set can be read from any thread while the
+ * patient it came from is being changed on another. Looking an element up is a binary search of the ids
+ *
+ * @param <E> {@link Drug} or {@link Allergy}
+ */
+final class IdSortedSet<E extends Comparable<E>> extends AbstractSet<E> implements SortedSet<E> {
+
+    private final Class<E> ELEMENT_CLASS;
+    private final ToIntFunction<E> ID_OF;
+    private final int[] IDS;
+    private final E[] ELEMENTS;
+    private final int FROM;
+    private final int TO;
+
+    private IdSortedSet(Class<E> elementClass, ToIntFunction<E> idOf, int[] ids, E[] elements, int from, int to) {
+        ELEMENT_CLASS = elementClass;
+        ID_OF = idOf;
+        IDS = ids;
+        ELEMENTS = elements;
+        FROM = from;
+        TO = to;
+    }
+
+    static <E extends Comparable<E>> IdSortedSet<E> createEmptySet(Class<E> elementClass, ToIntFunction<E> idOf) {
+        return new IdSortedSet<>(elementClass, idOf, new int[0], newArray(elementClass, 0), 0, 0);
+    }
+
+    /**
+     * @return a set with the element added, or this set if it already has an element with the same id
+     */
+    IdSortedSet<E> with(E element) {
+        int index = Arrays.binarySearch(IDS, FROM, TO, ID_OF.applyAsInt(element));
+        if (index >= 0)
+            return this;
+        int insertAt = -index - 1 - FROM;
+        int[] ids = new int[size() + 1];
+        E[] elements = newArray(ELEMENT_CLASS, size() + 1);
+        System.arraycopy(IDS, FROM, ids, 0, insertAt);
+        System.arraycopy(ELEMENTS, FROM, elements, 0, insertAt);
+        ids[insertAt] = ID_OF.applyAsInt(element);
+        elements[insertAt] = element;
+        System.arraycopy(IDS, FROM + insertAt, ids, insertAt + 1, size() - insertAt);
+        System.arraycopy(ELEMENTS, FROM + insertAt, elements, insertAt + 1, size() - insertAt);
+        return new IdSortedSet<>(ELEMENT_CLASS, ID_OF, ids, elements, 0, ids.length);
+    }
+
+    /**
+     * @param index the position of the element in the order of the set
+     * @return a set without the element at the index
+     * @throws IndexOutOfBoundsException if there is no element at the index
+     */
+    IdSortedSet<E> without(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        int[] ids = new int[size() - 1];
+        E[] elements = newArray(ELEMENT_CLASS, size() - 1);
+        System.arraycopy(IDS, FROM, ids, 0, index);
+        System.arraycopy(ELEMENTS, FROM, elements, 0, index);
+        System.arraycopy(IDS, FROM + index + 1, ids, index, size() - index - 1);
+        System.arraycopy(ELEMENTS, FROM + index + 1, elements, index, size() - index - 1);
+        return new IdSortedSet<>(ELEMENT_CLASS, ID_OF, ids, elements, 0, ids.length);
+    }
+
+    /**
+     * @return the position of the element with the same id in the order of the set, or -1 if there is none
+     */
+    int indexOf(E element) {
+        int index = Arrays.binarySearch(IDS, FROM, TO, ID_OF.applyAsInt(element));
+        return index < 0 ? -1 : index - FROM;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return ELEMENT_CLASS.isInstance(o) && indexOf(ELEMENT_CLASS.cast(o)) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return TO - FROM;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int next = FROM;
+
+            @Override
+            public boolean hasNext() {
+                return next < TO;
+            }
+
+            @Override
+            public E next() {
+                if (next >= TO)
+                    throw new NoSuchElementException();
+                return ELEMENTS[next++];
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        return Arrays.copyOfRange(ELEMENTS, FROM, TO, Object[].class);
+    }
+
+    /**
+     * @return null, since the elements are in their natural order
+     */
+    @Override
+    public Comparator<? super E> comparator() {
+        return null;
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        if (fromElement.compareTo(toElement) > 0)
+            throw new IllegalArgumentException("fromElement > toElement");
+        return range(firstIndexAtOrAfter(fromElement), firstIndexAtOrAfter(toElement));
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return range(FROM, firstIndexAtOrAfter(toElement));
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return range(firstIndexAtOrAfter(fromElement), TO);
+    }
+
+    @Override
+    public E first() {
+        if (isEmpty())
+            throw new NoSuchElementException();
+        return ELEMENTS[FROM];
+    }
+
+    @Override
+    public E last() {
+        if (isEmpty())
+            throw new NoSuchElementException();
+        return ELEMENTS[TO - 1];
+    }
+
+    private IdSortedSet<E> range(int from, int to) {
+        return new IdSortedSet<>(ELEMENT_CLASS, ID_OF, IDS, ELEMENTS, from, Math.max(from, to));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> E[] newArray(Class<E> elementClass, int length) {
+        return (E[]) Array.newInstance(elementClass, length);
+    }
+
+    private int firstIndexAtOrAfter(E element) {
+        int index = Arrays.binarySearch(IDS, FROM, TO, ID_OF.applyAsInt(element));
+        return index >= 0 ? index : -index - 1;
+    }
+}
@@ -1,51 +1,90 @@
 package Info;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.SortedSet;
-import java.util.TreeSet;
 
+/**
+ * A patient, with the drugs they take and their allergies, both sorted by id
+ * <p>
+ * The drugs and allergies are kept in immutable sets that are replaced whenever the patient changes, so the sets
+ * returned by {@link #getDrugsPrescribed()} and {@link #getPatientAllergies()} never change. They can be read by the
+ * tasks checking interactions in parallel while the patient is edited on another thread, and each of those tasks sees
+ * the patient as it was when it got the set
+ */
 public class Patient implements Displayable {
-    String NAME;
-    SortedSet<Drug> DRUGS_PRESCRIBED = new TreeSet<>();
-    SortedSet<Allergy> PATIENT_ALLERGIES = new TreeSet<>();
+    private volatile String NAME;
+    private volatile IdSortedSet<Drug> DRUGS_PRESCRIBED = IdSortedSet.createEmptySet(Drug.class, Drug::getId);
+    private volatile IdSortedSet<Allergy> PATIENT_ALLERGIES = IdSortedSet.createEmptySet(Allergy.class, Allergy::getId);
 
     public final String setName(String name) {
         return NAME = name;
     }
 
-    public final boolean addDrug(Drug drug) {
-        return DRUGS_PRESCRIBED.add(drug);
+    public final synchronized boolean addDrug(Drug drug) {
+        IdSortedSet<Drug> drugsPrescribed = DRUGS_PRESCRIBED.with(drug);
+        if (drugsPrescribed == DRUGS_PRESCRIBED)
+            return false;
+        DRUGS_PRESCRIBED = drugsPrescribed;
+        return true;
     }
 
-    public final boolean addAllergy(Allergy allergy) {
-        return PATIENT_ALLERGIES.add(allergy);
+    public final synchronized boolean addAllergy(Allergy allergy) {
+        IdSortedSet<Allergy> patientAllergies = PATIENT_ALLERGIES.with(allergy);
+        if (patientAllergies == PATIENT_ALLERGIES)
+            return false;
+        PATIENT_ALLERGIES = patientAllergies;
+        return true;
     }
 
+    /**
+     * @return the drugs the patient takes at the time of the call, which cannot be modified
+     */
     public SortedSet<Drug> getDrugsPrescribed() {
         return DRUGS_PRESCRIBED;
     }
 
+    /**
+     * @return the allergies of the patient at the time of the call, which cannot be modified
+     */
     public SortedSet<Allergy> getPatientAllergies() {
         return PATIENT_ALLERGIES;
     }
 
-    public void removeDrug(int input) {
-        List<Drug> list = new ArrayList<>();
+    /**
+     * @param input the position of the drug in {@link #getDrugsPrescribed()}
+     * @throws IndexOutOfBoundsException if there is no drug at the position
+     */
+    public synchronized void removeDrug(int input) {
+        DRUGS_PRESCRIBED = DRUGS_PRESCRIBED.without(input);
+    }
 
-        // push each element in the set into the list
-        for (Drug a : getDrugsPrescribed())
-            list.add(a);
-        getDrugsPrescribed().remove(list.get(input));
+    /**
+     * @return true if the patient was taking the drug
+     */
+    public final synchronized boolean removeDrug(Drug drug) {
+        int index = DRUGS_PRESCRIBED.indexOf(drug);
+        if (index < 0)
+            return false;
+        DRUGS_PRESCRIBED = DRUGS_PRESCRIBED.without(index);
+        return true;
     }
 
-    public void removeAllergy(int input) {
-        List<Allergy> list = new ArrayList<>();
+    /**
+     * @param input the position of the allergy in {@link #getPatientAllergies()}
+     * @throws IndexOutOfBoundsException if there is no allergy at the position
+     */
+    public synchronized void removeAllergy(int input) {
+        PATIENT_ALLERGIES = PATIENT_ALLERGIES.without(input);
+    }
 
-        // push each element in the set into the list
-        for (Allergy a : getPatientAllergies())
-            list.add(a);
-        getPatientAllergies().remove(list.get(input));
+    /**
+     * @return true if the patient had the allergy
+     */
+    public final synchronized boolean removeAllergy(Allergy allergy) {
+        int index = PATIENT_ALLERGIES.indexOf(allergy);
+        if (index < 0)
+            return false;
+        PATIENT_ALLERGIES = PATIENT_ALLERGIES.without(index);
+        return true;
     }
 
     public final String getName() {
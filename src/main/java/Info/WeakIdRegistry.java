@@ -0,0 +1,71 @@
+package Info;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Keeps one instance of each drug or allergy by id, for as long as something else refers to it
+ * <p>
+ * Instances are only weakly held, so a drug nothing uses any more is garbage collected and its entry is removed the
+ * next time the registry is used. If the instance held for an id does not have the fields asked for, for example
+ * after a new data release renames an allergy, a new instance replaces it
+ *
+ * @param <K> the id, which is the whole key an instance is held under
+ * @param <T> {@link Drug} or {@link Allergy}
+ */
+final class WeakIdRegistry<K, T> {
+
+    private final ConcurrentHashMap<K, IdReference<K, T>> INSTANCES = new ConcurrentHashMap<>();
+    private final ReferenceQueue<T> COLLECTED = new ReferenceQueue<>();
+
+    /**
+     * @param id      the id of the instance
+     * @param isSame  whether the instance held for the id has the fields asked for
+     * @param creator creates an instance with the fields asked for, only if the one held cannot be used
+     * @return the instance held for the id if it has the fields asked for, otherwise a new instance that is held from
+     * now on
+     */
+    T intern(K id, Predicate<T> isSame, Supplier<T> creator) {
+        removeCollected();
+        IdReference<K, T> reference = INSTANCES.get(id);
+        T instance = reference == null ? null : reference.get();
+        if (instance != null && isSame.test(instance))
+            return instance;
+
+        T created = creator.get();
+        IdReference<K, T> createdReference = new IdReference<>(id, created, COLLECTED);
+        // Another thread may have interned the same id since, in which case its instance is used if it can be
+        IdReference<K, T> winner = INSTANCES.merge(id, createdReference, (current, ignored) -> {
+            T currentInstance = current.get();
+            return currentInstance != null && current != reference && isSame.test(currentInstance) ? current : createdReference;
+        });
+        T winnerInstance = winner.get();
+        return winnerInstance != null ? winnerInstance : created;
+    }
+
+    /**
+     * @return the number of ids with an instance that has not been collected yet
+     */
+    int size() {
+        removeCollected();
+        return INSTANCES.size();
+    }
+
+    private void removeCollected() {
+        IdReference<?, ?> collected;
+        while ((collected = (IdReference<?, ?>) COLLECTED.poll()) != null)
+            INSTANCES.remove(collected.ID, collected);
+    }
+
+    private static final class IdReference<K, T> extends WeakReference<T> {
+        private final K ID;
+
+        private IdReference(K id, T instance, ReferenceQueue<T> queue) {
+            super(instance, queue);
+            ID = id;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package Prescriber;
+
+import Apps.ConnectionPool;
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable in-memory inverted index from each allergen group in FDB to the ingredient lists (HICL_SEQNO) containing
+ * an ingredient of that group
+ * <p>
+ * Each group's ingredient lists are kept in an {@link IntBitmap}, so screening a drug against a patient's allergies is
+ * one membership test per allergy, however long the list of allergies is
+ */
+final class AllergenBitmapIndex {
+
+    private static final int FETCH_SIZE = 5000;
+
+    private final int[] ALLERGEN_GROUPS;
+    private final IntBitmap[] INGREDIENT_LISTS;
+
+    /**
+     * Creates an index from pairs of an allergen group and an ingredient list, sorted by group then ingredient list
+     *
+     * @param allergenGroups  the allergen group (DAM_ALRGN_GRP) of each pair
+     * @param ingredientLists the ingredient list (HICL_SEQNO) of each pair
+     */
+    AllergenBitmapIndex(int[] allergenGroups, int[] ingredientLists) {
+        IntList distinctAllergenGroups = new IntList();
+        List<IntBitmap> bitmaps = new ArrayList<>();
+        int groupStart = 0;
+        while (groupStart < allergenGroups.length) {
+            int groupEnd = groupStart;
+            while (groupEnd < allergenGroups.length && allergenGroups[groupEnd] == allergenGroups[groupStart])
+                groupEnd++;
+            if (distinctAllergenGroups.size() > 0
+                    && distinctAllergenGroups.get(distinctAllergenGroups.size() - 1) >= allergenGroups[groupStart])
+                throw new IllegalArgumentException("Allergen groups must be sorted");
+            distinctAllergenGroups.add(allergenGroups[groupStart]);
+            bitmaps.add(new IntBitmap(Arrays.copyOfRange(ingredientLists, groupStart, groupEnd)));
+            groupStart = groupEnd;
+        }
+        ALLERGEN_GROUPS = distinctAllergenGroups.toArray();
+        INGREDIENT_LISTS = bitmaps.toArray(new IntBitmap[0]);
+    }
+
+    private AllergenBitmapIndex(int[] allergenGroups, IntBitmap[] ingredientLists) {
+        for (int group = 1; group < allergenGroups.length; group++) {
+            if (allergenGroups[group] <= allergenGroups[group - 1])
+                throw new IllegalArgumentException("Allergen groups must be sorted");
+        }
+        ALLERGEN_GROUPS = allergenGroups;
+        INGREDIENT_LISTS = ingredientLists;
+    }
+
+    /**
+     * Loads the ingredient lists of every allergen group
+     *
+     * @param fdbConnection connection to the FDB database
+     * @return an index of all allergen groups
+     * @throws SQLException if the allergen groups could not be queried
+     */
+    static AllergenBitmapIndex loadAllergenBitmapIndex(Connection fdbConnection) throws SQLException {
+        return loadAllergenBitmapIndex(fdbConnection, "");
+    }
+
+    /**
+     * Loads which of some ingredient lists belong to some allergen groups, for checking a batch of prescriptions
+     *
+     * @param fdbConnection   connection to the FDB database
+     * @param allergenGroups  the allergen groups to load
+     * @param ingredientLists the ingredient lists to load
+     * @return an index of the allergen groups, holding only the given ingredient lists
+     * @throws SQLException if the allergen groups could not be queried
+     */
+    static AllergenBitmapIndex loadAllergenBitmapIndex(Connection fdbConnection, int[] allergenGroups,
+                                                       int[] ingredientLists) throws SQLException {
+        return loadAllergenBitmapIndex(fdbConnection,
+                "WHERE t1.DAM_ALRGN_GRP IN (" + DrugInteractionMatrix.joinIds(allergenGroups) + ") " +
+                        "AND t3.HICL_SEQNO IN (" + DrugInteractionMatrix.joinIds(ingredientLists) + ") ");
+    }
+
+    private static AllergenBitmapIndex loadAllergenBitmapIndex(Connection fdbConnection, String filter) throws SQLException {
+        try (PreparedStatement pStmtToQueryAllAllergenIngredients = ConnectionPool.prepareUncachedStatement(fdbConnection,
+                "SELECT DISTINCT t1.DAM_ALRGN_GRP, t3.HICL_SEQNO " +
+                        "FROM RDAMGHC0 AS t1 " +
+                        "JOIN RHICL1 AS t3 ON (t1.HIC_SEQN = t3.HIC_SEQN) " +
+                        filter +
+                        "ORDER BY t1.DAM_ALRGN_GRP, t3.HICL_SEQNO")) {
+            pStmtToQueryAllAllergenIngredients.setFetchSize(FETCH_SIZE);
+            try (ResultSet allergenIngredientsAsRst = pStmtToQueryAllAllergenIngredients.executeQuery()) {
+                IntList allergenGroups = new IntList();
+                IntList ingredientLists = new IntList();
+                while (allergenIngredientsAsRst.next()) {
+                    allergenGroups.add(allergenIngredientsAsRst.getInt(1));
+                    ingredientLists.add(allergenIngredientsAsRst.getInt(2));
+                }
+                return new AllergenBitmapIndex(allergenGroups.toArray(), ingredientLists.toArray());
+            }
+        }
+    }
+
+    /**
+     * Reads an index from a snapshot file
+     *
+     * @see FdbSnapshotFile
+     */
+    static AllergenBitmapIndex readFrom(ByteBuffer buffer) {
+        int[] allergenGroups = FdbSnapshotFile.readInts(buffer);
+        IntBitmap[] ingredientLists = new IntBitmap[allergenGroups.length];
+        for (int group = 0; group < allergenGroups.length; group++)
+            ingredientLists[group] = IntBitmap.readFrom(buffer);
+        return new AllergenBitmapIndex(allergenGroups, ingredientLists);
+    }
+
+    /**
+     * Writes the allergen groups of the index to a snapshot file, each followed by the bitmap of its ingredient lists
+     *
+     * @see FdbSnapshotFile
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        FdbSnapshotFile.writeInts(out, ALLERGEN_GROUPS);
+        for (IntBitmap ingredientLists : INGREDIENT_LISTS)
+            ingredientLists.writeTo(out);
+    }
+
+    /**
+     * @return the number of allergen groups in the index
+     */
+    int size() {
+        return ALLERGEN_GROUPS.length;
+    }
+
+    /**
+     * @return whether an ingredient list contains an ingredient of an allergen group
+     */
+    boolean contains(int allergenGroup, int ingredientList) {
+        int group = Arrays.binarySearch(ALLERGEN_GROUPS, allergenGroup);
+        return group >= 0 && INGREDIENT_LISTS[group].contains(ingredientList);
+    }
+
+    /**
+     * Finds all interactions between a drug being prescribed and the allergies a patient has
+     * <p>
+     * There is one interaction for each allergy the drug's ingredients belong to, in allergy order
+     *
+     * @see FdbPrescriberUnoptimized#queryAllergyInteractionsOfDrug(Drug, Patient)
+     */
+    List<DrugInteraction> findInteractions(Drug drug, Patient patient) {
+        List<DrugInteraction> allergyInteractions = new ArrayList<>();
+        for (Allergy allergy : patient.getPatientAllergies()) {
+            if (contains(allergy.getId(), drug.getIngredientIdentifier()))
+                allergyInteractions.add(DrugInteraction.createFdbAllergyInteraction(allergy, drug));
+        }
+        return allergyInteractions;
+    }
+}
@@ -0,0 +1,167 @@
+package Prescriber;
+
+import Info.Allergy;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An immutable in-memory copy of the allergen groups in FDB (RDAMAGD1), for finding the allergies whose description
+ * starts with a prefix
+ * <p>
+ * The descriptions are upper cased and sorted, so all descriptions starting with a prefix are next to each other and
+ * the first one is found with a binary search. Upper casing both sides makes matching ignore case, like the SQL Server
+ * collation FDB uses. Matches are returned in allergen group order
+ * <p>
+ * A prefix with LIKE wildcards is matched like the query matches it, by checking each description that starts with the
+ * part of the prefix before the first wildcard
+ */
+final class AllergyIndex {
+
+    private final int[] IDS;
+    private final String[] NAMES;
+
+    // NORMALIZED_NAMES is sorted, and NORMALIZED_NAMES[i] is the upper cased name of the allergy at POSITIONS[i]
+    private final String[] NORMALIZED_NAMES;
+    private final int[] POSITIONS;
+
+    /**
+     * Creates an index from the columns of allergies sorted by id
+     */
+    AllergyIndex(int[] ids, String[] names) {
+        IDS = ids;
+        NAMES = names;
+
+        Integer[] positionsByName = new Integer[ids.length];
+        for (int position = 0; position < ids.length; position++)
+            positionsByName[position] = position;
+        String[] normalizedNames = new String[ids.length];
+        for (int position = 0; position < ids.length; position++)
+            normalizedNames[position] = normalize(names[position]);
+        Arrays.sort(positionsByName, Comparator.comparing(position -> normalizedNames[position]));
+
+        NORMALIZED_NAMES = new String[ids.length];
+        POSITIONS = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            POSITIONS[i] = positionsByName[i];
+            NORMALIZED_NAMES[i] = normalizedNames[positionsByName[i]];
+        }
+    }
+
+    private AllergyIndex(int[] ids, String[] names, String[] normalizedNames, int[] positions) {
+        if (names.length != ids.length || normalizedNames.length != ids.length || positions.length != ids.length)
+            throw new IllegalArgumentException("The columns of an allergy index must have the same length");
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i] < 0 || positions[i] >= ids.length || (i > 0 && normalizedNames[i].compareTo(normalizedNames[i - 1]) < 0))
+                throw new IllegalArgumentException("The names of an allergy index must be sorted");
+        }
+        IDS = ids;
+        NAMES = names;
+        NORMALIZED_NAMES = normalizedNames;
+        POSITIONS = positions;
+    }
+
+    /**
+     * Loads every allergy that {@link Prescriber#queryAllergies(String)} could return
+     *
+     * @param fdbConnection connection to the FDB database
+     * @return an index of all allergies
+     * @throws SQLException if the allergies could not be queried
+     */
+    static AllergyIndex loadAllergyIndex(Connection fdbConnection) throws SQLException {
+        PreparedStatement pStmtToQueryAllAllergies = fdbConnection.prepareStatement(
+                "SELECT DAM_ALRGN_GRP, DAM_ALRGN_GRP_DESC " +
+                        "FROM RDAMAGD1 " +
+                        "WHERE DAM_ALRGN_GRP_DESC IS NOT NULL " +
+                        "ORDER BY DAM_ALRGN_GRP");
+        try (ResultSet allergiesAsRst = pStmtToQueryAllAllergies.executeQuery()) {
+            IntList ids = new IntList();
+            List<String> names = new ArrayList<>();
+            while (allergiesAsRst.next()) {
+                ids.add(allergiesAsRst.getInt(1));
+                names.add(allergiesAsRst.getString(2).trim());
+            }
+            return new AllergyIndex(ids.toArray(), names.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * Reads an index from a snapshot file
+     *
+     * @see FdbSnapshotFile
+     */
+    static AllergyIndex readFrom(ByteBuffer buffer) {
+        return new AllergyIndex(FdbSnapshotFile.readInts(buffer), FdbSnapshotFile.readStrings(buffer),
+                FdbSnapshotFile.readStrings(buffer), FdbSnapshotFile.readInts(buffer));
+    }
+
+    /**
+     * Writes the allergies of the index to a snapshot file, along with their sorted names
+     *
+     * @see FdbSnapshotFile
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        FdbSnapshotFile.writeInts(out, IDS);
+        FdbSnapshotFile.writeStrings(out, NAMES);
+        FdbSnapshotFile.writeStrings(out, NORMALIZED_NAMES);
+        FdbSnapshotFile.writeInts(out, POSITIONS);
+    }
+
+    /**
+     * Returns all allergies whose description starts with a prefix, ignoring case, where the prefix may use LIKE
+     * wildcards
+     *
+     * @see Prescriber#queryAllergies(String)
+     */
+    List<Allergy> queryAllergies(String prefix) {
+        LikePattern pattern = LikePattern.compileLikePattern(prefix);
+        String normalizedPrefix = normalize(pattern.hasWildcard() ? literalHead(prefix) : prefix);
+
+        // Find the first name that is not less than the prefix; every match comes right after it
+        int low = 0;
+        int high = NORMALIZED_NAMES.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (NORMALIZED_NAMES[middle].compareTo(normalizedPrefix) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        int end = low;
+        while (end < NORMALIZED_NAMES.length && NORMALIZED_NAMES[end].startsWith(normalizedPrefix))
+            end++;
+
+        int[] matchingPositions = Arrays.copyOfRange(POSITIONS, low, end);
+        if (pattern.hasWildcard())
+            matchingPositions = Arrays.stream(matchingPositions).filter(position -> pattern.isPrefixOf(NAMES[position])).toArray();
+        Arrays.sort(matchingPositions);
+        List<Allergy> allergies = new ArrayList<>(matchingPositions.length);
+        for (int position : matchingPositions)
+            allergies.add(Allergy.createFdbAllergy(IDS[position], NAMES[position]));
+        return allergies;
+    }
+
+    /**
+     * @return the part of a prefix before its first wildcard, which every match starts with
+     */
+    private static String literalHead(String prefix) {
+        int head = 0;
+        while (head < prefix.length() && "%_[".indexOf(prefix.charAt(head)) < 0)
+            head++;
+        return prefix.substring(0, head);
+    }
+
+    private static String normalize(String name) {
+        return name.toUpperCase(Locale.ROOT);
+    }
+}
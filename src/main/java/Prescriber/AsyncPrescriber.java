@@ -0,0 +1,64 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link Prescriber} whose queries run in the background and complete a {@link CompletableFuture}, so the calling
+ * thread does not block for the JDBC round trip
+ * <p>
+ * If a query fails, its future completes exceptionally with the exception the blocking query would have thrown
+ */
+public interface AsyncPrescriber {
+
+    /**
+     * Creates an asynchronous prescriber that runs queries on virtual threads when the JVM supports them, and on a
+     * shared pool of daemon threads otherwise
+     *
+     * @param prescriber the prescriber that runs the queries
+     */
+    static AsyncPrescriber createAsyncPrescriber(Prescriber prescriber) {
+        return new FdbAsyncPrescriber(prescriber, FdbAsyncPrescriber.defaultExecutor());
+    }
+
+    /**
+     * Creates an asynchronous prescriber that runs queries on a given executor
+     *
+     * @param prescriber the prescriber that runs the queries
+     * @param executor   the executor the queries run on
+     */
+    static AsyncPrescriber createAsyncPrescriber(Prescriber prescriber, Executor executor) {
+        return new FdbAsyncPrescriber(prescriber, executor);
+    }
+
+    /**
+     * @see Prescriber#queryDrugs(String)
+     */
+    CompletableFuture<List<Drug>> queryDrugsAsync(String pattern);
+
+    /**
+     * @see Prescriber#queryDrugs(String, int)
+     */
+    CompletableFuture<List<Drug>> queryDrugsAsync(String pattern, int page);
+
+    /**
+     * @see Prescriber#queryAllergies(String)
+     */
+    CompletableFuture<List<Allergy>> queryAllergiesAsync(String prefix);
+
+    /**
+     * @see Prescriber#findInteractions(Drug, Patient)
+     */
+    CompletableFuture<List<DrugInteraction>> findInteractionsAsync(Drug drugBeingPrescribed, Patient patient);
+
+    /**
+     * @return the blocking prescriber the queries are run with
+     */
+    Prescriber getPrescriber();
+}
@@ -0,0 +1,439 @@
+package Prescriber;
+
+import Apps.ConnectionPool;
+import Info.Drug;
+import org.apache.commons.lang3.Validate;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An immutable in-memory copy of the drug names in FDB, with a trigram index for finding the drugs whose name contains a
+ * pattern
+ * <p>
+ * Drugs are stored in parallel primitive arrays sorted the same way {@link Prescriber#queryDrugs(String)} sorts them,
+ * by name (LN) then DIN, so any search or page of a search comes back in the same order as the SQL query. Each drug is
+ * only turned into a {@link Drug} when it is returned
+ * <p>
+ * The index maps every three character substring of the upper cased names to the sorted positions of the drugs whose
+ * name contains it. A pattern of three or more characters only checks the drugs in the shortest list of any of its
+ * trigrams. Shorter patterns check every drug. Patterns are matched like the LIKE of the SQL query, wildcards included,
+ * and ignoring case like the SQL Server collation FDB uses
+ *
+ * @see LikePattern
+ */
+final class DrugCatalog {
+
+    private static final int FETCH_SIZE = 5000;
+    // SQL Server allows 2100 parameters in a statement
+    private static final int MAX_DINS_PER_QUERY = 1000;
+    /**
+     * Orders names like the case insensitive, accent sensitive collation the catalog is sorted by, which unlike {@link
+     * String#CASE_INSENSITIVE_ORDER} only looks at hyphens and spaces when the letters are the same
+     */
+    private static final Comparator<String> NAME_ORDER = createNameOrder();
+    private static final int NO_CANDIDATES = -2;
+    private static final int EVERY_DRUG = -1;
+
+    private final int[] DINS;
+    private final int[] INGREDIENT_IDS;
+    private final int[] GCN_SEQNOS;
+    private final String[] DISPLAY_NAMES;
+    // The positions of the drugs sorted by DIN, for finding where a page of drugs left off
+    private final int[] POSITIONS_BY_DIN;
+
+    // Sorted trigram keys, and the drug positions of trigram i are TRIGRAM_POSITIONS[TRIGRAM_OFFSETS[i]..TRIGRAM_OFFSETS[i+1])
+    private final long[] TRIGRAM_KEYS;
+    private final int[] TRIGRAM_OFFSETS;
+    private final int[] TRIGRAM_POSITIONS;
+
+    /**
+     * Creates a catalog from the columns of drugs that are already sorted by name then DIN
+     */
+    DrugCatalog(int[] dins, int[] ingredientIds, int[] gcnSeqnos, String[] displayNames) {
+        DINS = dins;
+        INGREDIENT_IDS = ingredientIds;
+        GCN_SEQNOS = gcnSeqnos;
+        DISPLAY_NAMES = displayNames;
+        POSITIONS_BY_DIN = IntStream.range(0, dins.length).boxed()
+                .sorted(Comparator.comparingInt(position -> dins[position]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        Map<Long, IntList> positionsByTrigram = new HashMap<>();
+        for (int position = 0; position < displayNames.length; position++) {
+            String name = displayNames[position];
+            for (int start = 0; start + 3 <= name.length(); start++) {
+                IntList positions = positionsByTrigram.computeIfAbsent(trigramKey(name, start), key -> new IntList());
+                // A name containing a trigram twice only needs to be listed once
+                if (positions.size == 0 || positions.values[positions.size - 1] != position)
+                    positions.add(position);
+            }
+        }
+
+        TRIGRAM_KEYS = new long[positionsByTrigram.size()];
+        int keyIndex = 0;
+        int positionCount = 0;
+        for (Map.Entry<Long, IntList> trigram : positionsByTrigram.entrySet()) {
+            TRIGRAM_KEYS[keyIndex++] = trigram.getKey();
+            positionCount += trigram.getValue().size;
+        }
+        Arrays.sort(TRIGRAM_KEYS);
+
+        TRIGRAM_OFFSETS = new int[TRIGRAM_KEYS.length + 1];
+        TRIGRAM_POSITIONS = new int[positionCount];
+        for (int i = 0; i < TRIGRAM_KEYS.length; i++) {
+            IntList positions = positionsByTrigram.get(TRIGRAM_KEYS[i]);
+            System.arraycopy(positions.values, 0, TRIGRAM_POSITIONS, TRIGRAM_OFFSETS[i], positions.size);
+            TRIGRAM_OFFSETS[i + 1] = TRIGRAM_OFFSETS[i] + positions.size;
+        }
+    }
+
+    private DrugCatalog(int[] dins, int[] ingredientIds, int[] gcnSeqnos, String[] displayNames, int[] positionsByDin,
+                        long[] trigramKeys, int[] trigramOffsets, int[] trigramPositions) {
+        DINS = dins;
+        INGREDIENT_IDS = ingredientIds;
+        GCN_SEQNOS = gcnSeqnos;
+        DISPLAY_NAMES = displayNames;
+        POSITIONS_BY_DIN = positionsByDin;
+        TRIGRAM_KEYS = trigramKeys;
+        TRIGRAM_OFFSETS = trigramOffsets;
+        TRIGRAM_POSITIONS = trigramPositions;
+    }
+
+    /**
+     * Reads a catalog, along with its trigram index, from a snapshot file
+     *
+     * @see FdbSnapshotFile
+     */
+    static DrugCatalog readFrom(ByteBuffer buffer) {
+        return new DrugCatalog(FdbSnapshotFile.readInts(buffer), FdbSnapshotFile.readInts(buffer),
+                FdbSnapshotFile.readInts(buffer), FdbSnapshotFile.readStrings(buffer), FdbSnapshotFile.readInts(buffer),
+                FdbSnapshotFile.readLongs(buffer), FdbSnapshotFile.readInts(buffer), FdbSnapshotFile.readInts(buffer));
+    }
+
+    /**
+     * Writes the catalog, along with its trigram index, to a snapshot file
+     *
+     * @see FdbSnapshotFile
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        FdbSnapshotFile.writeInts(out, DINS);
+        FdbSnapshotFile.writeInts(out, INGREDIENT_IDS);
+        FdbSnapshotFile.writeInts(out, GCN_SEQNOS);
+        FdbSnapshotFile.writeStrings(out, DISPLAY_NAMES);
+        FdbSnapshotFile.writeInts(out, POSITIONS_BY_DIN);
+        FdbSnapshotFile.writeLongs(out, TRIGRAM_KEYS);
+        FdbSnapshotFile.writeInts(out, TRIGRAM_OFFSETS);
+        FdbSnapshotFile.writeInts(out, TRIGRAM_POSITIONS);
+    }
+
+    /**
+     * Loads every drug that {@link Prescriber#queryDrugs(String)} could return
+     *
+     * @param fdbConnection connection to the FDB database
+     * @return a catalog of all drugs
+     * @throws SQLException if the drugs could not be queried
+     */
+    static DrugCatalog loadDrugCatalog(Connection fdbConnection) throws SQLException {
+        PreparedStatement pStmtToQueryAllDrugs = fdbConnection.prepareStatement(
+                "SELECT t1.LN, t3.HICL_SEQNO, t1.GCN_SEQNO, t1.DIN "
+                        + "FROM RICAIDC1 AS t1 "
+                        + "JOIN RLBLRCA1 AS t2 ON (t1.ILBLRID = t2.ILBLRID) "
+                        + "JOIN RGCNSEQ4 AS t3 ON (t1.GCN_SEQNO = t3.GCN_SEQNO) "
+                        + "WHERE t1.LN IS NOT NULL "
+                        + "ORDER BY t1.LN, t1.DIN");
+        pStmtToQueryAllDrugs.setFetchSize(FETCH_SIZE);
+        try (ResultSet drugsAsRst = pStmtToQueryAllDrugs.executeQuery()) {
+            IntList dins = new IntList();
+            IntList ingredientIds = new IntList();
+            IntList gcnSeqnos = new IntList();
+            List<String> displayNames = new ArrayList<>();
+            while (drugsAsRst.next()) {
+                displayNames.add(drugsAsRst.getString(1).trim());
+                ingredientIds.add(drugsAsRst.getInt(2));
+                gcnSeqnos.add(drugsAsRst.getInt(3));
+                dins.add(drugsAsRst.getInt(4));
+            }
+            return new DrugCatalog(dins.toArray(), ingredientIds.toArray(), gcnSeqnos.toArray(),
+                    displayNames.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * Looks up drugs by DIN over a connection borrowed from a pool, without borrowing one when there are no DINs
+     *
+     * @param connectionPool pool to borrow the connection for the queries from
+     * @param dins           the DINs of the drugs
+     * @return the drugs found, in the order of their DINs
+     * @see #queryDrugsByDin(Connection, int[])
+     */
+    static List<Drug> queryDrugsByDin(ConnectionPool connectionPool, int... dins) {
+        if (dins.length == 0)
+            return new ArrayList<>();
+        try (Connection fdbConnection = connectionPool.borrowConnection()) {
+            return queryDrugsByDin(fdbConnection, dins);
+        } catch (SQLException e) {
+            throw new IllegalStateException("SQL is bad for querying drugs by DIN.\n" + e.getSQLState());
+        }
+    }
+
+    /**
+     * Looks up drugs by DIN with as few queries as possible, for when there is no catalog
+     *
+     * @param fdbConnection connection to the FDB database
+     * @param dins          the DINs of the drugs
+     * @return the drugs found, in the order of their DINs
+     * @throws SQLException if the drugs could not be queried
+     * @see Prescriber#getDrugsByDin(int...)
+     */
+    static List<Drug> queryDrugsByDin(Connection fdbConnection, int[] dins) throws SQLException {
+        int[] distinctDins = Arrays.stream(dins).distinct().toArray();
+        Map<Integer, Drug> drugsByDin = new HashMap<>();
+        for (int start = 0; start < distinctDins.length; start += MAX_DINS_PER_QUERY) {
+            int end = Math.min(distinctDins.length, start + MAX_DINS_PER_QUERY);
+            StringBuilder parameters = new StringBuilder("?");
+            for (int i = start + 1; i < end; i++)
+                parameters.append(",?");
+            try (PreparedStatement pStmtToQueryDrugsByDin = ConnectionPool.prepareUncachedStatement(fdbConnection,
+                    "SELECT t1.LN, t3.HICL_SEQNO, t1.GCN_SEQNO, t1.DIN "
+                            + "FROM RICAIDC1 AS t1 "
+                            + "JOIN RLBLRCA1 AS t2 ON (t1.ILBLRID = t2.ILBLRID) "
+                            + "JOIN RGCNSEQ4 AS t3 ON (t1.GCN_SEQNO = t3.GCN_SEQNO) "
+                            + "WHERE t1.LN IS NOT NULL AND t1.DIN IN (" + parameters + ") "
+                            + "ORDER BY t1.LN, t1.DIN")) {
+                for (int i = start; i < end; i++)
+                    pStmtToQueryDrugsByDin.setInt(i - start + 1, distinctDins[i]);
+                try (ResultSet drugsAsRst = pStmtToQueryDrugsByDin.executeQuery()) {
+                    // Like the catalog, a DIN listed under more than one name is the first one by name
+                    while (drugsAsRst.next())
+                        drugsByDin.putIfAbsent(drugsAsRst.getInt(4), Drug.createFdbDrug(drugsAsRst.getInt(4),
+                                drugsAsRst.getInt(2), drugsAsRst.getInt(3), drugsAsRst.getString(1).trim()));
+                }
+            }
+        }
+        List<Drug> drugs = new ArrayList<>(dins.length);
+        for (int din : dins) {
+            Drug drug = drugsByDin.get(din);
+            if (drug != null)
+                drugs.add(drug);
+        }
+        return drugs;
+    }
+
+    /**
+     * @return the number of drugs in the catalog
+     */
+    int size() {
+        return DINS.length;
+    }
+
+    /**
+     * Returns all drugs whose name contains a pattern, ignoring case
+     *
+     * @see Prescriber#queryDrugs(String)
+     */
+    List<Drug> queryDrugs(String pattern) {
+        return queryDrugs(pattern, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a page of the drugs whose name contains a pattern, ignoring case
+     *
+     * @param pattern string that all drug names should contain
+     * @param offset  the number of matching drugs to skip
+     * @param limit   the most drugs to return
+     * @return the matching drugs, sorted by name then DIN
+     */
+    List<Drug> queryDrugs(String pattern, int offset, int limit) {
+        return queryDrugs(pattern, 0, offset, limit);
+    }
+
+    /**
+     * Returns a page of the drugs whose name contains a pattern, starting after the last drug of the previous page
+     *
+     * @param pattern  string that all drug names should contain
+     * @param position the last drug of the previous page, or null for the first page
+     * @param pageSize the size of a page
+     * @throws IllegalArgumentException if the page size is not positive
+     * @see Prescriber#queryDrugPage(String, String, int)
+     */
+    DrugPage queryDrugPage(String pattern, DrugPage.Position position, int pageSize) {
+        Validate.isTrue(pageSize > 0, "The size of a drug page must be positive");
+        int firstPosition = position == null ? 0 : positionAfter(position);
+        return DrugPage.createDrugPage(queryDrugs(pattern, firstPosition, 0, pageSize + 1), pageSize);
+    }
+
+    private List<Drug> queryDrugs(String pattern, int firstPosition, int offset, int limit) {
+        if (offset < 0 || limit <= 0)
+            return Collections.emptyList();
+
+        List<Drug> drugs = new ArrayList<>(Math.min(limit, 64));
+        int matchesToSkip = offset;
+        LikePattern likePattern = LikePattern.compileLikePattern(pattern);
+        int candidateTrigram = findCandidateTrigram(likePattern);
+        if (candidateTrigram == NO_CANDIDATES)
+            return drugs;
+        if (candidateTrigram == EVERY_DRUG) {
+            for (int position = firstPosition; position < DISPLAY_NAMES.length && drugs.size() < limit; position++) {
+                if (likePattern.isFoundIn(DISPLAY_NAMES[position]) && matchesToSkip-- <= 0)
+                    drugs.add(getDrug(position));
+            }
+            return drugs;
+        }
+
+        // Candidate positions are sorted, so the first one at or after the first position is found with a binary search
+        int firstCandidate = Arrays.binarySearch(TRIGRAM_POSITIONS, TRIGRAM_OFFSETS[candidateTrigram],
+                TRIGRAM_OFFSETS[candidateTrigram + 1], firstPosition);
+        if (firstCandidate < 0)
+            firstCandidate = -firstCandidate - 1;
+        for (int i = firstCandidate; i < TRIGRAM_OFFSETS[candidateTrigram + 1] && drugs.size() < limit; i++) {
+            int position = TRIGRAM_POSITIONS[i];
+            if (likePattern.isFoundIn(DISPLAY_NAMES[position]) && matchesToSkip-- <= 0)
+                drugs.add(getDrug(position));
+        }
+        return drugs;
+    }
+
+    /**
+     * Only drugs containing every trigram of the ordinary characters of a pattern can match, so only the drugs in the
+     * smallest list of any of those trigrams need to be checked
+     *
+     * @return the index of that trigram, {@link #NO_CANDIDATES} if a trigram is in no name, or {@link #EVERY_DRUG} if
+     * the pattern has no run of three ordinary characters
+     */
+    private int findCandidateTrigram(LikePattern likePattern) {
+        int candidateTrigram = EVERY_DRUG;
+        for (String literalRun : likePattern.getLiteralRuns()) {
+            for (int start = 0; start + 3 <= literalRun.length(); start++) {
+                int trigram = Arrays.binarySearch(TRIGRAM_KEYS, trigramKey(literalRun, start));
+                if (trigram < 0)
+                    return NO_CANDIDATES;
+                if (candidateTrigram == EVERY_DRUG || trigramSize(trigram) < trigramSize(candidateTrigram))
+                    candidateTrigram = trigram;
+            }
+        }
+        return candidateTrigram;
+    }
+
+    /**
+     * Looks up drugs by DIN in the index of the catalog sorted by DIN
+     *
+     * @param dins the DINs of the drugs
+     * @return the drugs found, in the order of their DINs
+     * @see Prescriber#getDrugsByDin(int...)
+     */
+    List<Drug> getDrugsByDin(int[] dins) {
+        List<Drug> drugs = new ArrayList<>(dins.length);
+        for (int din : dins) {
+            int index = firstIndexByDin(din);
+            // A DIN listed under more than one name is the first one by name, like queryDrugsByDin
+            if (index < POSITIONS_BY_DIN.length && DINS[POSITIONS_BY_DIN[index]] == din)
+                drugs.add(getDrug(POSITIONS_BY_DIN[index]));
+        }
+        return drugs;
+    }
+
+    /**
+     * @return the index in POSITIONS_BY_DIN of the first drug with a DIN, or of the first drug with a greater DIN if
+     * there is none
+     */
+    private int firstIndexByDin(int din) {
+        int low = 0;
+        int high = POSITIONS_BY_DIN.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (DINS[POSITIONS_BY_DIN[middle]] < din)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the position right after the last drug of a page
+     * <p>
+     * The drug is looked up by its DIN. If it is no longer in the catalog, for example after a new data release, the
+     * page continues at the first drug that comes after it by name, found with a binary search over the catalog's own
+     * order
+     */
+    private int positionAfter(DrugPage.Position lastDrug) {
+        int positionAfter = -1;
+        for (int i = firstIndexByDin(lastDrug.DIN); i < POSITIONS_BY_DIN.length && DINS[POSITIONS_BY_DIN[i]] == lastDrug.DIN; i++) {
+            if (DISPLAY_NAMES[POSITIONS_BY_DIN[i]].equals(lastDrug.NAME))
+                positionAfter = Math.max(positionAfter, POSITIONS_BY_DIN[i] + 1);
+        }
+        if (positionAfter >= 0)
+            return positionAfter;
+
+        int low = 0;
+        int high = DINS.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = NAME_ORDER.compare(lastDrug.NAME, DISPLAY_NAMES[middle]);
+            if (comparison > 0 || (comparison == 0 && lastDrug.DIN >= DINS[middle]))
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Returns all drugs whose name contains a pattern, ignoring case, turning each into a {@link Drug} only when the
+     * stream reaches it
+     *
+     * @see Prescriber#streamDrugs(String)
+     */
+    Stream<Drug> streamDrugs(String pattern) {
+        LikePattern likePattern = LikePattern.compileLikePattern(pattern);
+        int candidateTrigram = findCandidateTrigram(likePattern);
+        if (candidateTrigram == NO_CANDIDATES)
+            return Stream.empty();
+        IntStream candidates = candidateTrigram == EVERY_DRUG ? IntStream.range(0, DISPLAY_NAMES.length)
+                : Arrays.stream(TRIGRAM_POSITIONS, TRIGRAM_OFFSETS[candidateTrigram], TRIGRAM_OFFSETS[candidateTrigram + 1]);
+        return candidates.filter(position -> likePattern.isFoundIn(DISPLAY_NAMES[position]))
+                .mapToObj(this::getDrug);
+    }
+
+    private static Comparator<String> createNameOrder() {
+        Collator collator = Collator.getInstance(Locale.ENGLISH);
+        collator.setStrength(Collator.SECONDARY);
+        return collator::compare;
+    }
+
+    private Drug getDrug(int position) {
+        return Drug.createFdbDrug(DINS[position], INGREDIENT_IDS[position], GCN_SEQNOS[position], DISPLAY_NAMES[position]);
+    }
+
+    private int trigramSize(int trigram) {
+        return TRIGRAM_OFFSETS[trigram + 1] - TRIGRAM_OFFSETS[trigram];
+    }
+
+    /**
+     * Packs the three upper cased characters of a string starting at an index into a key
+     */
+    private static long trigramKey(String string, int start) {
+        return ((long) Character.toUpperCase(string.charAt(start)) << 32)
+                | ((long) Character.toUpperCase(string.charAt(start + 1)) << 16)
+                | Character.toUpperCase(string.charAt(start + 2));
+    }
+
+}
@@ -0,0 +1,413 @@
+package Prescriber;
+
+import Apps.ConnectionPool;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable in-memory copy of every drug to drug interaction in FDB, keyed by the ingredient list (HICL_SEQNO) of
+ * the drug being prescribed and the formulation (GCN_SEQNO) of the drug the patient takes
+ * <p>
+ * That is what the query for a single drug compares: every interaction code of the prescribed drug's ingredient list
+ * against the codes of the formulation of each of the patient's drugs. The formulations of one ingredient list can
+ * have different interaction codes, so keying the patient's side by ingredient list would report interactions of
+ * formulations the patient does not take
+ * <p>
+ * Each interacting pair is stored in an open addressing hash table of long keys, with the effect and severity level
+ * (DDI_SL) of each of its interactions. Checking a drug against a patient taking N drugs is N probes of the table
+ * instead of a query
+ * <p>
+ * The table can be kept off the Java heap in direct buffers, so a large FDB release does not have to be scanned by the
+ * garbage collector. Only the distinct effects, of which there are a few thousand, stay on the heap as their codes
+ * (ADI_EFFTC) and texts
+ */
+final class DrugInteractionMatrix {
+
+    private static final int FETCH_SIZE = 5000;
+
+    // Ingredient lists and formulations are positive, so no real pair has a key of zero
+    private static final long EMPTY_KEY = 0L;
+
+    private final int MASK;
+    private final int PAIR_COUNT;
+    private final LongBuffer KEYS;
+    // The effects of the pair in slot i are at indexes [SLOT_OFFSETS[2i]..SLOT_OFFSETS[2i] + SLOT_OFFSETS[2i + 1])
+    private final IntBuffer SLOT_OFFSETS;
+    // Indexes into EFFECT_CODES and EFFECT_TEXTS, which hold each distinct effect once
+    private final IntBuffer EFFECT_TEXT_INDEXES;
+    private final IntBuffer EFFECT_SEVERITIES;
+    private final String[] EFFECT_CODES;
+    private final String[] EFFECT_TEXTS;
+
+    private DrugInteractionMatrix(Builder builder, boolean offHeap) {
+        PAIR_COUNT = builder.pairCount;
+        int capacity = Integer.highestOneBit(Math.max(2, PAIR_COUNT * 2 - 1)) << 1;
+        MASK = capacity - 1;
+        KEYS = allocateLongs(capacity, offHeap);
+        SLOT_OFFSETS = allocateInts(capacity * 2, offHeap);
+        EFFECT_TEXT_INDEXES = allocateInts(builder.EFFECT_TEXT_INDEXES.size(), offHeap);
+        EFFECT_SEVERITIES = allocateInts(builder.EFFECT_SEVERITIES.size(), offHeap);
+        EFFECT_CODES = builder.EFFECT_CODES.toArray(new String[0]);
+        EFFECT_TEXTS = builder.EFFECT_TEXTS.toArray(new String[0]);
+
+        EFFECT_TEXT_INDEXES.put(builder.EFFECT_TEXT_INDEXES.values, 0, builder.EFFECT_TEXT_INDEXES.size());
+        EFFECT_SEVERITIES.put(builder.EFFECT_SEVERITIES.values, 0, builder.EFFECT_SEVERITIES.size());
+        for (int pair = 0; pair < PAIR_COUNT; pair++) {
+            long key = builder.pairKeys[pair];
+            int slot = findSlot(key);
+            if (KEYS.get(slot) == key)
+                throw new IllegalArgumentException("The interactions of a pair must be added together");
+            KEYS.put(slot, key);
+            int effectsStart = builder.PAIR_OFFSETS.get(pair);
+            int effectsEnd = pair + 1 < PAIR_COUNT ? builder.PAIR_OFFSETS.get(pair + 1) : builder.EFFECT_TEXT_INDEXES.size();
+            SLOT_OFFSETS.put(2 * slot, effectsStart);
+            SLOT_OFFSETS.put(2 * slot + 1, effectsEnd - effectsStart);
+        }
+    }
+
+    private DrugInteractionMatrix(int pairCount, LongBuffer keys, IntBuffer slotOffsets, IntBuffer effectTextIndexes,
+                                  IntBuffer effectSeverities, String[] effectCodes, String[] effectTexts) {
+        if (Integer.bitCount(keys.limit()) != 1 || slotOffsets.limit() != 2 * keys.limit()
+                || effectCodes.length != effectTexts.length || effectSeverities.limit() != effectTextIndexes.limit())
+            throw new IllegalArgumentException("The hash table of a drug interaction matrix is malformed");
+        // Checked once here, so a corrupt file fails when it is opened rather than when a pair is looked up
+        for (int slot = 0; slot < keys.limit(); slot++) {
+            if (keys.get(slot) != EMPTY_KEY && (slotOffsets.get(2 * slot) < 0 || slotOffsets.get(2 * slot + 1) < 0
+                    || (long) slotOffsets.get(2 * slot) + slotOffsets.get(2 * slot + 1) > effectTextIndexes.limit()))
+                throw new IllegalArgumentException("The effects of a drug interaction matrix pair are out of range");
+        }
+        for (int effect = 0; effect < effectTextIndexes.limit(); effect++) {
+            if (effectTextIndexes.get(effect) < 0 || effectTextIndexes.get(effect) >= effectCodes.length)
+                throw new IllegalArgumentException("The effect indexes of a drug interaction matrix are out of range");
+        }
+        PAIR_COUNT = pairCount;
+        MASK = keys.limit() - 1;
+        KEYS = keys;
+        SLOT_OFFSETS = slotOffsets;
+        EFFECT_TEXT_INDEXES = effectTextIndexes;
+        EFFECT_SEVERITIES = effectSeverities;
+        EFFECT_CODES = effectCodes;
+        EFFECT_TEXTS = effectTexts;
+    }
+
+    /**
+     * Reads a matrix from a snapshot file. The hash table is used where it lies in the file rather than copied, so
+     * only the effect codes and texts are read onto the heap
+     *
+     * @see FdbSnapshotFile
+     */
+    static DrugInteractionMatrix readFrom(ByteBuffer buffer) {
+        int pairCount = buffer.getInt();
+        return new DrugInteractionMatrix(pairCount, FdbSnapshotFile.mapLongs(buffer), FdbSnapshotFile.mapInts(buffer),
+                FdbSnapshotFile.mapInts(buffer), FdbSnapshotFile.mapInts(buffer), FdbSnapshotFile.readStrings(buffer),
+                FdbSnapshotFile.readStrings(buffer));
+    }
+
+    /**
+     * Writes the hash table of the matrix, as it is laid out in memory, to a snapshot file
+     *
+     * @see FdbSnapshotFile
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(PAIR_COUNT);
+        FdbSnapshotFile.writeLongs(out, KEYS);
+        FdbSnapshotFile.writeInts(out, SLOT_OFFSETS);
+        FdbSnapshotFile.writeInts(out, EFFECT_TEXT_INDEXES);
+        FdbSnapshotFile.writeInts(out, EFFECT_SEVERITIES);
+        FdbSnapshotFile.writeStrings(out, EFFECT_CODES);
+        FdbSnapshotFile.writeStrings(out, EFFECT_TEXTS);
+    }
+
+    /**
+     * Precomputes every interacting pair of an ingredient list and a formulation, with the same joins that {@link
+     * Prescriber#findInteractions(Drug, Patient)} uses for a single drug
+     *
+     * @param fdbConnection connection to the FDB database
+     * @param offHeap       whether to keep the table in direct buffers outside the Java heap
+     * @return a matrix of all drug to drug interactions
+     * @throws SQLException if the interactions could not be queried
+     */
+    static DrugInteractionMatrix loadDrugInteractionMatrix(Connection fdbConnection, boolean offHeap) throws SQLException {
+        return loadDrugInteractionMatrix(fdbConnection, "", "", offHeap);
+    }
+
+    /**
+     * Checks every pair of a patient's drugs with the one query that loads the interactions between the patient's
+     * ingredient lists and formulations
+     *
+     * @param connectionPool pool to borrow the connection for the query from
+     * @param patient        the patient whose drugs are checked
+     * @return the interactions of each pair, as {@link #reviewRegimen(Patient)} reports them
+     * @see Prescriber#reviewRegimen(Patient)
+     */
+    static List<DrugInteraction> reviewRegimen(ConnectionPool connectionPool, Patient patient) {
+        if (patient.getDrugsPrescribed().size() < 2)
+            return new ArrayList<>();
+        int[] ingredientIdentifiers = patient.getDrugsPrescribed().stream()
+                .mapToInt(Drug::getIngredientIdentifier).distinct().sorted().toArray();
+        int[] gcnSeqnos = patient.getDrugsPrescribed().stream()
+                .mapToInt(Drug::getGcnSeqno).distinct().sorted().toArray();
+        try (Connection fdbConnection = connectionPool.borrowConnection()) {
+            return loadDrugInteractionMatrix(fdbConnection, ingredientIdentifiers, gcnSeqnos).reviewRegimen(patient);
+        } catch (SQLException e) {
+            throw new IllegalStateException("SQL is bad for reviewing a regimen.\n" + e.getSQLState());
+        }
+    }
+
+    /**
+     * Precomputes the interactions between some ingredient lists and some formulations, for checking a batch of
+     * prescriptions
+     *
+     * @param fdbConnection         connection to the FDB database
+     * @param ingredientIdentifiers ingredient lists of the drugs being prescribed
+     * @param otherGcnSeqnos        formulations of the drugs they may interact with
+     * @return a matrix of the interactions between the ingredient lists and the formulations
+     * @throws SQLException if the interactions could not be queried
+     */
+    static DrugInteractionMatrix loadDrugInteractionMatrix(Connection fdbConnection, int[] ingredientIdentifiers,
+                                                           int[] otherGcnSeqnos) throws SQLException {
+        return loadDrugInteractionMatrix(fdbConnection, "WHERE HICL_SEQNO IN (" + joinIds(ingredientIdentifiers) + ") ",
+                "WHERE GCN.GCN_SEQNO IN (" + joinIds(otherGcnSeqnos) + ") ", false);
+    }
+
+    private static DrugInteractionMatrix loadDrugInteractionMatrix(Connection fdbConnection, String ingredientFilter,
+                                                                   String otherFormulationFilter, boolean offHeap) throws SQLException {
+        try (PreparedStatement pStmtToQueryAllDrugToDrugInteractions = ConnectionPool.prepareUncachedStatement(fdbConnection,
+                "SELECT DISTINCT HICL1, GCN2, F0.ADI_EFFTC, ADI_EFFTXT, L1.DDI_SL "
+                        + "FROM "
+                        + "(SELECT DISTINCT HICL_SEQNO AS HICL1, C4.DDI_CODEX AS CODEX1, DDI_MONOX AS MONOX1, A5.DDI_SL AS SL1 "
+                        + "FROM RGCNSEQ4 AS GCN "
+                        + "JOIN RADIMGC4 AS C4 ON (GCN.GCN_SEQNO = C4.GCN_SEQNO) "
+                        + "JOIN RADIMMA5 AS A5 ON (C4.DDI_CODEX = A5.DDI_CODEX) "
+                        + ingredientFilter
+                        + ") AS Table1 "
+                        + "JOIN "
+                        + "(SELECT DISTINCT GCN.GCN_SEQNO AS GCN2, C4.DDI_CODEX AS CODEX2, DDI_MONOX AS MONOX2 "
+                        + "FROM RGCNSEQ4 AS GCN "
+                        + "JOIN RADIMGC4 AS C4 ON (GCN.GCN_SEQNO = C4.GCN_SEQNO) "
+                        + "JOIN RADIMMA5 AS A5 ON (C4.DDI_CODEX = A5.DDI_CODEX) "
+                        + otherFormulationFilter
+                        + ") AS Table2 ON (MONOX1 = MONOX2 AND CODEX1 != CODEX2) "
+                        + "JOIN RADIMIE4 AS E4 ON (CODEX1 = E4.DDI_CODEX) "
+                        + "JOIN RADIMEF0 AS F0 ON (E4.ADI_EFFTC = F0.ADI_EFFTC) "
+                        + "JOIN RADIMSL1 AS L1 ON (SL1 = L1.DDI_SL) "
+                        + "ORDER BY HICL1, GCN2")) {
+            pStmtToQueryAllDrugToDrugInteractions.setFetchSize(FETCH_SIZE);
+            try (ResultSet drugToDrugInteractionsAsRst = pStmtToQueryAllDrugToDrugInteractions.executeQuery()) {
+                Builder builder = new Builder();
+                while (drugToDrugInteractionsAsRst.next()) {
+                    builder.add(drugToDrugInteractionsAsRst.getInt(1), drugToDrugInteractionsAsRst.getInt(2),
+                            drugToDrugInteractionsAsRst.getString(3).trim(), drugToDrugInteractionsAsRst.getString(4).trim(),
+                            drugToDrugInteractionsAsRst.getInt(5));
+                }
+                return builder.build(offHeap);
+            }
+        }
+    }
+
+    /**
+     * Joins ids into the comma separated list of an IN clause. They are ints, so they cannot inject any SQL
+     */
+    static String joinIds(int[] ids) {
+        StringBuilder joinedIds = new StringBuilder();
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0)
+                joinedIds.append(',');
+            joinedIds.append(ids[i]);
+        }
+        return joinedIds.toString();
+    }
+
+    /**
+     * @return the number of interacting pairs of an ingredient list and a formulation
+     */
+    int size() {
+        return PAIR_COUNT;
+    }
+
+    /**
+     * Finds all interactions between a drug being prescribed and the drugs currently prescribed to a patient
+     * <p>
+     * Like the query it replaces, each effect is only listed once for each drug the patient takes, and the interactions
+     * are ordered by the DIN of that drug
+     *
+     * @see Prescriber#queryDrugInteractionsWithOtherDrugs(Drug, Patient)
+     */
+    List<DrugInteraction> findInteractions(Drug drug, Patient patient) {
+        List<DrugInteraction> drugToDrugInteractions = new ArrayList<>();
+        for (Drug drugPrescribed : patient.getDrugsPrescribed())
+            addInteractions(drug, drugPrescribed, drugToDrugInteractions);
+        return drugToDrugInteractions;
+    }
+
+    /**
+     * Finds all interactions between the drugs a patient takes, checking each pair of drugs once
+     *
+     * @see Prescriber#reviewRegimen(Patient)
+     */
+    List<DrugInteraction> reviewRegimen(Patient patient) {
+        List<DrugInteraction> drugToDrugInteractions = new ArrayList<>();
+        Drug[] drugsPrescribed = patient.getDrugsPrescribed().toArray(new Drug[0]);
+        for (int i = 0; i < drugsPrescribed.length; i++) {
+            for (int j = i + 1; j < drugsPrescribed.length; j++)
+                addInteractions(drugsPrescribed[i], drugsPrescribed[j], drugToDrugInteractions);
+        }
+        return drugToDrugInteractions;
+    }
+
+    private void addInteractions(Drug drug, Drug drugPrescribed, List<DrugInteraction> drugToDrugInteractions) {
+        int slot = findSlot(pairKey(drug.getIngredientIdentifier(), drugPrescribed.getGcnSeqno()));
+        if (KEYS.get(slot) == EMPTY_KEY)
+            return;
+        int effectsStart = SLOT_OFFSETS.get(2 * slot);
+        int effectsEnd = effectsStart + SLOT_OFFSETS.get(2 * slot + 1);
+        for (int effect = effectsStart; effect < effectsEnd; effect++) {
+            if (!hasSameText(effectsStart, effect))
+                drugToDrugInteractions.add(DrugInteraction.createFdbDrugToDrugInteraction(drug, drugPrescribed,
+                        EFFECT_CODES[EFFECT_TEXT_INDEXES.get(effect)], EFFECT_TEXTS[EFFECT_TEXT_INDEXES.get(effect)],
+                        DrugInteraction.Severity.fromFdbSeverityLevel(mostSevereLevelOfText(effect, effectsEnd))));
+        }
+    }
+
+    /**
+     * An effect reported once for several severity levels is reported with the most severe one
+     */
+    private int mostSevereLevelOfText(int effect, int effectsEnd) {
+        int textIndex = EFFECT_TEXT_INDEXES.get(effect);
+        int severityLevel = EFFECT_SEVERITIES.get(effect);
+        for (int laterEffect = effect + 1; laterEffect < effectsEnd; laterEffect++) {
+            if (EFFECT_TEXT_INDEXES.get(laterEffect) == textIndex)
+                severityLevel = Math.min(severityLevel, EFFECT_SEVERITIES.get(laterEffect));
+        }
+        return severityLevel;
+    }
+
+    /**
+     * Returns the most severe level (the lowest DDI_SL) of the interactions between an ingredient list and a formulation
+     *
+     * @return the severity level, or zero if they do not interact
+     */
+    int getSeverityLevel(int ingredientIdentifier, int otherGcnSeqno) {
+        int slot = findSlot(pairKey(ingredientIdentifier, otherGcnSeqno));
+        if (KEYS.get(slot) == EMPTY_KEY)
+            return 0;
+        int effectsStart = SLOT_OFFSETS.get(2 * slot);
+        int effectsEnd = effectsStart + SLOT_OFFSETS.get(2 * slot + 1);
+        int severityLevel = Integer.MAX_VALUE;
+        for (int effect = effectsStart; effect < effectsEnd; effect++)
+            severityLevel = Math.min(severityLevel, EFFECT_SEVERITIES.get(effect));
+        return severityLevel;
+    }
+
+    /**
+     * The same effect can come up at more than one severity level, but it is only reported once. Each distinct effect
+     * code and text has one index, so comparing indexes compares both
+     */
+    private boolean hasSameText(int effectsStart, int effect) {
+        int textIndex = EFFECT_TEXT_INDEXES.get(effect);
+        for (int earlierEffect = effectsStart; earlierEffect < effect; earlierEffect++) {
+            if (EFFECT_TEXT_INDEXES.get(earlierEffect) == textIndex)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the slot holding a key, or the empty slot where it would go
+     */
+    private int findSlot(long key) {
+        int slot = mix(key) & MASK;
+        while (true) {
+            long keyInSlot = KEYS.get(slot);
+            if (keyInSlot == key || keyInSlot == EMPTY_KEY)
+                return slot;
+            slot = (slot + 1) & MASK;
+        }
+    }
+
+    private static long pairKey(int ingredientIdentifier, int otherGcnSeqno) {
+        return ((long) ingredientIdentifier << 32) | (otherGcnSeqno & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Spreads the bits of a key, since the ids of the pairs are close together
+     */
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static LongBuffer allocateLongs(int count, boolean offHeap) {
+        return offHeap ? ByteBuffer.allocateDirect(count * Long.BYTES).asLongBuffer() : LongBuffer.allocate(count);
+    }
+
+    private static IntBuffer allocateInts(int count, boolean offHeap) {
+        return offHeap ? ByteBuffer.allocateDirect(count * Integer.BYTES).asIntBuffer() : IntBuffer.allocate(count);
+    }
+
+    /**
+     * Collects interactions that are added one pair at a time
+     */
+    static final class Builder {
+        private long[] pairKeys = new long[64];
+        private int pairCount;
+        private final IntList PAIR_OFFSETS = new IntList();
+        private final IntList EFFECT_TEXT_INDEXES = new IntList();
+        private final IntList EFFECT_SEVERITIES = new IntList();
+        private final List<String> EFFECT_CODES = new ArrayList<>();
+        private final List<String> EFFECT_TEXTS = new ArrayList<>();
+        private final Map<List<String>, Integer> EFFECT_TEXT_INDEX_BY_EFFECT = new HashMap<>();
+
+        /**
+         * Adds an interaction. All interactions of a pair must be added one after another
+         *
+         * @param ingredientIdentifier ingredient list of the drug being prescribed
+         * @param otherGcnSeqno        formulation of the drug it interacts with
+         * @param effectCode                code of the effect of the interaction (ADI_EFFTC)
+         * @param effectText                description of the effect of the interaction
+         * @param severityLevel             severity level (DDI_SL) of the interaction
+         */
+        Builder add(int ingredientIdentifier, int otherGcnSeqno, String effectCode, String effectText,
+                    int severityLevel) {
+            long key = pairKey(ingredientIdentifier, otherGcnSeqno);
+            if (pairCount == 0 || pairKeys[pairCount - 1] != key) {
+                if (pairCount == pairKeys.length)
+                    pairKeys = Arrays.copyOf(pairKeys, pairCount * 2);
+                pairKeys[pairCount++] = key;
+                PAIR_OFFSETS.add(EFFECT_TEXT_INDEXES.size());
+            }
+            EFFECT_TEXT_INDEXES.add(EFFECT_TEXT_INDEX_BY_EFFECT.computeIfAbsent(Arrays.asList(effectCode, effectText), effect -> {
+                EFFECT_CODES.add(effectCode);
+                EFFECT_TEXTS.add(effectText);
+                return EFFECT_TEXTS.size() - 1;
+            }));
+            EFFECT_SEVERITIES.add(severityLevel);
+            return this;
+        }
+
+        /**
+         * @param offHeap whether to keep the table in direct buffers outside the Java heap
+         */
+        DrugInteractionMatrix build(boolean offHeap) {
+            return new DrugInteractionMatrix(this, offHeap);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package Prescriber;
+
+import Info.Drug;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A page of the drugs whose name contains a pattern, along with a token for fetching the page after it
+ * <p>
+ * Pages are sorted by name then DIN. The continuation token holds the name and DIN of the last drug on the page, so the
+ * next page starts right after that drug instead of skipping every earlier row, and fetching page 100 costs the same as
+ * fetching page 1. Tokens are opaque and should only be passed back to the prescriber that made them
+ *
+ * @see Prescriber#queryDrugPage(String, String, int)
+ */
+public final class DrugPage {
+
+    /**
+     * The order drugs are paged in when they are sorted in Java rather than by the database
+     */
+    static final Comparator<Drug> DRUG_ORDER = Comparator.comparing(Drug::getDisplayName, String.CASE_INSENSITIVE_ORDER)
+            .thenComparingInt(Drug::getId);
+
+    private final List<Drug> DRUGS;
+    private final String CONTINUATION_TOKEN;
+
+    private DrugPage(List<Drug> drugs, String continuationToken) {
+        DRUGS = Collections.unmodifiableList(drugs);
+        CONTINUATION_TOKEN = continuationToken;
+    }
+
+    /**
+     * Creates a page from the drugs that were fetched for it
+     *
+     * @param drugs    up to one more drug than the page size, where the extra drug only shows that there is a next page
+     * @param pageSize the size of a page
+     */
+    static DrugPage createDrugPage(List<Drug> drugs, int pageSize) {
+        if (drugs.size() <= pageSize)
+            return new DrugPage(drugs, null);
+        List<Drug> drugsOnPage = drugs.subList(0, pageSize);
+        Drug lastDrug = drugsOnPage.get(pageSize - 1);
+        return new DrugPage(drugsOnPage, encodeToken(new Position(lastDrug.getDisplayName(), lastDrug.getId())));
+    }
+
+    /**
+     * @return the drugs on this page, sorted by name then DIN
+     */
+    public List<Drug> getDrugs() {
+        return DRUGS;
+    }
+
+    /**
+     * @return the token to pass to {@link Prescriber#queryDrugPage(String, String, int)} for the next page, or null if
+     * this is the last page
+     */
+    public String getContinuationToken() {
+        return CONTINUATION_TOKEN;
+    }
+
+    public boolean hasNextPage() {
+        return CONTINUATION_TOKEN != null;
+    }
+
+    /**
+     * Decodes a continuation token
+     *
+     * @param continuationToken a token made by {@link #getContinuationToken()}, or null for the first page
+     * @return the position of the last drug on the previous page, or null for the first page
+     * @throws IllegalArgumentException if the token was not made by a page
+     */
+    static Position decodeToken(String continuationToken) {
+        if (continuationToken == null)
+            return null;
+        try (DataInputStream tokenInput = new DataInputStream(new ByteArrayInputStream(
+                Base64.getUrlDecoder().decode(continuationToken)))) {
+            return new Position(tokenInput.readUTF(), tokenInput.readInt());
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Not a drug page continuation token: " + continuationToken);
+        }
+    }
+
+    private static String encodeToken(Position position) {
+        ByteArrayOutputStream tokenBytes = new ByteArrayOutputStream();
+        try (DataOutputStream tokenOutput = new DataOutputStream(tokenBytes)) {
+            tokenOutput.writeUTF(position.NAME);
+            tokenOutput.writeInt(position.DIN);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write a continuation token", e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes.toByteArray());
+    }
+
+    /**
+     * The name (LN) and DIN of the last drug on a page
+     */
+    static final class Position {
+        final String NAME;
+        final int DIN;
+
+        Position(String name, int din) {
+            NAME = name;
+            DIN = din;
+        }
+
+        /**
+         * @return whether a drug comes after this position in {@link #DRUG_ORDER}
+         */
+        boolean isBefore(Drug drug) {
+            int comparison = String.CASE_INSENSITIVE_ORDER.compare(NAME, drug.getDisplayName());
+            return comparison < 0 || (comparison == 0 && DIN < drug.getId());
+        }
+    }
+}
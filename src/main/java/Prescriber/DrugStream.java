@@ -0,0 +1,116 @@
+package Prescriber;
+
+import Apps.ConnectionPool;
+import Info.Drug;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams the drugs whose name contains a pattern straight from a result set, so only the rows the driver has
+ * buffered are in memory however many drugs match
+ * <p>
+ * The connection is borrowed until the stream is closed, so streams must be closed, usually with a try-with-resources
+ * block. The statement fetches {@value #FETCH_SIZE} rows per round trip. The SQL Server driver already buffers
+ * responses adaptively by default, reading rows from the network as they are consumed rather than all at once
+ * <p>
+ * Closing a stream before its last row cancels the statement, since otherwise the driver reads and discards every row
+ * that is left before the connection can be used again. The statement is cached by the connection, so its fetch size
+ * is put back on close for whoever prepares the same query next
+ */
+final class DrugStream {
+
+    private static final int FETCH_SIZE = 256;
+
+    private DrugStream() {
+    }
+
+    /**
+     * @param connectionPool pool to borrow the connection from
+     * @param pattern        string that all drug names should contain
+     * @return the matching drugs sorted by name, which must be closed to give back the connection
+     * @see Prescriber#streamDrugs(String)
+     */
+    static Stream<Drug> streamDrugs(ConnectionPool connectionPool, String pattern) {
+        Connection fdbConnection = null;
+        try {
+            fdbConnection = connectionPool.borrowConnection();
+            PreparedStatement pStmtToQueryDrugsBasedOnPrefix = fdbConnection.prepareStatement(
+                    "SELECT t1.LN, t3.HICL_SEQNO, t1.GCN_SEQNO, t1.DIN "
+                            + "FROM RICAIDC1 AS t1 "
+                            + "JOIN RLBLRCA1 AS t2 ON (t1.ILBLRID = t2.ILBLRID) "
+                            + "JOIN RGCNSEQ4 AS t3 ON (t1.GCN_SEQNO = t3.GCN_SEQNO) "
+                            + "WHERE t1.LN LIKE ? "
+                            + "ORDER BY t1.LN");
+            pStmtToQueryDrugsBasedOnPrefix.setString(1, "%" + pattern + "%");
+            int previousFetchSize = pStmtToQueryDrugsBasedOnPrefix.getFetchSize();
+            pStmtToQueryDrugsBasedOnPrefix.setFetchSize(FETCH_SIZE);
+            DrugSpliterator drugs;
+            try {
+                drugs = new DrugSpliterator(pStmtToQueryDrugsBasedOnPrefix.executeQuery());
+            } finally {
+                // The rows already asked for keep the fetch size they were queried with
+                pStmtToQueryDrugsBasedOnPrefix.setFetchSize(previousFetchSize);
+            }
+
+            Connection connectionToClose = fdbConnection;
+            return StreamSupport.stream(drugs, false)
+                    .onClose(() -> close(pStmtToQueryDrugsBasedOnPrefix, drugs, connectionToClose));
+        } catch (SQLException e) {
+            close(null, null, fdbConnection);
+            throw new IllegalStateException("SQL is bad for querying drugs.\n" + e.getSQLState());
+        }
+    }
+
+    private static void close(PreparedStatement pStmtToQueryDrugs, DrugSpliterator drugs, Connection fdbConnection) {
+        try {
+            if (drugs != null) {
+                if (!drugs.exhausted)
+                    pStmtToQueryDrugs.cancel();
+                drugs.DRUGS_AS_RST.close();
+            }
+        } catch (SQLException e) {
+            // The connection is still given back below
+        }
+        try {
+            if (fdbConnection != null)
+                fdbConnection.close();
+        } catch (SQLException e) {
+            throw new IllegalStateException("SQL is bad for giving back a connection.\n" + e.getSQLState());
+        }
+    }
+
+    /**
+     * Turns each row of a result set into a drug as the stream asks for it
+     */
+    private static final class DrugSpliterator extends Spliterators.AbstractSpliterator<Drug> {
+        private final ResultSet DRUGS_AS_RST;
+        private boolean exhausted;
+
+        private DrugSpliterator(ResultSet drugsAsRst) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            DRUGS_AS_RST = drugsAsRst;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Drug> action) {
+            try {
+                if (exhausted || !DRUGS_AS_RST.next()) {
+                    exhausted = true;
+                    return false;
+                }
+                action.accept(Drug.createFdbDrug(DRUGS_AS_RST.getInt(4), DRUGS_AS_RST.getInt(2), DRUGS_AS_RST.getInt(3), DRUGS_AS_RST.getString(1).trim()));
+                return true;
+            } catch (SQLException e) {
+                throw new IllegalStateException("SQL is bad for querying drugs.\n" + e.getSQLState());
+            }
+        }
+    }
+}
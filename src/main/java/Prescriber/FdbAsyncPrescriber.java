@@ -0,0 +1,86 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+import org.apache.commons.lang3.Validate;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An implementation of {@link AsyncPrescriber} that runs each query of a blocking {@link Prescriber} as a task on an
+ * executor
+ */
+final class FdbAsyncPrescriber implements AsyncPrescriber {
+
+    private static ExecutorService defaultExecutor;
+
+    private final Prescriber PRESCRIBER;
+    private final Executor EXECUTOR;
+
+    /**
+     * @see AsyncPrescriber#createAsyncPrescriber(Prescriber, Executor)
+     */
+    FdbAsyncPrescriber(Prescriber prescriber, Executor executor) {
+        Validate.notNull(prescriber, "The prescriber of an async prescriber cannot be null");
+        Validate.notNull(executor, "The executor of an async prescriber cannot be null");
+        PRESCRIBER = prescriber;
+        EXECUTOR = executor;
+    }
+
+    /**
+     * Returns the executor shared by every async prescriber created without an executor
+     * <p>
+     * A query spends nearly all of its time waiting on the database, so on a JVM with virtual threads (Java 21 and
+     * up) each query gets its own virtual thread. We look the factory up reflectively so the API still builds and runs
+     * on Java 8, where we fall back to a cached pool of daemon threads
+     */
+    static synchronized ExecutorService defaultExecutor() {
+        if (defaultExecutor == null) {
+            try {
+                Method virtualThreadFactory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                defaultExecutor = (ExecutorService) virtualThreadFactory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                AtomicInteger threadCount = new AtomicInteger();
+                defaultExecutor = Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "async-prescriber-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        return defaultExecutor;
+    }
+
+    @Override
+    public CompletableFuture<List<Drug>> queryDrugsAsync(String pattern) {
+        return CompletableFuture.supplyAsync(() -> PRESCRIBER.queryDrugs(pattern), EXECUTOR);
+    }
+
+    @Override
+    public CompletableFuture<List<Drug>> queryDrugsAsync(String pattern, int page) {
+        return CompletableFuture.supplyAsync(() -> PRESCRIBER.queryDrugs(pattern, page), EXECUTOR);
+    }
+
+    @Override
+    public CompletableFuture<List<Allergy>> queryAllergiesAsync(String prefix) {
+        return CompletableFuture.supplyAsync(() -> PRESCRIBER.queryAllergies(prefix), EXECUTOR);
+    }
+
+    @Override
+    public CompletableFuture<List<DrugInteraction>> findInteractionsAsync(Drug drugBeingPrescribed, Patient patient) {
+        return CompletableFuture.supplyAsync(() -> PRESCRIBER.findInteractions(drugBeingPrescribed, patient), EXECUTOR);
+    }
+
+    @Override
+    public Prescriber getPrescriber() {
+        return PRESCRIBER;
+    }
+}
@@ -1,6 +1,7 @@
 package Prescriber;
 
 import Apps.ConnectionConfiguration;
+import Apps.ConnectionPool;
 import Info.Allergy;
 import Info.Drug;
 import Info.DrugInteraction;
@@ -13,21 +14,34 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 
 /**
  * An implementation of {@link Prescriber} using the FDB database with the use of all of our optimization techniques.
  * That is, with the use of parallel programming, pagination, and manipulating relational algebra
  * <p>
- * We parallelized {@link #findInteractions(Drug, Patient)}, paginated {@link #queryDrugs(String, int)}, and manipulated
- * relational algebra in all queries
+ * We parallelized {@link #findInteractions(Drug, Patient)}, paginated {@link #queryDrugs(String, int)} and {@link
+ * #queryDrugPage(String, String, int)}, and manipulated relational algebra in all queries
+ * <p>
+ * In catalog mode, {@link #queryDrugs(String)} and {@link #queryDrugs(String, int)} are served from a {@link
+ * DrugCatalog} that is loaded the first time drugs are queried, rather than by a leading wildcard LIKE on every call.
+ * Drug to drug interactions are found in a precomputed {@link DrugInteractionMatrix}, and allergy interactions in an
+ * {@link AllergenBitmapIndex}, rather than by a query
+ * <p>
+ * The allergy and drug to drug interactions found for a drug are kept in an {@link InteractionCache}, so checking the
+ * same drug against the same medications again does not query the database. Food interactions are looked up in a
+ * {@link FoodInteractionTable}
+ * <p>
+ * Every in-memory copy belongs to an {@link FdbSnapshot}, which is replaced without a restart when a new FDB data
+ * release is loaded. The interaction cache is cleared at the same time
  */
 final class FdbPrescriberOptimized implements Prescriber {
 
-    private final Connection FDB_CONNECTION;
+    private final ConnectionPool CONNECTION_POOL;
+    private final FdbSnapshotManager SNAPSHOTS;
     private final int PAGE_SIZE;
+    private final boolean USE_DRUG_CATALOG;
+    private final InteractionCache INTERACTION_CACHE;
 
     /**
      * @see #createFdbPrescriber()
@@ -40,19 +54,66 @@ final class FdbPrescriberOptimized implements Prescriber {
      * @see #createFdbPrescriber(int)
      */
     FdbPrescriberOptimized(int pageSize) {
+        this(pageSize, false);
+    }
+
+    /**
+     * @see #createFdbPrescriberWithCatalog(int)
+     */
+    FdbPrescriberOptimized(int pageSize, boolean useDrugCatalog) {
+        this(pageSize, useDrugCatalog, false, InteractionCache.createInteractionCache());
+    }
+
+    /**
+     * @param pageSize         the size of a page
+     * @param useDrugCatalog   whether drugs and their drug to drug and allergy interactions are served from memory
+     * @param offHeapMatrix    whether the drug to drug interactions are kept outside the Java heap
+     * @param interactionCache where the interactions that are still queried are cached
+     * @see #createFdbPrescriber(int, InteractionCache)
+     * @see #createFdbPrescriberWithCatalog(int, boolean)
+     */
+    FdbPrescriberOptimized(int pageSize, boolean useDrugCatalog, boolean offHeapMatrix, InteractionCache interactionCache) {
         PAGE_SIZE = pageSize;
-        FDB_CONNECTION = ConnectionConfiguration.getJdbcConnection();
+        USE_DRUG_CATALOG = useDrugCatalog;
+        INTERACTION_CACHE = interactionCache;
+        CONNECTION_POOL = ConnectionConfiguration.getJdbcConnectionPool();
+        SNAPSHOTS = FdbSnapshotManager.createSnapshotManager(CONNECTION_POOL, offHeapMatrix, interactionCache::clear);
     }
 
     @Override
     public List<Drug> queryDrugs(String pattern) {
+        if (USE_DRUG_CATALOG) {
+            try (FdbSnapshotManager.Lease lease = SNAPSHOTS.acquire()) {
+                return lease.getSnapshot().getDrugCatalog().queryDrugs(pattern);
+            }
+        }
         return queryManufacturerDrugs(pattern);
     }
 
+    @Override
+    public Stream<Drug> streamDrugs(String pattern) {
+        if (USE_DRUG_CATALOG) {
+            // The generation is leased until the stream is closed, not just until this method returns
+            FdbSnapshotManager.Lease lease = SNAPSHOTS.acquire();
+            try {
+                return lease.getSnapshot().getDrugCatalog().streamDrugs(pattern).onClose(lease::close);
+            } catch (RuntimeException e) {
+                lease.close();
+                throw e;
+            }
+        }
+        return DrugStream.streamDrugs(CONNECTION_POOL, pattern);
+    }
+
     @Override
     public List<Drug> queryDrugs(String pattern, int page) {
-        try {
-            PreparedStatement pStmtToQueryDrugsBasedOnPrefix = FDB_CONNECTION.prepareStatement(
+        if (USE_DRUG_CATALOG) {
+            try (FdbSnapshotManager.Lease lease = SNAPSHOTS.acquire()) {
+                return lease.getSnapshot().getDrugCatalog().queryDrugs(pattern, page * PAGE_SIZE, PAGE_SIZE);
+            }
+        }
+        try (Connection fdbConnection = CONNECTION_POOL.borrowConnection()) {
+            PreparedStatement pStmtToQueryDrugsBasedOnPrefix = fdbConnection.prepareStatement(
                     "SELECT t1.LN, t3.HICL_SEQNO, t1.GCN_SEQNO, t1.DIN, t1.IADDDTE, t1.IOBSDTE, t2.MFG "
                             + "FROM RICAIDC1 AS t1 "
                             + "JOIN RLBLRCA1 AS t2 ON (t1.ILBLRID = t2.ILBLRID) "
@@ -64,16 +125,41 @@ final class FdbPrescriberOptimized implements Prescriber {
             pStmtToQueryDrugsBasedOnPrefix.setString(1, "%" + pattern + "%");
             pStmtToQueryDrugsBasedOnPrefix.setInt(2, page * PAGE_SIZE);
             pStmtToQueryDrugsBasedOnPrefix.setInt(3, PAGE_SIZE);
-            ResultSet drugsAsRst = pStmtToQueryDrugsBasedOnPrefix.executeQuery();
+            try (ResultSet drugsAsRst = pStmtToQueryDrugsBasedOnPrefix.executeQuery()) {
+                List<Drug> drugsAsObjects = new ArrayList<>();
 
-            List<Drug> drugsAsObjects = new ArrayList<>();
+                // For each SQL result, create a Java object representing that drug
+                while (drugsAsRst.next()) {
+                    Drug drug = Drug.createFdbDrug(drugsAsRst.getInt(4), drugsAsRst.getInt(2), drugsAsRst.getInt(3), drugsAsRst.getString(1).trim());
+                    drugsAsObjects.add(drug);
+                }
+                return drugsAsObjects;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("SQL is bad for querying drugs.\n" +
+                    e.getSQLState());
+        }
+    }
 
-            // For each SQL result, create a Java object representing that drug
-            while (drugsAsRst.next()) {
-                Drug drug = Drug.createFdbDrug(drugsAsRst.getInt(4), drugsAsRst.getInt(2), drugsAsRst.getInt(3), drugsAsRst.getString(1).trim());
-                drugsAsObjects.add(drug);
+    @Override
+    public List<Drug> getDrugsByDin(int... dins) {
+        if (USE_DRUG_CATALOG) {
+            try (FdbSnapshotManager.Lease lease = SNAPSHOTS.acquire()) {
+                return lease.getSnapshot().getDrugCatalog().getDrugsByDin(dins);
+            }
+        }
+        return DrugCatalog.queryDrugsByDin(CONNECTION_POOL, dins);
+    }
+
+    @Override
+    public DrugPage queryDrugPage(String pattern, String continuationToken, int pageSize) {
+        if (USE_DRUG_CATALOG) {
+            try (FdbSnapshotManager.Lease lease = SNAPSHOTS.acquire()) {
+                return lease.getSnapshot().getDrugCatalog().queryDrugPage(pattern, DrugPage.decodeToken(continuationToken), pageSize);
             }
-            return drugsAsObjects;
+        }
+        try (Connection fdbConnection = CONNECTION_POOL.borrowConnection()) {
+            return KeysetDrugQuery.queryDrugPage(fdbConnection, pattern, continuationToken, pageSize);
         } catch (SQLException e) {
             throw new IllegalStateException("SQL is bad for querying drugs.\n" +
                     e.getSQLState());
@@ -82,15 +168,47 @@ final class FdbPrescriberOptimized implements Prescriber {
 
     @Override
     public List<DrugInteraction> findInteractions(Drug drugBeingPrescribed, Patient patient) {
-        List<DrugInteraction> interactions = new ArrayList<>();
-        ExecutorService threadExecutor = Executors.newFixedThreadPool(3);
-        threadExecutor.execute(() -> interactions.addAll(queryFoodInteractionsOfDrug(drugBeingPrescribed)));
-        threadExecutor.execute(() -> interactions.addAll(queryAllergyInteractionsOfDrug(drugBeingPrescribed, patient)));
-        threadExecutor.execute(() -> interactions.addAll(queryDrugInteractionsWithOtherDrugs(drugBeingPrescribed, patient)));
-        threadExecutor.shutdown();
-        return interactions;
+        return findInteractions(drugBeingPrescribed, patient, Long.MAX_VALUE).getInteractions();
+    }
+
+    @Override
+    public InteractionResult findInteractions(Drug drugBeingPrescribed, Patient patient, long timeoutMillis) {
+        return InteractionFanOut.findInteractions(drugBeingPrescribed, patient, timeoutMillis, this::queryFoodInteractionsOfDrug,
+                this::queryAllergyInteractionsOfDrug, this::queryDrugInteractionsWithOtherDrugs);
+    }
+
+    /**
+     * Checks the whole batch with one query per kind of interaction, or with no query at all in catalog mode
+     */
+    @Override
+    public List<List<DrugInteraction>> findInteractionsBatch(List<PrescriptionRequest> requests) {
+        try (FdbSnapshotManager.Lease lease = SNAPSHOTS.acquire()) {
+            FdbSnapshot snapshot = lease.getSnapshot();
+            FoodInteractionTable foodInteractionTable = snapshot.getFoodInteractionTable();
+            if (USE_DRUG_CATALOG)
+                return InteractionBatch.findInteractions(requests, foodInteractionTable,
+                        snapshot.getAllergenBitmapIndex(), snapshot.getDrugInteractionMatrix());
+            // The food table is loaded first, so this does not hold a connection while it borrows another
+            try (Connection fdbConnection = CONNECTION_POOL.borrowConnection()) {
+                return InteractionBatch.queryInteractions(fdbConnection, requests, foodInteractionTable);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("SQL is bad for querying a batch of interactions.\n" + e.getSQLState());
+        }
     }
 
+    /**
+     * Checks every pair with one query, or with no query at all in catalog mode
+     */
+    @Override
+    public List<DrugInteraction> reviewRegimen(Patient patient) {
+        if (USE_DRUG_CATALOG) {
+            try (FdbSnapshotManager.Lease lease = SNAPSHOTS.acquire()) {
+                return lease.getSnapshot().getDrugInteractionMatrix().reviewRegimen(patient);
+            }
+        }
+        return DrugInteractionMatrix.reviewRegimen(CONNECTION_POOL, patient);
+    }
 
     @Override
     public void prescribeDrug(Drug drug, Patient patient) {
@@ -105,8 +223,25 @@ final class FdbPrescriberOptimized implements Prescriber {
      * @return a list of harmful drug interactions
      */
     public List<DrugInteraction> queryDrugInteractionsWithOtherDrugs(Drug drug, Patient patient) {
+        if (USE_DRUG_CATALOG) {
+            try (FdbSnapshotManager.Lease lease = SNAPSHOTS.acquire()) {
+                return lease.getSnapshot().getDrugInteractionMatrix().findInteractions(drug, patient);
+            }
+        }
         try {
-            SortedSet<Drug> currentDrugs = patient.getDrugsPrescribed();
+            return INTERACTION_CACHE.getDrugToDrugInteractions(drug, patient,
+                    () -> selectDrugInteractionsWithOtherDrugs(drug, patient));
+        } catch (SQLException e) {
+            throw new IllegalStateException("SQL is bad for querying drug to drug interactions.\n" + e.getSQLState());
+        }
+    }
+
+    /**
+     * Queries the DIN and effect of every interaction between a drug and the drugs a patient takes, ordered by DIN
+     */
+    private InteractionCache.CachedInteractions selectDrugInteractionsWithOtherDrugs(Drug drug, Patient patient)
+            throws SQLException {
+        try (Connection fdbConnection = CONNECTION_POOL.borrowConnection()) {
 
             //Create a two coma separated strings to use in prepared statement.
             //ingredientIdentifiers are ingredient list codes and identifiers of the unique identifiers
@@ -115,7 +250,6 @@ final class FdbPrescriberOptimized implements Prescriber {
             Iterator<Drug> otherDrugsIterator = patient.getDrugsPrescribed().iterator();
             while (otherDrugsIterator.hasNext()) {
                 Drug currentDrug = otherDrugsIterator.next();
-                currentDrugs.add(currentDrug);
                 ingredientIdentifiers.append(currentDrug.getIngredientIdentifier());
                 identifiers.append(currentDrug.getId());
                 if (otherDrugsIterator.hasNext()) {
@@ -125,10 +259,10 @@ final class FdbPrescriberOptimized implements Prescriber {
             }
 
             //Query to find interactions between a single drug drug and a list of drugs a patient is currently taking
-            PreparedStatement pStmtToQueryDrugToDrugInteractions = FDB_CONNECTION.prepareStatement(
-                    "SELECT DISTINCT DIN,ADI_EFFTXT "
+            try (PreparedStatement pStmtToQueryDrugToDrugInteractions = ConnectionPool.prepareUncachedStatement(fdbConnection,
+                    "SELECT DIN,F0.ADI_EFFTC,ADI_EFFTXT,MIN(L1.DDI_SL) "
                             + "FROM "
-                            + "(SELECT DISTINCT HICL_SEQNO AS HICL1,C4.DDI_CODEX AS CODEX1 ,DDI_MONOX AS MONOX1,DDI_DES "
+                            + "(SELECT DISTINCT HICL_SEQNO AS HICL1,C4.DDI_CODEX AS CODEX1 ,DDI_MONOX AS MONOX1,DDI_DES ,A5.DDI_SL AS SL1 "
                             + "FROM RGCNSEQ4 AS GCN "
                             + "JOIN RADIMGC4 AS C4 ON (GCN.GCN_SEQNO = C4.GCN_SEQNO) "
                             + "JOIN RADIMMA5 AS A5 ON (C4.DDI_CODEX = A5.DDI_CODEX) "
@@ -144,29 +278,27 @@ final class FdbPrescriberOptimized implements Prescriber {
                             + ") AS TABLE2 "
                             + "JOIN RADIMIE4 AS E4 ON (CODEX1 = E4.DDI_CODEX) "
                             + "JOIN RADIMEF0 AS F0 ON (E4.ADI_EFFTC = F0.ADI_EFFTC) "
-                            + "JOIN RADIMSL1 AS L1 ON (DDI_SL = L1.DDI_SL) "
+                            + "JOIN RADIMSL1 AS L1 ON (SL1 = L1.DDI_SL) "
                             + "WHERE MONOX1 = MONOX2 and CODEX1 != CODEX2 "
-                            + "ORDER BY DIN");
-            pStmtToQueryDrugToDrugInteractions.setInt(1, drug.getIngredientIdentifier());
-
-            ResultSet drugToDrugInteractionsAsRst = pStmtToQueryDrugToDrugInteractions.executeQuery();
-            List<DrugInteraction> drugToDrugInteractions = new ArrayList<>();
-            Iterator<Drug> currentDrugsIterator = currentDrugs.iterator();
-            Drug currentDrug = currentDrugsIterator.next();
-            while (drugToDrugInteractionsAsRst.next()) {
-                int idOfDrugInteracting = drugToDrugInteractionsAsRst.getInt(1);
-                String interactionDescription = drugToDrugInteractionsAsRst.getString(2).trim();
-                while (currentDrug.getId() < idOfDrugInteracting && currentDrugsIterator.hasNext()) {
-                    currentDrug = currentDrugsIterator.next();
-                }
-                if (currentDrug.getId() == idOfDrugInteracting) {
-                    DrugInteraction currentInteraction = DrugInteraction.createFdbDrugToDrugInteraction(drug, currentDrug, interactionDescription);
-                    drugToDrugInteractions.add(currentInteraction);
+                            + "GROUP BY DIN,F0.ADI_EFFTC,ADI_EFFTXT "
+                            + "ORDER BY DIN")) {
+                pStmtToQueryDrugToDrugInteractions.setInt(1, drug.getIngredientIdentifier());
+
+                try (ResultSet drugToDrugInteractionsAsRst = pStmtToQueryDrugToDrugInteractions.executeQuery()) {
+                    IntList idsOfDrugsInteracting = new IntList();
+                    List<String> effectCodes = new ArrayList<>();
+                    List<String> interactionDescriptions = new ArrayList<>();
+                    IntList severityLevels = new IntList();
+                    while (drugToDrugInteractionsAsRst.next()) {
+                        idsOfDrugsInteracting.add(drugToDrugInteractionsAsRst.getInt(1));
+                        effectCodes.add(drugToDrugInteractionsAsRst.getString(2).trim());
+                        interactionDescriptions.add(drugToDrugInteractionsAsRst.getString(3).trim());
+                        severityLevels.add(drugToDrugInteractionsAsRst.getInt(4));
+                    }
+                    return new InteractionCache.CachedInteractions(idsOfDrugsInteracting, effectCodes, interactionDescriptions,
+                            severityLevels);
                 }
             }
-            return drugToDrugInteractions;
-        } catch (SQLException e) {
-            throw new IllegalStateException("SQL is bad for querying drug to drug interactions.\n" + e.getSQLState());
         }
     }
 
@@ -177,26 +309,8 @@ final class FdbPrescriberOptimized implements Prescriber {
      * @return a list of harmful interactions that could occur if you combine a food with the drug
      */
     public List<DrugInteraction> queryFoodInteractionsOfDrug(Drug drug) {
-        try {
-            PreparedStatement pStmtToQueryFoodInteractions = FDB_CONNECTION.prepareStatement(
-                    "SELECT DISTINCT RESULT " +
-                            "FROM RDFIMGC0 AS t1 " +
-                            "LEFT JOIN RDFIMMA0 AS t2 ON (t1.FDCDE = t2.FDCDE) " +
-                            "LEFT JOIN RGCNSEQ4 AS t3 ON (t1.GCN_SEQNO = t3.GCN_SEQNO)" +
-                            "WHERE GC.GCN_SEQNO = ?");
-            pStmtToQueryFoodInteractions.setInt(1, drug.getGcnSeqno());
-
-            ResultSet foodInteractionsAsRst = pStmtToQueryFoodInteractions.executeQuery();
-            List<DrugInteraction> foodInteractionsAsObjects = new ArrayList<>();
-            while (foodInteractionsAsRst.next()) {
-                DrugInteraction foodInteraction =
-                        DrugInteraction.createFdbFoodInteraction(drug,
-                                foodInteractionsAsRst.getString(1).trim());
-                foodInteractionsAsObjects.add(foodInteraction);
-            }
-            return foodInteractionsAsObjects;
-        } catch (SQLException e) {
-            throw new IllegalStateException("SQL is bad for querying food interactions.\n" + e.getSQLState());
+        try (FdbSnapshotManager.Lease lease = SNAPSHOTS.acquire()) {
+            return lease.getSnapshot().getFoodInteractionTable().getFoodInteractions(drug);
         }
     }
 
@@ -208,49 +322,48 @@ final class FdbPrescriberOptimized implements Prescriber {
      * @return a list of harmful interactions between the patient's allergies and the drug being prescribed
      */
     public List<DrugInteraction> queryAllergyInteractionsOfDrug(Drug drug, Patient patient) {
-        try {
-            //Create a coma separated string of allergy codes to use in prepared statement
-            StringBuilder testers = new StringBuilder();
-            Iterator<Allergy> allergyIterator = patient.getPatientAllergies().iterator();
-            while (allergyIterator.hasNext()) {
-                Allergy currentAllergy = allergyIterator.next();
-                testers.append(currentAllergy.getId());
-                if (allergyIterator.hasNext())
-                    testers.append(",");
-            }
-
-            System.out.println(testers.toString());
-            System.out.println(drug.getIngredientIdentifier());
-
-            //Query all allergy interactions between a drug and a list of allergies
-            PreparedStatement pStmtToQueryAllergyInteractions = FDB_CONNECTION.prepareStatement(
-                    "SELECT t3.HICL_SEQNO, t3.HIC_SEQN, t3.HIC, t4.HIC_DESC, t2.DAM_ALRGN_GRP, DAM_ALRGN_GRP_DESC " +
-                            "FROM RDAMGHC0 AS t1 " +
-                            "LEFT JOIN RDAMAGD1 AS t2 ON (t1.DAM_ALRGN_GRP = t2.DAM_ALRGN_GRP) " +
-                            "LEFT JOIN RHICL1 AS t3 ON (t1.HIC_SEQN = t3.HIC_SEQN) " +
-                            "LEFT JOIN RHICD5 AS t4 ON (t3.HIC_SEQN = t4.HIC_SEQN) " +
-                            "WHERE HICL_SEQNO = ? AND t1.DAM_ALRGN_GRP IN (" + testers.toString() + ")");
-            pStmtToQueryAllergyInteractions.setInt(1, drug.getIngredientIdentifier());
-
-            ResultSet allergyInteractionsAsRst = pStmtToQueryAllergyInteractions.executeQuery();
-            List<DrugInteraction> allergyInteractionsAsObjects = new ArrayList<>();
-            while (allergyInteractionsAsRst.next()) {
-                Allergy allergy = Allergy.createFdbAllergy(allergyInteractionsAsRst.getInt(5), allergyInteractionsAsRst.getString(6));
-                DrugInteraction allergyInteraction = DrugInteraction.createFdbAllergyInteraction(allergy, drug);
-                allergyInteractionsAsObjects.add(allergyInteraction);
+        if (USE_DRUG_CATALOG) {
+            try (FdbSnapshotManager.Lease lease = SNAPSHOTS.acquire()) {
+                return lease.getSnapshot().getAllergenBitmapIndex().findInteractions(drug, patient);
             }
-            return allergyInteractionsAsObjects;
+        }
+        try {
+            return INTERACTION_CACHE.getAllergyInteractions(drug, patient,
+                    () -> selectAllergyInteractionsOfDrug(drug, patient));
         } catch (SQLException e) {
             throw new IllegalStateException("SQL is bad for querying allergy interactions.\n" + e.getSQLState());
         }
     }
 
+    /**
+     * Queries the code and name of every allergen group of a patient that a drug's ingredients belong to
+     * <p>
+     * This is the query {@link #findInteractionsBatch(List)} runs for a whole batch, so a drug is reported once per
+     * allergy of the patient, under the name of that allergy, either way
+     */
+    private InteractionCache.CachedInteractions selectAllergyInteractionsOfDrug(Drug drug, Patient patient)
+            throws SQLException {
+        try (Connection fdbConnection = CONNECTION_POOL.borrowConnection()) {
+            int[] allergenGroups = patient.getPatientAllergies().stream().mapToInt(Allergy::getId).toArray();
+            AllergenBitmapIndex allergenBitmapIndex = AllergenBitmapIndex.loadAllergenBitmapIndex(fdbConnection,
+                    allergenGroups, new int[]{drug.getIngredientIdentifier()});
+
+            IntList allergenGroupsOfDrug = new IntList();
+            List<String> allergenGroupNames = new ArrayList<>();
+            for (DrugInteraction allergyInteraction : allergenBitmapIndex.findInteractions(drug, patient)) {
+                allergenGroupsOfDrug.add(allergyInteraction.getAllergy().getId());
+                allergenGroupNames.add(allergyInteraction.getAllergy().getName());
+            }
+            return new InteractionCache.CachedInteractions(allergenGroupsOfDrug, allergenGroupNames);
+        }
+    }
+
     /**
      * A specific class of drugs in FDB
      */
     private List<Drug> queryManufacturerDrugs(String prefix) {
-        try {
-            PreparedStatement pStmtToQueryDrugsBasedOnPrefix = FDB_CONNECTION.prepareStatement(
+        try (Connection fdbConnection = CONNECTION_POOL.borrowConnection()) {
+            PreparedStatement pStmtToQueryDrugsBasedOnPrefix = fdbConnection.prepareStatement(
                     "SELECT t1.LN, t3.HICL_SEQNO, t1.GCN_SEQNO, t1.DIN, t1.IADDDTE, t1.IOBSDTE, t2.MFG "
                             + "FROM RICAIDC1 AS t1 "
                             + "JOIN RLBLRCA1 AS t2 ON (t1.ILBLRID = t2.ILBLRID) "
@@ -258,50 +371,38 @@ final class FdbPrescriberOptimized implements Prescriber {
                             + "WHERE t1.LN LIKE ? "
                             + "ORDER BY t1.LN");
             pStmtToQueryDrugsBasedOnPrefix.setString(1, "%" + prefix + "%");
-            ResultSet drugsAsRst = pStmtToQueryDrugsBasedOnPrefix.executeQuery();
-
-            List<Drug> drugsAsObjects = new ArrayList<>();
+            try (ResultSet drugsAsRst = pStmtToQueryDrugsBasedOnPrefix.executeQuery()) {
+                List<Drug> drugsAsObjects = new ArrayList<>();
 
-            // For each SQL result, create a Java object representing that drug
-            while (drugsAsRst.next()) {
-                Drug drug = Drug.createFdbDrug(drugsAsRst.getInt(4), drugsAsRst.getInt(2), drugsAsRst.getInt(3), drugsAsRst.getString(1).trim());
-                drugsAsObjects.add(drug);
+                // For each SQL result, create a Java object representing that drug
+                while (drugsAsRst.next()) {
+                    Drug drug = Drug.createFdbDrug(drugsAsRst.getInt(4), drugsAsRst.getInt(2), drugsAsRst.getInt(3), drugsAsRst.getString(1).trim());
+                    drugsAsObjects.add(drug);
+                }
+                return drugsAsObjects;
             }
-            return drugsAsObjects;
         } catch (SQLException e) {
             throw new IllegalStateException("SQL is bad for querying drugs.\n" +
                     e.getSQLState());
         }
     }
 
+    /**
+     * Allergies are served from an in-memory {@link AllergyIndex}, which is loaded the first time allergies are
+     * queried. The allergen groups are a small table that only changes with a FDB data release
+     */
     @Override
     public List<Allergy> queryAllergies(String prefix) {
-        try {
-            PreparedStatement pStmtToQueryAllergiesBasedOnPrefix = FDB_CONNECTION.prepareStatement(
-                    "SELECT DAM_ALRGN_GRP, DAM_ALRGN_GRP_DESC " +
-                            "FROM RDAMAGD1 " +
-                            "WHERE DAM_ALRGN_GRP_DESC LIKE ?");
-            pStmtToQueryAllergiesBasedOnPrefix.setString(1, prefix + "%");
-            ResultSet drugsAsRst = pStmtToQueryAllergiesBasedOnPrefix.executeQuery();
-
-            List<Allergy> allergiesAsObjects = new ArrayList<>();
-
-            // For each SQL result, create a Java object representing that Allergy
-            while (drugsAsRst.next()) {
-                Allergy allergy = Allergy.createFdbAllergy(drugsAsRst.getInt(1), drugsAsRst.getString(2).trim());
-                allergiesAsObjects.add(allergy);
-            }
-            return allergiesAsObjects;
-        } catch (SQLException e) {
-            throw new IllegalStateException("SQL is bad for querying drugs.\n" +
-                    e.getSQLState());
+        try (FdbSnapshotManager.Lease lease = SNAPSHOTS.acquire()) {
+            return lease.getSnapshot().getAllergyIndex().queryAllergies(prefix);
         }
     }
 
     @Override
     public boolean closePrescriber() {
         try {
-            FDB_CONNECTION.close();
+            SNAPSHOTS.close();
+            CONNECTION_POOL.close();
             return true;
         } catch (SQLException e) {
             return false;
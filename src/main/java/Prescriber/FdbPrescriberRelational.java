@@ -1,6 +1,7 @@
 package Prescriber;
 
 import Apps.ConnectionConfiguration;
+import Apps.ConnectionPool;
 import Info.Allergy;
 import Info.Drug;
 import Info.DrugInteraction;
@@ -14,13 +15,15 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.SortedSet;
+import java.util.stream.Stream;
 
 /**
  * An implementation of {@link Prescriber} where we only optimized by manipulating relational algebra in all queries
  */
 final class FdbPrescriberRelational implements Prescriber {
 
-    private final Connection FDB_CONNECTION;
+    private final ConnectionPool CONNECTION_POOL;
+    private final FdbSnapshotManager SNAPSHOTS;
     private final int PAGE_SIZE;
 
     /**
@@ -35,7 +38,8 @@ final class FdbPrescriberRelational implements Prescriber {
      */
     FdbPrescriberRelational(int pageSize) {
         PAGE_SIZE = pageSize;
-        FDB_CONNECTION = ConnectionConfiguration.getJdbcConnection();
+        CONNECTION_POOL = ConnectionConfiguration.getJdbcConnectionPool();
+        SNAPSHOTS = FdbSnapshotManager.createSnapshotManager(CONNECTION_POOL);
     }
 
     @Override
@@ -43,6 +47,11 @@ final class FdbPrescriberRelational implements Prescriber {
         return queryManufacturerDrugs(pattern);
     }
 
+    @Override
+    public Stream<Drug> streamDrugs(String pattern) {
+        return DrugStream.streamDrugs(CONNECTION_POOL, pattern);
+    }
+
     @Override
     public List<Drug> queryDrugs(String pattern, int page) {
         List<Drug> allDrugs = queryDrugs(pattern);
@@ -55,6 +64,11 @@ final class FdbPrescriberRelational implements Prescriber {
         return pageList;
     }
 
+    @Override
+    public List<Drug> getDrugsByDin(int... dins) {
+        return DrugCatalog.queryDrugsByDin(CONNECTION_POOL, dins);
+    }
+
     @Override
     public List<DrugInteraction> findInteractions(Drug drugBeingPrescribed, Patient patient) {
         List<DrugInteraction> interactions = new ArrayList<>();
@@ -74,6 +88,14 @@ final class FdbPrescriberRelational implements Prescriber {
     }
 
 
+    /**
+     * Checks every pair with the one query that loads the interactions between the patient's ingredient lists
+     */
+    @Override
+    public List<DrugInteraction> reviewRegimen(Patient patient) {
+        return DrugInteractionMatrix.reviewRegimen(CONNECTION_POOL, patient);
+    }
+
     @Override
     public void prescribeDrug(Drug drug, Patient patient) {
         patient.addDrug(drug);
@@ -87,17 +109,16 @@ final class FdbPrescriberRelational implements Prescriber {
      * @return a list of harmful drug interactions
      */
     public List<DrugInteraction> queryDrugInteractionsWithOtherDrugs(Drug drug, Patient patient) {
-        try {
+        try (Connection fdbConnection = CONNECTION_POOL.borrowConnection()) {
             SortedSet<Drug> currentDrugs = patient.getDrugsPrescribed();
 
             //Create a two coma separated strings to use in prepared statement.
             //ingredientIdentifiers are ingredient list codes and identifiers of the unique identifiers
             StringBuilder ingredientIdentifiers = new StringBuilder();
             StringBuilder identifiers = new StringBuilder();
-            Iterator<Drug> otherDrugsIterator = patient.getDrugsPrescribed().iterator();
+            Iterator<Drug> otherDrugsIterator = currentDrugs.iterator();
             while (otherDrugsIterator.hasNext()) {
                 Drug currentDrug = otherDrugsIterator.next();
-                currentDrugs.add(currentDrug);
                 ingredientIdentifiers.append(currentDrug.getIngredientIdentifier());
                 identifiers.append(currentDrug.getId());
                 if (otherDrugsIterator.hasNext()) {
@@ -107,10 +128,10 @@ final class FdbPrescriberRelational implements Prescriber {
             }
 
             //Query to find interactions between a single drug drug and a list of drugs a patient is currently taking
-            PreparedStatement pStmtToQueryDrugToDrugInteractions = FDB_CONNECTION.prepareStatement(
-                    "SELECT DISTINCT DIN,ADI_EFFTXT "
+            try (PreparedStatement pStmtToQueryDrugToDrugInteractions = ConnectionPool.prepareUncachedStatement(fdbConnection,
+                    "SELECT DIN,F0.ADI_EFFTC,ADI_EFFTXT,MIN(L1.DDI_SL) "
                             + "FROM "
-                            + "(SELECT DISTINCT HICL_SEQNO AS HICL1,C4.DDI_CODEX AS CODEX1 ,DDI_MONOX AS MONOX1,DDI_DES "
+                            + "(SELECT DISTINCT HICL_SEQNO AS HICL1,C4.DDI_CODEX AS CODEX1 ,DDI_MONOX AS MONOX1,DDI_DES ,A5.DDI_SL AS SL1 "
                             + "FROM RGCNSEQ4 AS GCN "
                             + "JOIN RADIMGC4 AS C4 ON (GCN.GCN_SEQNO = C4.GCN_SEQNO) "
                             + "JOIN RADIMMA5 AS A5 ON (C4.DDI_CODEX = A5.DDI_CODEX) "
@@ -126,27 +147,33 @@ final class FdbPrescriberRelational implements Prescriber {
                             + ") AS TABLE2 "
                             + "JOIN RADIMIE4 AS E4 ON (CODEX1 = E4.DDI_CODEX) "
                             + "JOIN RADIMEF0 AS F0 ON (E4.ADI_EFFTC = F0.ADI_EFFTC) "
-                            + "JOIN RADIMSL1 AS L1 ON (DDI_SL = L1.DDI_SL) "
+                            + "JOIN RADIMSL1 AS L1 ON (SL1 = L1.DDI_SL) "
                             + "WHERE MONOX1 = MONOX2 and CODEX1 != CODEX2 "
-                            + "ORDER BY DIN");
-            pStmtToQueryDrugToDrugInteractions.setInt(1, drug.getIngredientIdentifier());
-
-            ResultSet drugToDrugInteractionsAsRst = pStmtToQueryDrugToDrugInteractions.executeQuery();
-            List<DrugInteraction> drugToDrugInteractions = new ArrayList<>();
-            Iterator<Drug> currentDrugsIterator = currentDrugs.iterator();
-            Drug currentDrug = currentDrugsIterator.next();
-            while (drugToDrugInteractionsAsRst.next()) {
-                int idOfDrugInteracting = drugToDrugInteractionsAsRst.getInt(1);
-                String interactionDescription = drugToDrugInteractionsAsRst.getString(2).trim();
-                while (currentDrug.getId() < idOfDrugInteracting && currentDrugsIterator.hasNext()) {
-                    currentDrug = currentDrugsIterator.next();
-                }
-                if (currentDrug.getId() == idOfDrugInteracting) {
-                    DrugInteraction currentInteraction = DrugInteraction.createFdbDrugToDrugInteraction(drug, currentDrug, interactionDescription);
-                    drugToDrugInteractions.add(currentInteraction);
+                            + "GROUP BY DIN,F0.ADI_EFFTC,ADI_EFFTXT "
+                            + "ORDER BY DIN")) {
+                pStmtToQueryDrugToDrugInteractions.setInt(1, drug.getIngredientIdentifier());
+
+                try (ResultSet drugToDrugInteractionsAsRst = pStmtToQueryDrugToDrugInteractions.executeQuery()) {
+                    List<DrugInteraction> drugToDrugInteractions = new ArrayList<>();
+                    Iterator<Drug> currentDrugsIterator = currentDrugs.iterator();
+                    Drug currentDrug = currentDrugsIterator.next();
+                    while (drugToDrugInteractionsAsRst.next()) {
+                        int idOfDrugInteracting = drugToDrugInteractionsAsRst.getInt(1);
+                        String effectCode = drugToDrugInteractionsAsRst.getString(2).trim();
+                        String interactionDescription = drugToDrugInteractionsAsRst.getString(3).trim();
+                        int severityLevel = drugToDrugInteractionsAsRst.getInt(4);
+                        while (currentDrug.getId() < idOfDrugInteracting && currentDrugsIterator.hasNext()) {
+                            currentDrug = currentDrugsIterator.next();
+                        }
+                        if (currentDrug.getId() == idOfDrugInteracting) {
+                            DrugInteraction currentInteraction = DrugInteraction.createFdbDrugToDrugInteraction(drug, currentDrug,
+                                    effectCode, interactionDescription, DrugInteraction.Severity.fromFdbSeverityLevel(severityLevel));
+                            drugToDrugInteractions.add(currentInteraction);
+                        }
+                    }
+                    return drugToDrugInteractions;
                 }
             }
-            return drugToDrugInteractions;
         } catch (SQLException e) {
             throw new IllegalStateException("SQL is bad for querying drug to drug interactions.\n" + e.getSQLState());
         }
@@ -159,26 +186,8 @@ final class FdbPrescriberRelational implements Prescriber {
      * @return a list of harmful interactions that could occur if you combine a food with the drug
      */
     public List<DrugInteraction> queryFoodInteractionsOfDrug(Drug drug) {
-        try {
-            PreparedStatement pStmtToQueryFoodInteractions = FDB_CONNECTION.prepareStatement(
-                    "SELECT DISTINCT RESULT " +
-                            "FROM RDFIMGC0 AS t1 " +
-                            "LEFT JOIN RDFIMMA0 AS t2 ON (t1.FDCDE = t2.FDCDE) " +
-                            "LEFT JOIN RGCNSEQ4 AS t3 ON (t1.GCN_SEQNO = t3.GCN_SEQNO)" +
-                            "WHERE GC.GCN_SEQNO = ?");
-            pStmtToQueryFoodInteractions.setInt(1, drug.getGcnSeqno());
-
-            ResultSet foodInteractionsAsRst = pStmtToQueryFoodInteractions.executeQuery();
-            List<DrugInteraction> foodInteractionsAsObjects = new ArrayList<>();
-            while (foodInteractionsAsRst.next()) {
-                DrugInteraction foodInteraction =
-                        DrugInteraction.createFdbFoodInteraction(drug,
-                                foodInteractionsAsRst.getString(1).trim());
-                foodInteractionsAsObjects.add(foodInteraction);
-            }
-            return foodInteractionsAsObjects;
-        } catch (SQLException e) {
-            throw new IllegalStateException("SQL is bad for querying food interactions.\n" + e.getSQLState());
+        try (FdbSnapshotManager.Lease lease = SNAPSHOTS.acquire()) {
+            return lease.getSnapshot().getFoodInteractionTable().getFoodInteractions(drug);
         }
     }
 
@@ -190,7 +199,7 @@ final class FdbPrescriberRelational implements Prescriber {
      * @return a list of harmful interactions between the patient's allergies and the drug being prescribed
      */
     public List<DrugInteraction> queryAllergyInteractionsOfDrug(Drug drug, Patient patient) {
-        try {
+        try (Connection fdbConnection = CONNECTION_POOL.borrowConnection()) {
             //Create a coma separated string of allergy codes to use in prepared statement
             StringBuilder testers = new StringBuilder();
             Iterator<Allergy> allergyIterator = patient.getPatientAllergies().iterator();
@@ -201,27 +210,26 @@ final class FdbPrescriberRelational implements Prescriber {
                     testers.append(",");
             }
 
-            System.out.println(testers.toString());
-            System.out.println(drug.getIngredientIdentifier());
-
             //Query all allergy interactions between a drug and a list of allergies
-            PreparedStatement pStmtToQueryAllergyInteractions = FDB_CONNECTION.prepareStatement(
+            try (PreparedStatement pStmtToQueryAllergyInteractions = ConnectionPool.prepareUncachedStatement(fdbConnection,
                     "SELECT t3.HICL_SEQNO, t3.HIC_SEQN, t3.HIC, t4.HIC_DESC, t2.DAM_ALRGN_GRP, DAM_ALRGN_GRP_DESC " +
                             "FROM RDAMGHC0 AS t1 " +
                             "LEFT JOIN RDAMAGD1 AS t2 ON (t1.DAM_ALRGN_GRP = t2.DAM_ALRGN_GRP) " +
                             "LEFT JOIN RHICL1 AS t3 ON (t1.HIC_SEQN = t3.HIC_SEQN) " +
                             "LEFT JOIN RHICD5 AS t4 ON (t3.HIC_SEQN = t4.HIC_SEQN) " +
-                            "WHERE HICL_SEQNO = ? AND t1.DAM_ALRGN_GRP IN (" + testers.toString() + ")");
-            pStmtToQueryAllergyInteractions.setInt(1, drug.getIngredientIdentifier());
-
-            ResultSet allergyInteractionsAsRst = pStmtToQueryAllergyInteractions.executeQuery();
-            List<DrugInteraction> allergyInteractionsAsObjects = new ArrayList<>();
-            while (allergyInteractionsAsRst.next()) {
-                Allergy allergy = Allergy.createFdbAllergy(allergyInteractionsAsRst.getInt(5), allergyInteractionsAsRst.getString(6));
-                DrugInteraction allergyInteraction = DrugInteraction.createFdbAllergyInteraction(allergy, drug);
-                allergyInteractionsAsObjects.add(allergyInteraction);
+                            "WHERE HICL_SEQNO = ? AND t1.DAM_ALRGN_GRP IN (" + testers.toString() + ")")) {
+                pStmtToQueryAllergyInteractions.setInt(1, drug.getIngredientIdentifier());
+
+                try (ResultSet allergyInteractionsAsRst = pStmtToQueryAllergyInteractions.executeQuery()) {
+                    List<DrugInteraction> allergyInteractionsAsObjects = new ArrayList<>();
+                    while (allergyInteractionsAsRst.next()) {
+                        Allergy allergy = Allergy.createFdbAllergy(allergyInteractionsAsRst.getInt(5), allergyInteractionsAsRst.getString(6));
+                        DrugInteraction allergyInteraction = DrugInteraction.createFdbAllergyInteraction(allergy, drug);
+                        allergyInteractionsAsObjects.add(allergyInteraction);
+                    }
+                    return allergyInteractionsAsObjects;
+                }
             }
-            return allergyInteractionsAsObjects;
         } catch (SQLException e) {
             throw new IllegalStateException("SQL is bad for querying allergy interactions.\n" + e.getSQLState());
         }
@@ -231,8 +239,8 @@ final class FdbPrescriberRelational implements Prescriber {
      * A specific class of drugs in FDB
      */
     private List<Drug> queryManufacturerDrugs(String prefix) {
-        try {
-            PreparedStatement pStmtToQueryDrugsBasedOnPrefix = FDB_CONNECTION.prepareStatement(
+        try (Connection fdbConnection = CONNECTION_POOL.borrowConnection()) {
+            PreparedStatement pStmtToQueryDrugsBasedOnPrefix = fdbConnection.prepareStatement(
                     "SELECT t1.LN, t3.HICL_SEQNO, t1.GCN_SEQNO, t1.DIN, t1.IADDDTE, t1.IOBSDTE, t2.MFG "
                             + "FROM RICAIDC1 AS t1 "
                             + "JOIN RLBLRCA1 AS t2 ON (t1.ILBLRID = t2.ILBLRID) "
@@ -240,16 +248,16 @@ final class FdbPrescriberRelational implements Prescriber {
                             + "WHERE t1.LN LIKE ? "
                             + "ORDER BY t1.LN");
             pStmtToQueryDrugsBasedOnPrefix.setString(1, "%" + prefix + "%");
-            ResultSet drugsAsRst = pStmtToQueryDrugsBasedOnPrefix.executeQuery();
+            try (ResultSet drugsAsRst = pStmtToQueryDrugsBasedOnPrefix.executeQuery()) {
+                List<Drug> drugsAsObjects = new ArrayList<>();
 
-            List<Drug> drugsAsObjects = new ArrayList<>();
-
-            // For each SQL result, create a Java object representing that drug
-            while (drugsAsRst.next()) {
-                Drug drug = Drug.createFdbDrug(drugsAsRst.getInt(4), drugsAsRst.getInt(2), drugsAsRst.getInt(3), drugsAsRst.getString(1).trim());
-                drugsAsObjects.add(drug);
+                // For each SQL result, create a Java object representing that drug
+                while (drugsAsRst.next()) {
+                    Drug drug = Drug.createFdbDrug(drugsAsRst.getInt(4), drugsAsRst.getInt(2), drugsAsRst.getInt(3), drugsAsRst.getString(1).trim());
+                    drugsAsObjects.add(drug);
+                }
+                return drugsAsObjects;
             }
-            return drugsAsObjects;
         } catch (SQLException e) {
             throw new IllegalStateException("SQL is bad for querying drugs.\n" +
                     e.getSQLState());
@@ -258,22 +266,22 @@ final class FdbPrescriberRelational implements Prescriber {
 
     @Override
     public List<Allergy> queryAllergies(String prefix) {
-        try {
-            PreparedStatement pStmtToQueryAllergiesBasedOnPrefix = FDB_CONNECTION.prepareStatement(
+        try (Connection fdbConnection = CONNECTION_POOL.borrowConnection()) {
+            PreparedStatement pStmtToQueryAllergiesBasedOnPrefix = fdbConnection.prepareStatement(
                     "SELECT DAM_ALRGN_GRP, DAM_ALRGN_GRP_DESC " +
                             "FROM RDAMAGD1 " +
                             "WHERE DAM_ALRGN_GRP_DESC LIKE ?");
             pStmtToQueryAllergiesBasedOnPrefix.setString(1, prefix + "%");
-            ResultSet drugsAsRst = pStmtToQueryAllergiesBasedOnPrefix.executeQuery();
-
-            List<Allergy> allergiesAsObjects = new ArrayList<>();
+            try (ResultSet drugsAsRst = pStmtToQueryAllergiesBasedOnPrefix.executeQuery()) {
+                List<Allergy> allergiesAsObjects = new ArrayList<>();
 
-            // For each SQL result, create a Java object representing that Allergy
-            while (drugsAsRst.next()) {
-                Allergy allergy = Allergy.createFdbAllergy(drugsAsRst.getInt(1), drugsAsRst.getString(2).trim());
-                allergiesAsObjects.add(allergy);
+                // For each SQL result, create a Java object representing that Allergy
+                while (drugsAsRst.next()) {
+                    Allergy allergy = Allergy.createFdbAllergy(drugsAsRst.getInt(1), drugsAsRst.getString(2).trim());
+                    allergiesAsObjects.add(allergy);
+                }
+                return allergiesAsObjects;
             }
-            return allergiesAsObjects;
         } catch (SQLException e) {
             throw new IllegalStateException("SQL is bad for querying drugs.\n" +
                     e.getSQLState());
@@ -283,7 +291,8 @@ final class FdbPrescriberRelational implements Prescriber {
     @Override
     public boolean closePrescriber() {
         try {
-            FDB_CONNECTION.close();
+            SNAPSHOTS.close();
+            CONNECTION_POOL.close();
             return true;
         } catch (SQLException e) {
             return false;
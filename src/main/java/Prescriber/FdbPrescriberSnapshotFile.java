@@ -0,0 +1,113 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * An implementation of {@link Prescriber} that serves everything from a memory mapped {@link FdbSnapshotFile}, with no
+ * connection to the FDB database
+ * <p>
+ * Every method is answered from the in-memory copies in the file, the same ones a prescriber with a catalog uses, so
+ * the results are the same as that prescriber's for the FDB data release the file was exported from. Since each check
+ * takes microseconds, {@link #findInteractions(Drug, Patient)} runs them one after another instead of in parallel
+ */
+final class FdbPrescriberSnapshotFile implements Prescriber {
+
+    private final FdbSnapshotFile SNAPSHOT_FILE;
+    private final int PAGE_SIZE;
+
+    /**
+     * @param snapshotFile a file written by {@link FdbSnapshotFile#exportFdbSnapshotFile(Path)}
+     * @param pageSize     the size of a page
+     * @see #createFdbPrescriberFromSnapshotFile(Path)
+     */
+    FdbPrescriberSnapshotFile(Path snapshotFile, int pageSize) {
+        try {
+            SNAPSHOT_FILE = FdbSnapshotFile.mapSnapshotFile(snapshotFile);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the FDB snapshot file " + snapshotFile, e);
+        }
+        PAGE_SIZE = pageSize;
+    }
+
+    /**
+     * @return the FDB data release the snapshot file was exported from
+     */
+    String getVersion() {
+        return SNAPSHOT_FILE.getVersion();
+    }
+
+    @Override
+    public List<Drug> queryDrugs(String pattern) {
+        return SNAPSHOT_FILE.getDrugCatalog().queryDrugs(pattern);
+    }
+
+    @Override
+    public Stream<Drug> streamDrugs(String pattern) {
+        return SNAPSHOT_FILE.getDrugCatalog().streamDrugs(pattern);
+    }
+
+    @Override
+    public List<Drug> queryDrugs(String pattern, int page) {
+        return SNAPSHOT_FILE.getDrugCatalog().queryDrugs(pattern, page * PAGE_SIZE, PAGE_SIZE);
+    }
+
+    @Override
+    public List<Drug> getDrugsByDin(int... dins) {
+        return SNAPSHOT_FILE.getDrugCatalog().getDrugsByDin(dins);
+    }
+
+    @Override
+    public DrugPage queryDrugPage(String pattern, String continuationToken, int pageSize) {
+        return SNAPSHOT_FILE.getDrugCatalog().queryDrugPage(pattern, DrugPage.decodeToken(continuationToken), pageSize);
+    }
+
+    @Override
+    public List<Allergy> queryAllergies(String prefix) {
+        return SNAPSHOT_FILE.getAllergyIndex().queryAllergies(prefix);
+    }
+
+    @Override
+    public List<DrugInteraction> findInteractions(Drug drugBeingPrescribed, Patient patient) {
+        // In the same order as the other prescribers: food, then allergy, then drug to drug interactions
+        List<DrugInteraction> drugInteractions = new ArrayList<>(
+                SNAPSHOT_FILE.getFoodInteractionTable().getFoodInteractions(drugBeingPrescribed));
+        if (!patient.getPatientAllergies().isEmpty())
+            drugInteractions.addAll(SNAPSHOT_FILE.getAllergenBitmapIndex().findInteractions(drugBeingPrescribed, patient));
+        if (!patient.getDrugsPrescribed().isEmpty())
+            drugInteractions.addAll(SNAPSHOT_FILE.getDrugInteractionMatrix().findInteractions(drugBeingPrescribed, patient));
+        return drugInteractions;
+    }
+
+    @Override
+    public List<List<DrugInteraction>> findInteractionsBatch(List<PrescriptionRequest> requests) {
+        return InteractionBatch.findInteractions(requests, SNAPSHOT_FILE.getFoodInteractionTable(),
+                SNAPSHOT_FILE.getAllergenBitmapIndex(), SNAPSHOT_FILE.getDrugInteractionMatrix());
+    }
+
+    @Override
+    public List<DrugInteraction> reviewRegimen(Patient patient) {
+        return SNAPSHOT_FILE.getDrugInteractionMatrix().reviewRegimen(patient);
+    }
+
+    @Override
+    public void prescribeDrug(Drug drug, Patient patient) {
+        patient.addDrug(drug);
+    }
+
+    /**
+     * There is no connection to close. The mapping of the file is released once the prescriber is garbage collected
+     */
+    @Override
+    public boolean closePrescriber() {
+        return true;
+    }
+}
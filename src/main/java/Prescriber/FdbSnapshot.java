@@ -0,0 +1,137 @@
+package Prescriber;
+
+import Apps.ConnectionPool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One generation of the in-memory copies of FDB reference data, all taken from the same FDB data release
+ * <p>
+ * Each copy is loaded the first time it is used. A generation is reference counted: the {@link FdbSnapshotManager}
+ * holds one reference while the generation is current, and every call using it holds another for as long as the call
+ * runs. Once the generation has been replaced and its last call has finished, its copies are dropped
+ */
+final class FdbSnapshot {
+
+    private final String VERSION;
+    private final Preloaded<FoodInteractionTable> FOOD_INTERACTION_TABLE;
+    private final Preloaded<DrugCatalog> DRUG_CATALOG;
+    private final Preloaded<AllergyIndex> ALLERGY_INDEX;
+    private final Preloaded<AllergenBitmapIndex> ALLERGEN_BITMAP_INDEX;
+    private final Preloaded<DrugInteractionMatrix> DRUG_INTERACTION_MATRIX;
+    private final AtomicInteger REFERENCE_COUNT = new AtomicInteger(1);
+
+    /**
+     * @param version        the FDB data release the copies are taken from
+     * @param connectionPool pool to load the copies with
+     * @param offHeapMatrix  whether to keep the drug to drug interaction matrix outside the Java heap
+     */
+    FdbSnapshot(String version, ConnectionPool connectionPool, boolean offHeapMatrix) {
+        VERSION = version;
+        FOOD_INTERACTION_TABLE = new Preloaded<>(connectionPool, FoodInteractionTable::loadFoodInteractionTable,
+                "food interaction table");
+        DRUG_CATALOG = new Preloaded<>(connectionPool, DrugCatalog::loadDrugCatalog, "drug catalog");
+        ALLERGY_INDEX = new Preloaded<>(connectionPool, AllergyIndex::loadAllergyIndex, "allergy index");
+        ALLERGEN_BITMAP_INDEX = new Preloaded<>(connectionPool, AllergenBitmapIndex::loadAllergenBitmapIndex,
+                "allergen bitmap index");
+        DRUG_INTERACTION_MATRIX = new Preloaded<>(connectionPool,
+                fdbConnection -> DrugInteractionMatrix.loadDrugInteractionMatrix(fdbConnection, offHeapMatrix),
+                "drug interaction matrix");
+    }
+
+    /**
+     * Reads the version of the FDB data release in the database, which changes whenever drugs are added or made
+     * obsolete
+     *
+     * @param fdbConnection connection to the FDB database
+     * @return the latest add and obsolete dates of all drugs
+     * @throws SQLException if the dates could not be queried
+     */
+    static String loadVersion(Connection fdbConnection) throws SQLException {
+        PreparedStatement pStmtToQueryVersion = fdbConnection.prepareStatement(
+                "SELECT MAX(IADDDTE), MAX(IOBSDTE) FROM RICAIDC1");
+        try (ResultSet versionAsRst = pStmtToQueryVersion.executeQuery()) {
+            versionAsRst.next();
+            return versionAsRst.getString(1) + "/" + versionAsRst.getString(2);
+        }
+    }
+
+    String getVersion() {
+        return VERSION;
+    }
+
+    FoodInteractionTable getFoodInteractionTable() {
+        return FOOD_INTERACTION_TABLE.get();
+    }
+
+    DrugCatalog getDrugCatalog() {
+        return DRUG_CATALOG.get();
+    }
+
+    AllergyIndex getAllergyIndex() {
+        return ALLERGY_INDEX.get();
+    }
+
+    AllergenBitmapIndex getAllergenBitmapIndex() {
+        return ALLERGEN_BITMAP_INDEX.get();
+    }
+
+    DrugInteractionMatrix getDrugInteractionMatrix() {
+        return DRUG_INTERACTION_MATRIX.get();
+    }
+
+    /**
+     * Loads every copy that was loaded in an earlier generation, so calls do not wait for them after the swap
+     */
+    void loadCopiesOf(FdbSnapshot previousSnapshot) {
+        if (previousSnapshot.FOOD_INTERACTION_TABLE.isLoaded())
+            FOOD_INTERACTION_TABLE.get();
+        if (previousSnapshot.DRUG_CATALOG.isLoaded())
+            DRUG_CATALOG.get();
+        if (previousSnapshot.ALLERGY_INDEX.isLoaded())
+            ALLERGY_INDEX.get();
+        if (previousSnapshot.ALLERGEN_BITMAP_INDEX.isLoaded())
+            ALLERGEN_BITMAP_INDEX.get();
+        if (previousSnapshot.DRUG_INTERACTION_MATRIX.isLoaded())
+            DRUG_INTERACTION_MATRIX.get();
+    }
+
+    /**
+     * Adds a reference to the generation, unless it has already been released
+     *
+     * @return whether the reference was added
+     */
+    boolean retain() {
+        while (true) {
+            int referenceCount = REFERENCE_COUNT.get();
+            if (referenceCount == 0)
+                return false;
+            if (REFERENCE_COUNT.compareAndSet(referenceCount, referenceCount + 1))
+                return true;
+        }
+    }
+
+    /**
+     * Removes a reference to the generation, and drops its copies if it was the last one
+     */
+    void release() {
+        if (REFERENCE_COUNT.decrementAndGet() == 0) {
+            FOOD_INTERACTION_TABLE.reset();
+            DRUG_CATALOG.reset();
+            ALLERGY_INDEX.reset();
+            ALLERGEN_BITMAP_INDEX.reset();
+            DRUG_INTERACTION_MATRIX.reset();
+        }
+    }
+
+    /**
+     * @return whether every reference to the generation has been removed
+     */
+    boolean isReleased() {
+        return REFERENCE_COUNT.get() == 0;
+    }
+}
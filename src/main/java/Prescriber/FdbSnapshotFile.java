@@ -0,0 +1,240 @@
+package Prescriber;
+
+import Apps.ConnectionConfiguration;
+import Apps.ConnectionPool;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A single file holding every in-memory copy of FDB reference data that a prescriber uses, so interactions can be
+ * checked on a machine with no access to the FDB database
+ * <p>
+ * The file starts with a magic number, the version of the file format, and the version of the FDB data release it was
+ * exported from. The drug catalog, allergy index, allergen bitmap index, food interaction table, and drug to drug
+ * interaction matrix follow in that order. Each is a run of big endian int or long arrays, every one preceded by its
+ * length, and string arrays stored as UTF-8
+ * <p>
+ * The file is memory mapped when it is read. The drug to drug interaction matrix, which is by far the largest part, is
+ * used straight from the mapping without being copied. The other parts are copied out of the mapping into the arrays
+ * they search: the trigram index of the drug catalog, the sorted names of the allergy index, the bitmaps of the allergen
+ * index, and the offsets of the food interaction table are all stored as built, so no index is rebuilt when the file
+ * is opened. The stored arrays are checked as they are read, so a corrupt file fails when it is opened
+ */
+public final class FdbSnapshotFile {
+
+    // "FDBS"
+    private static final int MAGIC = 0x46444253;
+    // Version 2 added the effect codes of the drug to drug interaction matrix, version 3 keyed it by the formulation of
+    // the patient's drug, and version 4 stored the other indexes as built
+    private static final int FORMAT_VERSION = 4;
+
+    private final String VERSION;
+    private final DrugCatalog DRUG_CATALOG;
+    private final AllergyIndex ALLERGY_INDEX;
+    private final AllergenBitmapIndex ALLERGEN_BITMAP_INDEX;
+    private final FoodInteractionTable FOOD_INTERACTION_TABLE;
+    private final DrugInteractionMatrix DRUG_INTERACTION_MATRIX;
+
+    private FdbSnapshotFile(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != MAGIC)
+            throw new IOException("Not an FDB snapshot file");
+        int formatVersion = buffer.getInt();
+        if (formatVersion != FORMAT_VERSION)
+            throw new IOException("Unsupported FDB snapshot file format " + formatVersion);
+        try {
+            VERSION = readString(buffer);
+            DRUG_CATALOG = DrugCatalog.readFrom(buffer);
+            ALLERGY_INDEX = AllergyIndex.readFrom(buffer);
+            ALLERGEN_BITMAP_INDEX = AllergenBitmapIndex.readFrom(buffer);
+            FOOD_INTERACTION_TABLE = FoodInteractionTable.readFrom(buffer);
+            DRUG_INTERACTION_MATRIX = DrugInteractionMatrix.readFrom(buffer);
+        } catch (RuntimeException e) {
+            throw new IOException("The FDB snapshot file is corrupt", e);
+        }
+        if (buffer.hasRemaining())
+            throw new IOException("The FDB snapshot file is corrupt");
+    }
+
+    /**
+     * Exports the FDB reference data of the database in the connection configuration to a file
+     *
+     * @param snapshotFile where to write the file, which is replaced if it exists
+     * @throws IOException if the file could not be written
+     */
+    public static void exportFdbSnapshotFile(Path snapshotFile) throws IOException {
+        try (ConnectionPool connectionPool = ConnectionConfiguration.getJdbcConnectionPool()) {
+            String version;
+            try (Connection fdbConnection = connectionPool.borrowConnection()) {
+                version = FdbSnapshot.loadVersion(fdbConnection);
+            }
+            FdbSnapshot snapshot = new FdbSnapshot(version, connectionPool, false);
+            try {
+                writeSnapshotFile(snapshotFile, version, snapshot.getDrugCatalog(), snapshot.getAllergyIndex(),
+                        snapshot.getAllergenBitmapIndex(), snapshot.getFoodInteractionTable(),
+                        snapshot.getDrugInteractionMatrix());
+            } finally {
+                snapshot.release();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("SQL is bad for exporting a snapshot file.\n" + e.getSQLState());
+        }
+    }
+
+    /**
+     * Writes a file from in-memory copies of FDB reference data
+     * <p>
+     * The file is written next to its destination and then moved over it, so a reader never maps a half written file
+     */
+    static void writeSnapshotFile(Path snapshotFile, String version, DrugCatalog drugCatalog, AllergyIndex allergyIndex,
+                                  AllergenBitmapIndex allergenBitmapIndex, FoodInteractionTable foodInteractionTable,
+                                  DrugInteractionMatrix drugInteractionMatrix) throws IOException {
+        Path temporaryFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, version);
+            drugCatalog.writeTo(out);
+            allergyIndex.writeTo(out);
+            allergenBitmapIndex.writeTo(out);
+            foodInteractionTable.writeTo(out);
+            drugInteractionMatrix.writeTo(out);
+        }
+        Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Memory maps a file written by {@link #exportFdbSnapshotFile(Path)}
+     *
+     * @throws IOException if the file could not be read or is not a snapshot file
+     */
+    static FdbSnapshotFile mapSnapshotFile(Path snapshotFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("An FDB snapshot file cannot be larger than 2GB");
+            // The mapping stays valid after the channel is closed
+            return new FdbSnapshotFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    String getVersion() {
+        return VERSION;
+    }
+
+    DrugCatalog getDrugCatalog() {
+        return DRUG_CATALOG;
+    }
+
+    AllergyIndex getAllergyIndex() {
+        return ALLERGY_INDEX;
+    }
+
+    AllergenBitmapIndex getAllergenBitmapIndex() {
+        return ALLERGEN_BITMAP_INDEX;
+    }
+
+    FoodInteractionTable getFoodInteractionTable() {
+        return FOOD_INTERACTION_TABLE;
+    }
+
+    DrugInteractionMatrix getDrugInteractionMatrix() {
+        return DRUG_INTERACTION_MATRIX;
+    }
+
+    static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values)
+            out.writeInt(value);
+    }
+
+    static void writeInts(DataOutputStream out, IntBuffer values) throws IOException {
+        out.writeInt(values.limit());
+        for (int i = 0; i < values.limit(); i++)
+            out.writeInt(values.get(i));
+    }
+
+    static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values)
+            out.writeLong(value);
+    }
+
+    static void writeLongs(DataOutputStream out, LongBuffer values) throws IOException {
+        out.writeInt(values.limit());
+        for (int i = 0; i < values.limit(); i++)
+            out.writeLong(values.get(i));
+    }
+
+    static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        out.writeInt(strings.length);
+        for (String string : strings)
+            writeString(out, string);
+    }
+
+    static int[] readInts(ByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+        return values;
+    }
+
+    static long[] readLongs(ByteBuffer buffer) {
+        long[] values = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Long.BYTES);
+        return values;
+    }
+
+    /**
+     * Returns a view of an int array in the file, without copying it
+     */
+    static IntBuffer mapInts(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        ByteBuffer values = buffer.slice();
+        values.limit(count * Integer.BYTES);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values.asIntBuffer();
+    }
+
+    /**
+     * Returns a view of a long array in the file, without copying it
+     */
+    static LongBuffer mapLongs(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        ByteBuffer values = buffer.slice();
+        values.limit(count * Long.BYTES);
+        buffer.position(buffer.position() + count * Long.BYTES);
+        return values.asLongBuffer();
+    }
+
+    static String[] readStrings(ByteBuffer buffer) {
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++)
+            strings[i] = readString(buffer);
+        return strings;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
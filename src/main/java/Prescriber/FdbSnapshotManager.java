@@ -0,0 +1,192 @@
+package Prescriber;
+
+import Apps.ConnectionPool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Keeps the current {@link FdbSnapshot} of a prescriber, and replaces it when a new FDB data release is loaded
+ * <p>
+ * A background task checks the version of the data in the database. When it changes, the task builds a new
+ * generation, loading the same copies the current one has, and then swaps it in with a single atomic write. Calls
+ * never wait on a lock: they lease whichever generation is current, and keep using it until they close the lease,
+ * even if it is replaced in the meantime. The replaced generation is dropped when its last lease is closed
+ */
+final class FdbSnapshotManager implements AutoCloseable {
+
+    private static final long DEFAULT_REFRESH_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    // One daemon thread checks for new data releases for every prescriber in the JVM
+    private static final ScheduledExecutorService REFRESHER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fdb-snapshot-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final VersionReader VERSION_READER;
+    private final Function<String, FdbSnapshot> SNAPSHOT_FACTORY;
+    private final Runnable ON_SWAP;
+    private final AtomicReference<FdbSnapshot> CURRENT_SNAPSHOT = new AtomicReference<>();
+    private final ScheduledFuture<?> REFRESH_TASK;
+    private boolean closed;
+
+    /**
+     * Reads the version of the FDB data release in the database
+     */
+    @FunctionalInterface
+    interface VersionReader {
+        String readVersion() throws SQLException;
+    }
+
+    /**
+     * A generation in use by a call. Closing the lease lets the generation be dropped once it has been replaced
+     */
+    static final class Lease implements AutoCloseable {
+        private final FdbSnapshot SNAPSHOT;
+        private boolean closed;
+
+        private Lease(FdbSnapshot snapshot) {
+            SNAPSHOT = snapshot;
+        }
+
+        FdbSnapshot getSnapshot() {
+            return SNAPSHOT;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                SNAPSHOT.release();
+            }
+        }
+    }
+
+    /**
+     * @param versionReader         reads the version of the data in the database
+     * @param snapshotFactory       creates an empty generation for a version
+     * @param refreshIntervalMillis how often to check for a new version, or zero to only check on {@link #refresh()}
+     * @param onSwap                run after a new generation is swapped in
+     */
+    FdbSnapshotManager(VersionReader versionReader, Function<String, FdbSnapshot> snapshotFactory,
+                       long refreshIntervalMillis, Runnable onSwap) {
+        VERSION_READER = versionReader;
+        SNAPSHOT_FACTORY = snapshotFactory;
+        ON_SWAP = onSwap;
+        REFRESH_TASK = refreshIntervalMillis > 0
+                ? REFRESHER.scheduleWithFixedDelay(this::refreshQuietly, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    /**
+     * Creates a manager that checks for a new data release every hour
+     *
+     * @param connectionPool pool to read the version and load the copies with
+     * @param offHeapMatrix  whether to keep the drug to drug interaction matrix outside the Java heap
+     * @param onSwap         run after a new generation is swapped in
+     */
+    static FdbSnapshotManager createSnapshotManager(ConnectionPool connectionPool, boolean offHeapMatrix, Runnable onSwap) {
+        VersionReader versionReader = () -> {
+            try (Connection fdbConnection = connectionPool.borrowConnection()) {
+                return FdbSnapshot.loadVersion(fdbConnection);
+            }
+        };
+        return new FdbSnapshotManager(versionReader, version -> new FdbSnapshot(version, connectionPool, offHeapMatrix),
+                DEFAULT_REFRESH_INTERVAL_MILLIS, onSwap);
+    }
+
+    /**
+     * Same as {@link #createSnapshotManager(ConnectionPool, boolean, Runnable)} with the matrix on the heap, and
+     * nothing to run after a swap
+     */
+    static FdbSnapshotManager createSnapshotManager(ConnectionPool connectionPool) {
+        return createSnapshotManager(connectionPool, false, () -> {
+        });
+    }
+
+    /**
+     * Leases the current generation, creating the first one if there is none yet
+     *
+     * @return a lease that must be closed when the call using it finishes
+     * @throws IllegalStateException if the manager is closed, or the version of the first generation could not be read
+     */
+    Lease acquire() {
+        while (true) {
+            FdbSnapshot snapshot = CURRENT_SNAPSHOT.get();
+            if (snapshot == null)
+                snapshot = createFirstSnapshot();
+            // A generation released between reading it and retaining it has just been replaced, so read again
+            if (snapshot.retain())
+                return new Lease(snapshot);
+        }
+    }
+
+    /**
+     * Checks the version of the data in the database, and swaps in a new generation if it changed
+     *
+     * @return whether a new generation was swapped in
+     * @throws IllegalStateException if the version could not be read or the new generation could not be loaded
+     */
+    synchronized boolean refresh() {
+        FdbSnapshot currentSnapshot = CURRENT_SNAPSHOT.get();
+        if (currentSnapshot == null)
+            return false;
+        String version = readVersion();
+        if (version.equals(currentSnapshot.getVersion()))
+            return false;
+
+        FdbSnapshot newSnapshot = SNAPSHOT_FACTORY.apply(version);
+        newSnapshot.loadCopiesOf(currentSnapshot);
+        CURRENT_SNAPSHOT.set(newSnapshot);
+        currentSnapshot.release();
+        ON_SWAP.run();
+        return true;
+    }
+
+    /**
+     * Stops checking for new data releases and releases the current generation. No generation is leased afterwards
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (REFRESH_TASK != null)
+            REFRESH_TASK.cancel(false);
+        FdbSnapshot currentSnapshot = CURRENT_SNAPSHOT.getAndSet(null);
+        if (currentSnapshot != null)
+            currentSnapshot.release();
+    }
+
+    private synchronized FdbSnapshot createFirstSnapshot() {
+        if (closed)
+            throw new IllegalStateException("The FDB snapshots of a closed prescriber cannot be used");
+        FdbSnapshot snapshot = CURRENT_SNAPSHOT.get();
+        if (snapshot == null) {
+            snapshot = SNAPSHOT_FACTORY.apply(readVersion());
+            CURRENT_SNAPSHOT.set(snapshot);
+        }
+        return snapshot;
+    }
+
+    private String readVersion() {
+        try {
+            return VERSION_READER.readVersion();
+        } catch (SQLException e) {
+            throw new IllegalStateException("SQL is bad for reading the FDB version.\n" + e.getSQLState());
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (IllegalStateException e) {
+            // The current generation keeps being used, and the next check tries again
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package Prescriber;
+
+import Info.Drug;
+import Info.DrugInteraction;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable in-memory copy of every food interaction in FDB, keyed by GCN_SEQNO
+ * <p>
+ * Food interactions only depend on a drug's GCN_SEQNO, so the whole mapping is a few thousand rows. The GCN_SEQNOs are
+ * kept in a sorted array that is binary searched, and the interaction texts are interned since the same few hundred
+ * texts are shared by many GCN_SEQNOs
+ */
+final class FoodInteractionTable {
+
+    private static final int FETCH_SIZE = 5000;
+
+    private final int[] GCN_SEQNOS;
+    // The results of GCN_SEQNOS[i] are RESULTS[OFFSETS[i]..OFFSETS[i+1])
+    private final int[] OFFSETS;
+    private final String[] RESULTS;
+
+    /**
+     * Creates a table from food interactions that are sorted by GCN_SEQNO
+     *
+     * @param gcnSeqnos the GCN_SEQNO of each interaction
+     * @param results   the description of each interaction
+     */
+    FoodInteractionTable(int[] gcnSeqnos, String[] results) {
+        IntList distinctGcnSeqnos = new IntList();
+        IntList offsets = new IntList();
+        for (int i = 0; i < gcnSeqnos.length; i++) {
+            if (i == 0 || gcnSeqnos[i] != gcnSeqnos[i - 1]) {
+                if (i > 0 && gcnSeqnos[i] < gcnSeqnos[i - 1])
+                    throw new IllegalArgumentException("Food interactions must be sorted by GCN_SEQNO");
+                distinctGcnSeqnos.add(gcnSeqnos[i]);
+                offsets.add(i);
+            }
+        }
+        offsets.add(gcnSeqnos.length);
+        GCN_SEQNOS = distinctGcnSeqnos.toArray();
+        OFFSETS = offsets.toArray();
+        RESULTS = new String[results.length];
+        for (int i = 0; i < results.length; i++)
+            RESULTS[i] = results[i].intern();
+    }
+
+    private FoodInteractionTable(int[] gcnSeqnos, int[] offsets, String[] results) {
+        if (offsets.length != gcnSeqnos.length + 1 || offsets[0] != 0 || offsets[gcnSeqnos.length] != results.length)
+            throw new IllegalArgumentException("The offsets of a food interaction table are malformed");
+        for (int i = 1; i <= gcnSeqnos.length; i++) {
+            if ((i < gcnSeqnos.length && gcnSeqnos[i] <= gcnSeqnos[i - 1]) || offsets[i] < offsets[i - 1])
+                throw new IllegalArgumentException("Food interactions must be sorted by GCN_SEQNO");
+        }
+        GCN_SEQNOS = gcnSeqnos;
+        OFFSETS = offsets;
+        RESULTS = new String[results.length];
+        for (int i = 0; i < results.length; i++)
+            RESULTS[i] = results[i].intern();
+    }
+
+    /**
+     * Loads every food interaction
+     *
+     * @param fdbConnection connection to the FDB database
+     * @return a table of all food interactions
+     * @throws SQLException if the food interactions could not be queried
+     */
+    static FoodInteractionTable loadFoodInteractionTable(Connection fdbConnection) throws SQLException {
+        PreparedStatement pStmtToQueryAllFoodInteractions = fdbConnection.prepareStatement(
+                "SELECT DISTINCT DF.GCN_SEQNO, RESULT "
+                        + "FROM RDFIMGC0 AS DF "
+                        + "JOIN RDFIMMA0 AS DFI ON (DF.FDCDE = DFI.FDCDE) "
+                        + "ORDER BY DF.GCN_SEQNO");
+        pStmtToQueryAllFoodInteractions.setFetchSize(FETCH_SIZE);
+        try (ResultSet foodInteractionsAsRst = pStmtToQueryAllFoodInteractions.executeQuery()) {
+            IntList gcnSeqnos = new IntList();
+            List<String> results = new ArrayList<>();
+            while (foodInteractionsAsRst.next()) {
+                gcnSeqnos.add(foodInteractionsAsRst.getInt(1));
+                results.add(foodInteractionsAsRst.getString(2).trim());
+            }
+            return new FoodInteractionTable(gcnSeqnos.toArray(), results.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * Reads a table from a snapshot file
+     *
+     * @see FdbSnapshotFile
+     */
+    static FoodInteractionTable readFrom(ByteBuffer buffer) {
+        return new FoodInteractionTable(FdbSnapshotFile.readInts(buffer), FdbSnapshotFile.readInts(buffer),
+                FdbSnapshotFile.readStrings(buffer));
+    }
+
+    /**
+     * Writes the distinct GCN_SEQNOs of the table to a snapshot file, with the offsets of their food interactions
+     *
+     * @see FdbSnapshotFile
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        FdbSnapshotFile.writeInts(out, GCN_SEQNOS);
+        FdbSnapshotFile.writeInts(out, OFFSETS);
+        FdbSnapshotFile.writeStrings(out, RESULTS);
+    }
+
+    /**
+     * @return the number of GCN_SEQNOs that have food interactions
+     */
+    int size() {
+        return GCN_SEQNOS.length;
+    }
+
+    /**
+     * Finds all harmful food interactions that could occur when prescribed a given drug
+     *
+     * @see FdbPrescriberUnoptimized#queryFoodInteractionsOfDrug(Drug)
+     */
+    List<DrugInteraction> getFoodInteractions(Drug drug) {
+        int index = Arrays.binarySearch(GCN_SEQNOS, drug.getGcnSeqno());
+        if (index < 0)
+            return new ArrayList<>();
+        List<DrugInteraction> foodInteractions = new ArrayList<>(OFFSETS[index + 1] - OFFSETS[index]);
+        for (int i = OFFSETS[index]; i < OFFSETS[index + 1]; i++)
+            foodInteractions.add(DrugInteraction.createFdbFoodInteraction(drug, RESULTS[i]));
+        return foodInteractions;
+    }
+}
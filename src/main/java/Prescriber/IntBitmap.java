@@ -0,0 +1,178 @@
+package Prescriber;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An immutable compressed set of non-negative ints, for membership tests
+ * <p>
+ * The ints are split into chunks by their upper 16 bits. A sparse chunk is kept as a sorted array of its lower 16
+ * bits, and a chunk with more than {@value #MAX_ARRAY_CHUNK_SIZE} values as a 65536 bit bitset, so no chunk takes more
+ * than 8KB and sparse sets stay close to two bytes per value
+ */
+final class IntBitmap {
+
+    private static final int MAX_ARRAY_CHUNK_SIZE = 4096;
+    private static final int BITSET_WORDS = 1 << 10;
+
+    private final char[] CHUNK_KEYS;
+    // Exactly one of ARRAY_CHUNKS[i] and BITSET_CHUNKS[i] is set for the chunk with key CHUNK_KEYS[i]
+    private final char[][] ARRAY_CHUNKS;
+    private final long[][] BITSET_CHUNKS;
+    private final int SIZE;
+
+    /**
+     * Creates a bitmap of ints that are sorted and distinct
+     */
+    IntBitmap(int[] sortedValues) {
+        int chunkCount = 0;
+        for (int i = 0; i < sortedValues.length; i++) {
+            if (sortedValues[i] < 0 || (i > 0 && sortedValues[i] <= sortedValues[i - 1]))
+                throw new IllegalArgumentException("The values of a bitmap must be sorted, distinct, and not negative");
+            if (i == 0 || (sortedValues[i] >>> 16) != (sortedValues[i - 1] >>> 16))
+                chunkCount++;
+        }
+
+        CHUNK_KEYS = new char[chunkCount];
+        ARRAY_CHUNKS = new char[chunkCount][];
+        BITSET_CHUNKS = new long[chunkCount][];
+        SIZE = sortedValues.length;
+        int chunkStart = 0;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            char key = (char) (sortedValues[chunkStart] >>> 16);
+            int chunkEnd = chunkStart;
+            while (chunkEnd < sortedValues.length && (sortedValues[chunkEnd] >>> 16) == key)
+                chunkEnd++;
+
+            CHUNK_KEYS[chunk] = key;
+            if (chunkEnd - chunkStart <= MAX_ARRAY_CHUNK_SIZE) {
+                char[] lowBits = new char[chunkEnd - chunkStart];
+                for (int i = chunkStart; i < chunkEnd; i++)
+                    lowBits[i - chunkStart] = (char) sortedValues[i];
+                ARRAY_CHUNKS[chunk] = lowBits;
+            } else {
+                long[] bitset = new long[BITSET_WORDS];
+                for (int i = chunkStart; i < chunkEnd; i++) {
+                    char lowBits = (char) sortedValues[i];
+                    bitset[lowBits >>> 6] |= 1L << lowBits;
+                }
+                BITSET_CHUNKS[chunk] = bitset;
+            }
+            chunkStart = chunkEnd;
+        }
+    }
+
+    private IntBitmap(char[] chunkKeys, char[][] arrayChunks, long[][] bitsetChunks) {
+        int size = 0;
+        for (int chunk = 0; chunk < chunkKeys.length; chunk++) {
+            if (chunk > 0 && chunkKeys[chunk] <= chunkKeys[chunk - 1])
+                throw new IllegalArgumentException("The chunks of a bitmap must be sorted");
+            if (arrayChunks[chunk] != null) {
+                for (int i = 1; i < arrayChunks[chunk].length; i++) {
+                    if (arrayChunks[chunk][i] <= arrayChunks[chunk][i - 1])
+                        throw new IllegalArgumentException("The values of a bitmap chunk must be sorted and distinct");
+                }
+                size += arrayChunks[chunk].length;
+            } else {
+                if (bitsetChunks[chunk].length != BITSET_WORDS)
+                    throw new IllegalArgumentException("A bitset chunk must have " + BITSET_WORDS + " words");
+                for (long word : bitsetChunks[chunk])
+                    size += Long.bitCount(word);
+            }
+        }
+        CHUNK_KEYS = chunkKeys;
+        ARRAY_CHUNKS = arrayChunks;
+        BITSET_CHUNKS = bitsetChunks;
+        SIZE = size;
+    }
+
+    /**
+     * Reads a bitmap from a snapshot file, chunk by chunk as it was laid out in memory
+     *
+     * @see FdbSnapshotFile
+     */
+    static IntBitmap readFrom(ByteBuffer buffer) {
+        int chunkCount = buffer.getInt();
+        char[] chunkKeys = new char[chunkCount];
+        char[][] arrayChunks = new char[chunkCount][];
+        long[][] bitsetChunks = new long[chunkCount][];
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            chunkKeys[chunk] = buffer.getChar();
+            int arrayLength = buffer.getInt();
+            if (arrayLength < 0) {
+                bitsetChunks[chunk] = FdbSnapshotFile.readLongs(buffer);
+            } else {
+                arrayChunks[chunk] = new char[arrayLength];
+                buffer.asCharBuffer().get(arrayChunks[chunk]);
+                buffer.position(buffer.position() + arrayLength * Character.BYTES);
+            }
+        }
+        return new IntBitmap(chunkKeys, arrayChunks, bitsetChunks);
+    }
+
+    /**
+     * Writes each chunk of the bitmap to a snapshot file, with the length of an array chunk or -1 for a bitset chunk
+     *
+     * @see FdbSnapshotFile
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(CHUNK_KEYS.length);
+        for (int chunk = 0; chunk < CHUNK_KEYS.length; chunk++) {
+            out.writeChar(CHUNK_KEYS[chunk]);
+            if (ARRAY_CHUNKS[chunk] != null) {
+                out.writeInt(ARRAY_CHUNKS[chunk].length);
+                for (char lowBits : ARRAY_CHUNKS[chunk])
+                    out.writeChar(lowBits);
+            } else {
+                out.writeInt(-1);
+                FdbSnapshotFile.writeLongs(out, BITSET_CHUNKS[chunk]);
+            }
+        }
+    }
+
+    /**
+     * @return whether the bitmap contains a value
+     */
+    boolean contains(int value) {
+        if (value < 0)
+            return false;
+        int chunk = Arrays.binarySearch(CHUNK_KEYS, (char) (value >>> 16));
+        if (chunk < 0)
+            return false;
+        char lowBits = (char) value;
+        if (ARRAY_CHUNKS[chunk] != null)
+            return Arrays.binarySearch(ARRAY_CHUNKS[chunk], lowBits) >= 0;
+        return (BITSET_CHUNKS[chunk][lowBits >>> 6] & (1L << lowBits)) != 0;
+    }
+
+    /**
+     * @return the values of the bitmap in ascending order
+     */
+    int[] toArray() {
+        int[] values = new int[SIZE];
+        int i = 0;
+        for (int chunk = 0; chunk < CHUNK_KEYS.length; chunk++) {
+            int highBits = CHUNK_KEYS[chunk] << 16;
+            if (ARRAY_CHUNKS[chunk] != null) {
+                for (char lowBits : ARRAY_CHUNKS[chunk])
+                    values[i++] = highBits | lowBits;
+            } else {
+                long[] bitset = BITSET_CHUNKS[chunk];
+                for (int word = 0; word < bitset.length; word++) {
+                    for (long bits = bitset[word]; bits != 0; bits &= bits - 1)
+                        values[i++] = highBits | (word << 6) | Long.numberOfTrailingZeros(bits);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the number of values in the bitmap
+     */
+    int size() {
+        return SIZE;
+    }
+}
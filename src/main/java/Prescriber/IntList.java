@@ -0,0 +1,37 @@
+package Prescriber;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of ints, so building the in-memory indexes does not box every value
+ */
+final class IntList {
+    int[] values;
+    int size;
+
+    IntList() {
+        this(8);
+    }
+
+    IntList(int initialCapacity) {
+        values = new int[Math.max(1, initialCapacity)];
+    }
+
+    void add(int value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, size * 2);
+        values[size++] = value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
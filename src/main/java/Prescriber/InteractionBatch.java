@@ -0,0 +1,107 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Finds the interactions of many prescriptions at once
+ * <p>
+ * Rather than querying each prescription, the ingredient lists, formulations and allergen groups of a whole batch are
+ * collected, and one query per kind of interaction loads every interaction between them into a small {@link
+ * DrugInteractionMatrix} and {@link AllergenBitmapIndex}. The interactions of each prescription are then looked up in
+ * those, in the same order {@link Prescriber#findInteractions(Drug, Patient)} returns them
+ */
+final class InteractionBatch {
+
+    // Keeps the IN lists of one query to a size SQL Server handles comfortably
+    private static final int MAX_REQUESTS_PER_QUERY = 500;
+
+    private InteractionBatch() {
+    }
+
+    /**
+     * Finds the interactions of every request with two queries per {@value #MAX_REQUESTS_PER_QUERY} requests
+     *
+     * @param fdbConnection        connection to the FDB database
+     * @param requests             the prescriptions to check
+     * @param foodInteractionTable where food interactions are looked up
+     * @return the interactions of each request, in the order of the requests
+     * @throws SQLException if the interactions could not be queried
+     */
+    static List<List<DrugInteraction>> queryInteractions(Connection fdbConnection, List<PrescriptionRequest> requests,
+                                                         FoodInteractionTable foodInteractionTable) throws SQLException {
+        List<List<DrugInteraction>> interactionsOfRequests = new ArrayList<>(requests.size());
+        for (int start = 0; start < requests.size(); start += MAX_REQUESTS_PER_QUERY) {
+            List<PrescriptionRequest> batch = requests.subList(start, Math.min(requests.size(), start + MAX_REQUESTS_PER_QUERY));
+
+            TreeSet<Integer> ingredientLists = new TreeSet<>();
+            TreeSet<Integer> otherFormulations = new TreeSet<>();
+            TreeSet<Integer> allergenGroups = new TreeSet<>();
+            for (PrescriptionRequest request : batch) {
+                ingredientLists.add(request.getDrug().getIngredientIdentifier());
+                for (Drug drugPrescribed : request.getPatient().getDrugsPrescribed())
+                    otherFormulations.add(drugPrescribed.getGcnSeqno());
+                for (Allergy allergy : request.getPatient().getPatientAllergies())
+                    allergenGroups.add(allergy.getId());
+            }
+
+            AllergenBitmapIndex allergenBitmapIndex = allergenGroups.isEmpty() ? null
+                    : AllergenBitmapIndex.loadAllergenBitmapIndex(fdbConnection, toArray(allergenGroups), toArray(ingredientLists));
+            DrugInteractionMatrix drugInteractionMatrix = otherFormulations.isEmpty() ? null
+                    : DrugInteractionMatrix.loadDrugInteractionMatrix(fdbConnection, toArray(ingredientLists), toArray(otherFormulations));
+            interactionsOfRequests.addAll(findInteractions(batch, foodInteractionTable, allergenBitmapIndex, drugInteractionMatrix));
+        }
+        return interactionsOfRequests;
+    }
+
+    /**
+     * Looks up the interactions of every request in the in-memory copies of FDB
+     *
+     * @param requests              the prescriptions to check
+     * @param foodInteractionTable  where food interactions are looked up
+     * @param allergenBitmapIndex   where allergy interactions are looked up, which may be null if no patient has
+     *                              allergies
+     * @param drugInteractionMatrix where drug to drug interactions are looked up, which may be null if no patient takes
+     *                              any drugs
+     * @return the interactions of each request, in the order of the requests
+     */
+    static List<List<DrugInteraction>> findInteractions(List<PrescriptionRequest> requests,
+                                                        FoodInteractionTable foodInteractionTable,
+                                                        AllergenBitmapIndex allergenBitmapIndex,
+                                                        DrugInteractionMatrix drugInteractionMatrix) {
+        List<List<DrugInteraction>> interactionsOfRequests = new ArrayList<>(requests.size());
+        for (PrescriptionRequest request : requests) {
+            Drug drug = request.getDrug();
+            Patient patient = request.getPatient();
+            List<DrugInteraction> drugInteractions = new ArrayList<>(foodInteractionTable.getFoodInteractions(drug));
+            if (!patient.getPatientAllergies().isEmpty())
+                drugInteractions.addAll(allergenBitmapIndex.findInteractions(drug, patient));
+            if (!patient.getDrugsPrescribed().isEmpty())
+                drugInteractions.addAll(drugInteractionMatrix.findInteractions(drug, patient));
+            interactionsOfRequests.add(drugInteractions);
+        }
+        return interactionsOfRequests;
+    }
+
+    /**
+     * @return a request to prescribe each drug to the same patient
+     */
+    static List<PrescriptionRequest> createRequests(List<Drug> drugs, Patient patient) {
+        List<PrescriptionRequest> requests = new ArrayList<>(drugs.size());
+        for (Drug drug : drugs)
+            requests.add(PrescriptionRequest.createPrescriptionRequest(drug, patient));
+        return requests;
+    }
+
+    private static int[] toArray(TreeSet<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
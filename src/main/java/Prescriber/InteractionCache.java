@@ -0,0 +1,342 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+import org.apache.commons.lang3.Validate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size and time bounded cache of the allergy and drug to drug interactions found for a drug
+ * <p>
+ * Allergy interactions are cached by the drug's ingredient list and the patient's allergies, and drug to drug
+ * interactions by the drug's ingredient list and the ingredient list and DIN of every drug the patient takes. A refill
+ * checked against the same medications is then answered without a query. Food interactions only depend on the drug,
+ * so they are kept in a {@link FoodInteractionTable} instead
+ * <p>
+ * Entries only hold the ids and the interned text of each interaction. The {@link DrugInteraction} objects are built
+ * again from the drug and patient of each lookup, so a cached entry never keeps a patient's objects alive
+ */
+public final class InteractionCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 10_000;
+    private static final long DEFAULT_TIME_TO_LIVE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final byte ALLERGY = 0;
+    private static final byte DRUG_TO_DRUG = 1;
+
+    private final int MAX_ENTRIES;
+    private final long TIME_TO_LIVE_NANOS;
+    private final EvictionPolicy EVICTION_POLICY;
+    private final Map<Key, CachedInteractions> ENTRIES;
+    private final AtomicLong HIT_COUNT = new AtomicLong();
+    private final AtomicLong MISS_COUNT = new AtomicLong();
+    private final AtomicLong EVICTION_COUNT = new AtomicLong();
+    private final AtomicLong EXPIRY_COUNT = new AtomicLong();
+    // Counts the calls to clear, so a result that was being loaded when the cache was cleared is not cached
+    private long clearCount;
+
+    /**
+     * Which entry is removed when a full cache needs room for another
+     */
+    public enum EvictionPolicy {
+        /**
+         * Removes the entry that was looked up least recently
+         */
+        LEAST_RECENTLY_USED,
+        /**
+         * Removes the entry that was added first
+         */
+        FIRST_IN_FIRST_OUT
+    }
+
+    private InteractionCache(int maxEntries, long timeToLiveMillis, EvictionPolicy evictionPolicy) {
+        MAX_ENTRIES = maxEntries;
+        TIME_TO_LIVE_NANOS = TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis);
+        EVICTION_POLICY = evictionPolicy;
+        ENTRIES = new LinkedHashMap<Key, CachedInteractions>(16, 0.75f,
+                evictionPolicy == EvictionPolicy.LEAST_RECENTLY_USED) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedInteractions> eldest) {
+                if (size() <= MAX_ENTRIES)
+                    return false;
+                EVICTION_COUNT.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Creates a least recently used cache of 10,000 entries that each live for an hour
+     */
+    public static InteractionCache createInteractionCache() {
+        return createInteractionCache(DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE_MILLIS, EvictionPolicy.LEAST_RECENTLY_USED);
+    }
+
+    /**
+     * Creates a cache
+     *
+     * @param maxEntries       the most results kept at once, where zero turns caching off
+     * @param timeToLiveMillis how long a result is used after it was queried
+     * @param evictionPolicy   which result is removed when the cache is full
+     */
+    public static InteractionCache createInteractionCache(int maxEntries, long timeToLiveMillis,
+                                                          EvictionPolicy evictionPolicy) {
+        Validate.isTrue(maxEntries >= 0, "The size of an interaction cache cannot be negative");
+        Validate.isTrue(timeToLiveMillis > 0, "The time to live of an interaction cache must be positive");
+        Validate.notNull(evictionPolicy, "The eviction policy of an interaction cache cannot be null");
+        return new InteractionCache(maxEntries, timeToLiveMillis, evictionPolicy);
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return EVICTION_POLICY;
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long getHitCount() {
+        return HIT_COUNT.get();
+    }
+
+    /**
+     * @return the number of lookups that had to query the database
+     */
+    public long getMissCount() {
+        return MISS_COUNT.get();
+    }
+
+    /**
+     * @return the number of results removed to make room for another
+     */
+    public long getEvictionCount() {
+        return EVICTION_COUNT.get();
+    }
+
+    /**
+     * @return the number of results removed because they outlived the time to live
+     */
+    public long getExpiryCount() {
+        return EXPIRY_COUNT.get();
+    }
+
+    /**
+     * @return the number of results currently cached
+     */
+    public synchronized int size() {
+        return ENTRIES.size();
+    }
+
+    /**
+     * Removes every cached result, for example after a new FDB data release is loaded. Results that are still being
+     * loaded when the cache is cleared are returned to their callers but not cached, as they may be from the old release
+     */
+    public synchronized void clear() {
+        ENTRIES.clear();
+        clearCount++;
+    }
+
+    @Override
+    public String toString() {
+        return "InteractionCache{size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + ", expiries=" + getExpiryCount() + "}";
+    }
+
+    /**
+     * Returns the interactions between a drug and a patient's allergies, loading them if they are not cached
+     *
+     * @param drug    drug being prescribed
+     * @param patient patient being prescribed a drug
+     * @param loader  queries the allergy interactions, with the allergen group codes as ids and their names as text
+     * @return the allergy interactions of the drug, one per allergy of the patient in the order of the allergies
+     * @throws SQLException if the interactions were not cached and could not be queried
+     */
+    List<DrugInteraction> getAllergyInteractions(Drug drug, Patient patient, InteractionLoader loader) throws SQLException {
+        int[] ids = new int[patient.getPatientAllergies().size() + 1];
+        ids[0] = drug.getIngredientIdentifier();
+        int i = 1;
+        for (Allergy allergy : patient.getPatientAllergies())
+            ids[i++] = allergy.getId();
+
+        CachedInteractions cachedInteractions = get(new Key(ALLERGY, ids), loader);
+        List<DrugInteraction> allergyInteractions = new ArrayList<>(cachedInteractions.TEXTS.length);
+        // Interactions are reported under the patient's own allergy, as the allergen group may have been cached for
+        // another patient
+        for (Allergy allergy : patient.getPatientAllergies()) {
+            for (int j = 0; j < cachedInteractions.IDS.length; j++) {
+                if (cachedInteractions.IDS[j] == allergy.getId()) {
+                    allergyInteractions.add(DrugInteraction.createFdbAllergyInteraction(allergy, drug));
+                    break;
+                }
+            }
+        }
+        return allergyInteractions;
+    }
+
+    /**
+     * Returns the interactions between a drug and the drugs a patient takes, loading them if they are not cached
+     *
+     * @param drug    drug being prescribed
+     * @param patient patient being prescribed a drug
+     * @param loader  queries the drug to drug interactions, with the DINs of the interacting drugs in ascending order as
+     *                ids, the effects as text and, if it knows them, their severity levels
+     * @return the drug to drug interactions of the drug
+     * @throws SQLException if the interactions were not cached and could not be queried
+     */
+    List<DrugInteraction> getDrugToDrugInteractions(Drug drug, Patient patient, InteractionLoader loader) throws SQLException {
+        // The drugs prescribed are sorted by DIN, so the same medications always make the same key
+        int[] ids = new int[patient.getDrugsPrescribed().size() * 2 + 1];
+        ids[0] = drug.getIngredientIdentifier();
+        int i = 1;
+        for (Drug drugPrescribed : patient.getDrugsPrescribed()) {
+            ids[i++] = drugPrescribed.getId();
+            ids[i++] = drugPrescribed.getIngredientIdentifier();
+        }
+
+        CachedInteractions cachedInteractions = get(new Key(DRUG_TO_DRUG, ids), loader);
+        List<DrugInteraction> drugToDrugInteractions = new ArrayList<>(cachedInteractions.TEXTS.length);
+        Iterator<Drug> drugsPrescribedIterator = patient.getDrugsPrescribed().iterator();
+        Drug drugPrescribed = drugsPrescribedIterator.hasNext() ? drugsPrescribedIterator.next() : null;
+        for (int j = 0; j < cachedInteractions.TEXTS.length && drugPrescribed != null; j++) {
+            int idOfDrugInteracting = cachedInteractions.IDS[j];
+            while (drugPrescribed.getId() < idOfDrugInteracting && drugsPrescribedIterator.hasNext())
+                drugPrescribed = drugsPrescribedIterator.next();
+            if (drugPrescribed.getId() == idOfDrugInteracting)
+                drugToDrugInteractions.add(DrugInteraction.createFdbDrugToDrugInteraction(drug, drugPrescribed,
+                        cachedInteractions.getEffectCode(j), cachedInteractions.TEXTS[j], cachedInteractions.getSeverity(j)));
+        }
+        return drugToDrugInteractions;
+    }
+
+    /**
+     * Returns the cached result for a key, or loads and caches it if it is missing or has expired
+     * <p>
+     * The lock is not held while loading, so two threads missing the same key at once both query it
+     */
+    private CachedInteractions get(Key key, InteractionLoader loader) throws SQLException {
+        long clearCountBeforeLoad;
+        synchronized (this) {
+            clearCountBeforeLoad = clearCount;
+            CachedInteractions cachedInteractions = ENTRIES.get(key);
+            if (cachedInteractions != null) {
+                if (System.nanoTime() - cachedInteractions.LOADED_AT_NANOS < TIME_TO_LIVE_NANOS) {
+                    HIT_COUNT.incrementAndGet();
+                    return cachedInteractions;
+                }
+                ENTRIES.remove(key);
+                EXPIRY_COUNT.incrementAndGet();
+            }
+        }
+
+        MISS_COUNT.incrementAndGet();
+        CachedInteractions loadedInteractions = loader.load();
+        if (MAX_ENTRIES > 0) {
+            synchronized (this) {
+                if (clearCount == clearCountBeforeLoad)
+                    ENTRIES.put(key, loadedInteractions);
+            }
+        }
+        return loadedInteractions;
+    }
+
+    /**
+     * Queries the interactions for a cache miss
+     */
+    @FunctionalInterface
+    interface InteractionLoader {
+        CachedInteractions load() throws SQLException;
+    }
+
+    /**
+     * The rows of one query, as an id and a text per interaction, and optionally an effect code and a severity level
+     */
+    static final class CachedInteractions {
+        private final int[] IDS;
+        private final String[] EFFECT_CODES;
+        private final String[] TEXTS;
+        private final int[] SEVERITY_LEVELS;
+        private final long LOADED_AT_NANOS;
+
+        /**
+         * @param ids   the id of each interaction
+         * @param texts the text of each interaction, which is interned since the same effects and allergen groups come
+         *              up for many drugs
+         */
+        CachedInteractions(IntList ids, List<String> texts) {
+            this(ids, null, texts, null);
+        }
+
+        /**
+         * @param effectCodes    the effect code (ADI_EFFTC) of each interaction, or null if they are not known
+         * @param severityLevels the severity level (DDI_SL) of each interaction, or null if they are not known
+         */
+        CachedInteractions(IntList ids, List<String> effectCodes, List<String> texts, IntList severityLevels) {
+            Validate.isTrue(ids.size() == texts.size(), "Every cached interaction needs an id and a text");
+            Validate.isTrue(effectCodes == null || effectCodes.size() == ids.size(),
+                    "Every cached interaction needs an effect code, or none of them");
+            Validate.isTrue(severityLevels == null || severityLevels.size() == ids.size(),
+                    "Every cached interaction needs a severity level, or none of them");
+            IDS = ids.toArray();
+            EFFECT_CODES = effectCodes == null ? null : internAll(effectCodes);
+            TEXTS = internAll(texts);
+            SEVERITY_LEVELS = severityLevels == null ? null : severityLevels.toArray();
+            LOADED_AT_NANOS = System.nanoTime();
+        }
+
+        private static String[] internAll(List<String> strings) {
+            String[] internedStrings = new String[strings.size()];
+            for (int i = 0; i < internedStrings.length; i++)
+                internedStrings[i] = strings.get(i).intern();
+            return internedStrings;
+        }
+
+        private String getEffectCode(int interaction) {
+            return EFFECT_CODES == null ? null : EFFECT_CODES[interaction];
+        }
+
+        private DrugInteraction.Severity getSeverity(int interaction) {
+            return SEVERITY_LEVELS == null ? DrugInteraction.Severity.UNKNOWN
+                    : DrugInteraction.Severity.fromFdbSeverityLevel(SEVERITY_LEVELS[interaction]);
+        }
+    }
+
+    /**
+     * The kind of a cached result along with the ids it was queried with
+     */
+    private static final class Key {
+        private final byte KIND;
+        private final int[] IDS;
+        private final int HASH;
+
+        private Key(byte kind, int[] ids) {
+            KIND = kind;
+            IDS = ids;
+            HASH = 31 * Arrays.hashCode(ids) + kind;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return KIND == key.KIND && Arrays.equals(IDS, key.IDS);
+        }
+
+        @Override
+        public int hashCode() {
+            return HASH;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package Prescriber;
+
+import Apps.QueryCancellation;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.DrugInteraction.InteractionType;
+import Info.Patient;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs the independent checks of finding interactions at the same time on a shared executor, and waits for them up to a
+ * deadline
+ * <p>
+ * The results are merged in the order the checks were given, so a parallel prescriber returns interactions in the same
+ * order as a sequential one. A check that throws makes the whole call throw, but a check that is still running at the
+ * deadline is reported in the {@link InteractionResult} instead
+ * <p>
+ * A check that is given up on is stopped rather than left to finish: its thread is interrupted and the queries it is
+ * running through a {@link Apps.ConnectionPool} are cancelled, so it gives its connection back to the pool right away
+ */
+final class InteractionFanOut {
+
+    private InteractionFanOut() {
+    }
+
+    /**
+     * Runs the food, allergy, and drug to drug checks of a drug being prescribed to a patient. Checks that cannot
+     * find anything, like the allergy check of a patient with no allergies, are skipped
+     *
+     * @param drug                drug being prescribed
+     * @param patient             patient being prescribed
+     * @param timeoutMillis       how long to wait for all checks, or {@link Long#MAX_VALUE} to wait until they finish
+     * @param foodCheck           finds food interactions of a drug
+     * @param allergyCheck        finds interactions between a drug and the allergies of a patient
+     * @param drugToDrugCheck     finds interactions between a drug and the drugs prescribed to a patient
+     * @return the merged interactions of every check that finished
+     */
+    static InteractionResult findInteractions(Drug drug, Patient patient, long timeoutMillis,
+                                              Function<Drug, List<DrugInteraction>> foodCheck,
+                                              BiFunction<Drug, Patient, List<DrugInteraction>> allergyCheck,
+                                              BiFunction<Drug, Patient, List<DrugInteraction>> drugToDrugCheck) {
+        Map<InteractionType, Supplier<List<DrugInteraction>>> checks = new LinkedHashMap<>();
+        checks.put(InteractionType.DRUG_TO_FOOD, () -> foodCheck.apply(drug));
+        if (!patient.getPatientAllergies().isEmpty())
+            checks.put(InteractionType.DRUG_TO_ALLERGY, () -> allergyCheck.apply(drug, patient));
+        if (!patient.getDrugsPrescribed().isEmpty())
+            checks.put(InteractionType.DRUG_TO_DRUG, () -> drugToDrugCheck.apply(drug, patient));
+        return runChecks(checks, timeoutMillis);
+    }
+
+    /**
+     * Runs checks at the same time and merges their results
+     *
+     * @param checks        the checks to run, keyed by the kind of interaction each one finds
+     * @param timeoutMillis how long to wait for all checks, or {@link Long#MAX_VALUE} to wait until they finish
+     * @return the merged interactions of every check that finished
+     * @throws IllegalStateException if a check fails or the calling thread is interrupted while waiting
+     */
+    static InteractionResult runChecks(Map<InteractionType, Supplier<List<DrugInteraction>>> checks, long timeoutMillis) {
+        long deadline = timeoutMillis == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        Map<InteractionType, RunningCheck> runningChecks = new LinkedHashMap<>();
+        checks.forEach((type, check) -> runningChecks.put(type, RunningCheck.startCheck(check)));
+
+        List<DrugInteraction> interactions = new ArrayList<>();
+        Set<InteractionType> timedOutChecks = EnumSet.noneOf(InteractionType.class);
+        for (Map.Entry<InteractionType, RunningCheck> runningCheck : runningChecks.entrySet()) {
+            FutureTask<List<DrugInteraction>> task = runningCheck.getValue().TASK;
+            try {
+                if (deadline == Long.MAX_VALUE)
+                    interactions.addAll(task.get());
+                else
+                    interactions.addAll(task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                runningCheck.getValue().stop();
+                timedOutChecks.add(runningCheck.getKey());
+            } catch (ExecutionException e) {
+                runningChecks.values().forEach(RunningCheck::stop);
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new IllegalStateException("Finding " + runningCheck.getKey() + " interactions failed", e.getCause());
+            } catch (InterruptedException e) {
+                runningChecks.values().forEach(RunningCheck::stop);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while finding interactions");
+            }
+        }
+        return InteractionResult.createResult(interactions, timedOutChecks);
+    }
+
+    /**
+     * A check running on the shared executor, with the cancellation of the queries it runs
+     */
+    private static final class RunningCheck {
+        private final FutureTask<List<DrugInteraction>> TASK;
+        private final QueryCancellation CANCELLATION = QueryCancellation.createQueryCancellation();
+
+        private RunningCheck(Supplier<List<DrugInteraction>> check) {
+            TASK = new FutureTask<>(() -> runCheck(check));
+        }
+
+        static RunningCheck startCheck(Supplier<List<DrugInteraction>> check) {
+            RunningCheck runningCheck = new RunningCheck(check);
+            FdbAsyncPrescriber.defaultExecutor().execute(runningCheck.TASK);
+            return runningCheck;
+        }
+
+        @SuppressWarnings("try")
+        private List<DrugInteraction> runCheck(Supplier<List<DrugInteraction>> check) {
+            // Statements prepared on connections borrowed while the check runs are registered with the cancellation
+            try (QueryCancellation.Binding binding = CANCELLATION.bindToCurrentThread()) {
+                return check.get();
+            }
+        }
+
+        /**
+         * Interrupts the check if it is running, or keeps it from starting, and cancels the query it is waiting on
+         */
+        void stop() {
+            TASK.cancel(true);
+            CANCELLATION.cancel();
+        }
+    }
+}
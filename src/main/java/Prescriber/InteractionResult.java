@@ -0,0 +1,73 @@
+package Prescriber;
+
+import Info.DrugInteraction;
+import Info.DrugInteraction.InteractionType;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The interactions found by {@link Prescriber#findInteractions(Info.Drug, Info.Patient, long)}, along with which kinds of checks
+ * did not finish before the deadline
+ * <p>
+ * A result is only complete if every check finished. A partial result still holds the interactions of the checks that
+ * did finish, but the caller must not treat it as proof that the drug is safe
+ */
+public final class InteractionResult {
+
+    private final List<DrugInteraction> INTERACTIONS;
+    private final Set<InteractionType> TIMED_OUT_CHECKS;
+
+    private InteractionResult(List<DrugInteraction> interactions, Set<InteractionType> timedOutChecks) {
+        INTERACTIONS = Collections.unmodifiableList(interactions);
+        TIMED_OUT_CHECKS = Collections.unmodifiableSet(timedOutChecks);
+    }
+
+    /**
+     * Creates a result where every check finished
+     *
+     * @param interactions all interactions found
+     */
+    static InteractionResult createCompleteResult(List<DrugInteraction> interactions) {
+        return new InteractionResult(interactions, EnumSet.noneOf(InteractionType.class));
+    }
+
+    /**
+     * Creates a result where some checks may not have finished
+     *
+     * @param interactions   the interactions found by the checks that finished
+     * @param timedOutChecks the kinds of checks that did not finish
+     */
+    static InteractionResult createResult(List<DrugInteraction> interactions, Set<InteractionType> timedOutChecks) {
+        return new InteractionResult(interactions, timedOutChecks.isEmpty()
+                ? EnumSet.noneOf(InteractionType.class)
+                : EnumSet.copyOf(timedOutChecks));
+    }
+
+    /**
+     * @return the interactions found by the checks that finished
+     */
+    public final List<DrugInteraction> getInteractions() {
+        return INTERACTIONS;
+    }
+
+    /**
+     * @return the kinds of checks that did not finish before the deadline
+     */
+    public final Set<InteractionType> getTimedOutChecks() {
+        return TIMED_OUT_CHECKS;
+    }
+
+    /**
+     * @return true if every check finished, so {@link #getInteractions()} holds every interaction
+     */
+    public final boolean isComplete() {
+        return TIMED_OUT_CHECKS.isEmpty();
+    }
+
+    public final String toString() {
+        return "InteractionResult -> interactions: " + INTERACTIONS.size() + " timed out: " + TIMED_OUT_CHECKS;
+    }
+}
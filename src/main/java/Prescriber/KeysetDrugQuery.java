@@ -0,0 +1,67 @@
+package Prescriber;
+
+import Info.Drug;
+import org.apache.commons.lang3.Validate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Queries a page of drugs by seeking past the last drug of the previous page, rather than with an OFFSET that makes
+ * the database read and discard every earlier row
+ * <p>
+ * The seek predicate matches the ORDER BY, so SQL Server can start reading in LN, DIN order right after the
+ * continuation position
+ */
+final class KeysetDrugQuery {
+
+    private KeysetDrugQuery() {
+    }
+
+    /**
+     * @param fdbConnection     connection to the FDB database
+     * @param pattern           string that all drug names should contain
+     * @param continuationToken token of the previous page, or null for the first page
+     * @param pageSize          the size of a page
+     * @return the page of drugs after the continuation token
+     * @throws SQLException             if the drugs could not be queried
+     * @throws IllegalArgumentException if the page size is not positive
+     */
+    static DrugPage queryDrugPage(Connection fdbConnection, String pattern, String continuationToken, int pageSize)
+            throws SQLException {
+        Validate.isTrue(pageSize > 0, "The size of a drug page must be positive");
+        DrugPage.Position position = DrugPage.decodeToken(continuationToken);
+        // The first page has no position to seek past, and gets its own statement so neither plan has to cover both
+        PreparedStatement pStmtToQueryDrugPage = fdbConnection.prepareStatement(
+                "SELECT t1.LN, t3.HICL_SEQNO, t1.GCN_SEQNO, t1.DIN "
+                        + "FROM RICAIDC1 AS t1 "
+                        + "JOIN RLBLRCA1 AS t2 ON (t1.ILBLRID = t2.ILBLRID) "
+                        + "JOIN RGCNSEQ4 AS t3 ON (t1.GCN_SEQNO = t3.GCN_SEQNO) "
+                        + "WHERE t1.LN LIKE ? "
+                        + (position == null ? "" : "AND (t1.LN > ? OR (t1.LN = ? AND t1.DIN > ?)) ")
+                        + "ORDER BY t1.LN, t1.DIN "
+                        + "OFFSET 0 ROWS "
+                        + "FETCH NEXT ? ROWS ONLY");
+        int parameterIndex = 1;
+        pStmtToQueryDrugPage.setString(parameterIndex++, "%" + pattern + "%");
+        if (position != null) {
+            pStmtToQueryDrugPage.setString(parameterIndex++, position.NAME);
+            pStmtToQueryDrugPage.setString(parameterIndex++, position.NAME);
+            pStmtToQueryDrugPage.setInt(parameterIndex++, position.DIN);
+        }
+        // One extra row shows whether there is a next page
+        pStmtToQueryDrugPage.setInt(parameterIndex, pageSize + 1);
+        try (ResultSet drugsAsRst = pStmtToQueryDrugPage.executeQuery()) {
+            List<Drug> drugsAsObjects = new ArrayList<>(pageSize + 1);
+            while (drugsAsRst.next()) {
+                Drug drug = Drug.createFdbDrug(drugsAsRst.getInt(4), drugsAsRst.getInt(2), drugsAsRst.getInt(3), drugsAsRst.getString(1).trim());
+                drugsAsObjects.add(drug);
+            }
+            return DrugPage.createDrugPage(drugsAsObjects, pageSize);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package Prescriber;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A drug name pattern matched in memory the way SQL Server matches {@code LN LIKE '%' + pattern + '%'}, so the drug
+ * catalog finds the same drugs as the query, or an allergy prefix matched like {@code LIKE prefix + '%'}
+ * <p>
+ * {@code _} matches any one character, {@code %} matches any run of characters, and {@code [..]} matches one character
+ * of a class such as {@code [AEIOU]}, {@code [0-9]} or {@code [^0-9]}. A {@code [} that is never closed is an ordinary
+ * character. Matching ignores case, like the collation FDB uses
+ */
+final class LikePattern {
+
+    // Each element matches one character, except ANY_RUN elements which are null
+    private static final CharClass ANY_RUN = null;
+    private static final CharClass ANY_CHARACTER = character -> true;
+
+    private final String PATTERN;
+    private final CharClass[] ELEMENTS;
+    private final List<String> LITERAL_RUNS;
+
+    private LikePattern(String pattern, CharClass[] elements, List<String> literalRuns) {
+        PATTERN = pattern;
+        ELEMENTS = elements;
+        LITERAL_RUNS = literalRuns;
+    }
+
+    /**
+     * @param pattern a pattern that drug names should contain, which may use LIKE wildcards
+     */
+    static LikePattern compileLikePattern(String pattern) {
+        List<CharClass> elements = new ArrayList<>(pattern.length());
+        List<String> literalRuns = new ArrayList<>();
+        StringBuilder literalRun = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char character = pattern.charAt(i);
+            int classEnd = character == '[' ? pattern.indexOf(']', i + 2) : -1;
+            if (character == '%' || character == '_' || classEnd >= 0) {
+                elements.add(character == '%' ? ANY_RUN : character == '_' ? ANY_CHARACTER : compileClass(pattern, i + 1, classEnd));
+                if (literalRun.length() > 0)
+                    literalRuns.add(literalRun.toString());
+                literalRun.setLength(0);
+                if (classEnd >= 0)
+                    i = classEnd;
+            } else {
+                elements.add(other -> equalsIgnoreCase(character, other));
+                literalRun.append(character);
+            }
+        }
+        if (literalRun.length() > 0)
+            literalRuns.add(literalRun.toString());
+        return new LikePattern(pattern, elements.toArray(new CharClass[0]), literalRuns);
+    }
+
+    /**
+     * @return the runs of ordinary characters in the pattern, which every matching name contains
+     */
+    List<String> getLiteralRuns() {
+        return LITERAL_RUNS;
+    }
+
+    /**
+     * @return whether a name contains a match of the pattern
+     */
+    boolean isFoundIn(String name) {
+        if (!hasWildcard())
+            return containsIgnoreCase(name, PATTERN);
+        return matches(name, false);
+    }
+
+    /**
+     * @return whether a name starts with a match of the pattern
+     */
+    boolean isPrefixOf(String name) {
+        if (!hasWildcard())
+            return name.regionMatches(true, 0, PATTERN, 0, PATTERN.length());
+        return matches(name, true);
+    }
+
+    private boolean matches(String name, boolean anchored) {
+        // Greedy matching that goes back to the last run wildcard on a mismatch, starting as if behind a leading % unless
+        // the match must start at the beginning of the name
+        int element = 0;
+        int position = 0;
+        int lastRunElement = -1;
+        int lastRunPosition = 0;
+        while (element < ELEMENTS.length) {
+            if (ELEMENTS[element] == ANY_RUN) {
+                lastRunElement = element++;
+                lastRunPosition = position;
+            } else if (position < name.length() && ELEMENTS[element].matches(name.charAt(position))) {
+                element++;
+                position++;
+            } else {
+                if ((anchored && lastRunElement < 0) || ++lastRunPosition > name.length())
+                    return false;
+                element = lastRunElement + 1;
+                position = lastRunPosition;
+            }
+        }
+        // The pattern is followed by an implicit %, so the rest of the name does not matter
+        return true;
+    }
+
+    /**
+     * @return whether the pattern has any wildcard, rather than only ordinary characters
+     */
+    boolean hasWildcard() {
+        return !PATTERN.isEmpty() && !(LITERAL_RUNS.size() == 1 && LITERAL_RUNS.get(0).length() == PATTERN.length());
+    }
+
+    private static boolean containsIgnoreCase(String string, String pattern) {
+        for (int start = 0; start + pattern.length() <= string.length(); start++) {
+            if (string.regionMatches(true, start, pattern, 0, pattern.length()))
+                return true;
+        }
+        return false;
+    }
+
+    private static CharClass compileClass(String pattern, int start, int end) {
+        boolean negated = pattern.charAt(start) == '^' && end > start + 1;
+        int first = negated ? start + 1 : start;
+        StringBuilder lows = new StringBuilder();
+        StringBuilder highs = new StringBuilder();
+        for (int i = first; i < end; i++) {
+            char low = pattern.charAt(i);
+            char high = low;
+            if (i + 2 < end && pattern.charAt(i + 1) == '-') {
+                high = pattern.charAt(i + 2);
+                i += 2;
+            }
+            lows.append(low);
+            highs.append(high);
+        }
+        return character -> {
+            for (int i = 0; i < lows.length(); i++) {
+                if (inRangeIgnoreCase(character, lows.charAt(i), highs.charAt(i)))
+                    return !negated;
+            }
+            return negated;
+        };
+    }
+
+    private static boolean inRangeIgnoreCase(char character, char low, char high) {
+        char upper = Character.toUpperCase(character);
+        char lower = Character.toLowerCase(character);
+        return (upper >= Character.toUpperCase(low) && upper <= Character.toUpperCase(high))
+                || (lower >= Character.toLowerCase(low) && lower <= Character.toLowerCase(high));
+    }
+
+    private static boolean equalsIgnoreCase(char first, char second) {
+        return first == second || Character.toUpperCase(first) == Character.toUpperCase(second)
+                || Character.toLowerCase(first) == Character.toLowerCase(second);
+    }
+
+    @FunctionalInterface
+    private interface CharClass {
+        boolean matches(char character);
+    }
+}
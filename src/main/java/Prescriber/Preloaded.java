@@ -0,0 +1,82 @@
+package Prescriber;
+
+import Apps.ConnectionPool;
+import Apps.QueryCancellation;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * An in-memory copy of some FDB data that is loaded the first time it is used
+ * <p>
+ * Whichever thread uses the copy first loads it for every thread, so the load runs with no {@link QueryCancellation}
+ * bound. A check that gives up at its deadline while it is loading the copy does not cancel the load for the threads
+ * waiting on it
+ *
+ * @param <T> the type of the copy
+ */
+final class Preloaded<T> {
+
+    private final ConnectionPool CONNECTION_POOL;
+    private final Loader<T> LOADER;
+    private final String NAME;
+    private volatile T value;
+
+    /**
+     * Loads a copy of some FDB data over a connection
+     */
+    @FunctionalInterface
+    interface Loader<T> {
+        T load(Connection fdbConnection) throws SQLException;
+    }
+
+    /**
+     * @param connectionPool pool to borrow the connection the copy is loaded over from
+     * @param loader         loads the copy
+     * @param name           name of the copy, for the message of a failed load
+     */
+    Preloaded(ConnectionPool connectionPool, Loader<T> loader, String name) {
+        CONNECTION_POOL = connectionPool;
+        LOADER = loader;
+        NAME = name;
+    }
+
+    /**
+     * Returns the copy, loading it if this is the first time it is used
+     *
+     * @throws IllegalStateException if the copy could not be loaded
+     */
+    @SuppressWarnings("try")
+    T get() {
+        T loadedValue = value;
+        if (loadedValue == null) {
+            synchronized (this) {
+                loadedValue = value;
+                if (loadedValue == null) {
+                    try (QueryCancellation.Binding unbound = QueryCancellation.unbindFromCurrentThread();
+                         Connection fdbConnection = CONNECTION_POOL.borrowConnection()) {
+                        loadedValue = LOADER.load(fdbConnection);
+                        value = loadedValue;
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("SQL is bad for loading the " + NAME + ".\n" + e.getSQLState());
+                    }
+                }
+            }
+        }
+        return loadedValue;
+    }
+
+    /**
+     * @return whether the copy has been loaded
+     */
+    boolean isLoaded() {
+        return value != null;
+    }
+
+    /**
+     * Drops the copy, so the next use loads it again. Used when a new FDB data release is loaded
+     */
+    synchronized void reset() {
+        value = null;
+    }
+}
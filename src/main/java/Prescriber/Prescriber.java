@@ -4,8 +4,14 @@ import Info.Allergy;
 import Info.Drug;
 import Info.DrugInteraction;
 import Info.Patient;
+import org.apache.commons.lang3.Validate;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * An object that can gather the necessary information in order to make a prescription
@@ -34,6 +40,66 @@ public interface Prescriber {
         return new FdbPrescriberOptimized(pageSize);
     }
 
+    /**
+     * Creates a prescriber with a given page size that keeps the interactions it finds in a given cache
+     * <p>
+     * The optimized prescriber caches allergy and drug to drug interactions, and this method is for choosing the size,
+     * time to live, and eviction policy of the cache, or for watching its hit and miss counts. Food interactions are
+     * not cached, since they come from a table of every food interaction. A cache can be shared by several prescribers
+     *
+     * @param pageSize         the size of a page
+     * @param interactionCache where the allergy and drug to drug interactions of a drug are cached
+     */
+    static Prescriber createFdbPrescriber(int pageSize, InteractionCache interactionCache) {
+        return new FdbPrescriberOptimized(pageSize, false, false, interactionCache);
+    }
+
+    /**
+     * Creates a prescriber with a page size of 20 that uses all of our optimizations, and that queries drugs from an
+     * in-memory catalog of every drug name rather than from the database
+     * <p>
+     * The catalog is loaded the first time drugs are queried. After that, querying drugs does not touch the database
+     * and returns drugs in the same order. Drug to drug interactions are likewise found in a matrix of every ingredient
+     * list and formulation that interact, and allergy interactions in an index of the ingredient lists of every
+     * allergen group, which are built the first time they are checked
+     */
+    static Prescriber createFdbPrescriberWithCatalog() {
+        return new FdbPrescriberOptimized(20, true);
+    }
+
+    /**
+     * Same as {@link #createFdbPrescriberWithCatalog()} with a given page size
+     *
+     * @param pageSize the size of a page
+     */
+    static Prescriber createFdbPrescriberWithCatalog(int pageSize) {
+        return new FdbPrescriberOptimized(pageSize, true);
+    }
+
+    /**
+     * Same as {@link #createFdbPrescriberWithCatalog(int)}, optionally keeping the drug to drug interaction matrix in
+     * direct memory outside the Java heap
+     *
+     * @param pageSize      the size of a page
+     * @param offHeapMatrix whether to keep the drug to drug interaction matrix off the heap
+     */
+    static Prescriber createFdbPrescriberWithCatalog(int pageSize, boolean offHeapMatrix) {
+        return new FdbPrescriberOptimized(pageSize, true, offHeapMatrix, InteractionCache.createInteractionCache());
+    }
+
+    /**
+     * Creates a prescriber with a page size of 20 that serves everything from a snapshot file of FDB, rather than from
+     * the database
+     * <p>
+     * The file is memory mapped, so the prescriber starts without loading anything from a server and needs no database
+     * at all. Its results are those of {@link #createFdbPrescriberWithCatalog()} for the FDB data release the file was
+     * exported from
+     *
+     * @param snapshotFile a file written by {@link FdbSnapshotFile#exportFdbSnapshotFile(Path)}
+     */
+    static Prescriber createFdbPrescriberFromSnapshotFile(Path snapshotFile) {
+        return new FdbPrescriberSnapshotFile(snapshotFile, 20);
+    }
 
     /**
      * Creates an presciber with a page size of 20 that is not optimized at all. That is, not parallel programming, relation algebra
@@ -102,6 +168,45 @@ public interface Prescriber {
      */
     List<Drug> queryDrugs(String pattern);
 
+    /**
+     * Same as {@link #queryDrugs(String)}, but the drugs are read as the stream is consumed rather than all at once
+     * <p>
+     * The stream holds a database connection until it is closed, so it should be used in a try-with-resources block.
+     * A consumer that stops early, for example with {@link Stream#limit(long)}, never reads the rest of the drugs. This
+     * default implementation streams the list returned by {@link #queryDrugs(String)}
+     *
+     * @param pattern string that all drug names should contain
+     * @return a stream of all drugs that contain the pattern, which must be closed
+     */
+    default Stream<Drug> streamDrugs(String pattern) {
+        return queryDrugs(pattern).stream();
+    }
+
+    /**
+     * Looks up drugs by their DIN, for example to load the drugs of a saved patient or an order from another system
+     * <p>
+     * This default implementation checks every drug {@link #streamDrugs(String)} returns, so each call costs as much as
+     * reading the whole catalog. It is overridden by the prescribers that can look DINs up directly
+     *
+     * @param dins the DINs of the drugs
+     * @return the drugs found, in the order of their DINs. DINs that are not in FDB are left out
+     */
+    default List<Drug> getDrugsByDin(int... dins) {
+        Map<Integer, Drug> drugsByDin = new HashMap<>();
+        for (int din : dins)
+            drugsByDin.put(din, null);
+        try (Stream<Drug> drugs = streamDrugs("")) {
+            drugs.filter(drug -> drugsByDin.containsKey(drug.getId()))
+                    .forEach(drug -> drugsByDin.putIfAbsent(drug.getId(), drug));
+        }
+        List<Drug> drugsFound = new ArrayList<>(dins.length);
+        for (int din : dins) {
+            if (drugsByDin.get(din) != null)
+                drugsFound.add(drugsByDin.get(din));
+        }
+        return drugsFound;
+    }
+
     /**
      * Same as {@link #queryDrugs(String, int)} but only the drugs on a particular page are shown
      * <p>
@@ -113,6 +218,36 @@ public interface Prescriber {
      */
     List<Drug> queryDrugs(String pattern, int page);
 
+    /**
+     * Returns a page of the drugs whose name contains a pattern, sorted by name then DIN
+     * <p>
+     * Unlike {@link #queryDrugs(String, int)}, a page starts right after the last drug of the previous page, so every
+     * page costs the same to query however deep it is, and drugs added between two calls do not shift later pages.
+     * This default implementation queries every matching drug and sorts them in memory, and is overridden by the
+     * prescribers that use pagination
+     *
+     * @param pattern           string that all drug names should contain
+     * @param continuationToken {@link DrugPage#getContinuationToken()} of the previous page, or null for the first page
+     * @param pageSize          the most drugs on a page
+     * @return the next page of drugs
+     * @throws IllegalArgumentException if the continuation token was not made by a drug page, or the page size is not
+     *                                  positive
+     */
+    default DrugPage queryDrugPage(String pattern, String continuationToken, int pageSize) {
+        Validate.isTrue(pageSize > 0, "The size of a drug page must be positive");
+        DrugPage.Position lastDrug = DrugPage.decodeToken(continuationToken);
+        List<Drug> drugs = new ArrayList<>(queryDrugs(pattern));
+        drugs.sort(DrugPage.DRUG_ORDER);
+        List<Drug> drugsOnPage = new ArrayList<>(pageSize + 1);
+        for (Drug drug : drugs) {
+            if (drugsOnPage.size() > pageSize)
+                break;
+            if (lastDrug == null || lastDrug.isBefore(drug))
+                drugsOnPage.add(drug);
+        }
+        return DrugPage.createDrugPage(drugsOnPage, pageSize);
+    }
+
     /**
      * Finds all allergies that start with a given prefix
      *
@@ -131,6 +266,88 @@ public interface Prescriber {
      */
     List<DrugInteraction> findInteractions(Drug drugBeingPrescribed, Patient patient);
 
+    /**
+     * Same as {@link #findInteractions(Drug, Patient)}, but only waits for the food, allergy, and drug to drug checks
+     * for a limited time
+     * <p>
+     * If a check has not finished by the deadline, the result is partial and says which checks timed out. An
+     * implementation that runs the checks one after another cannot give up part way, so by default this waits for
+     * every check and always returns a complete result
+     *
+     * @param drugBeingPrescribed the drug we are attempting to prescribe to a patient
+     * @param patient             patient we are prescribing to
+     * @param timeoutMillis       how long to wait for the checks, in milliseconds
+     * @return the interactions found, and the checks that did not finish in time
+     */
+    default InteractionResult findInteractions(Drug drugBeingPrescribed, Patient patient, long timeoutMillis) {
+        return InteractionResult.createCompleteResult(findInteractions(drugBeingPrescribed, patient));
+    }
+
+    /**
+     * Finds the interactions of many prescriptions, each of a drug to a patient, at once
+     * <p>
+     * The interactions of each request are the same as {@link #findInteractions(Drug, Patient)} would return for it.
+     * This default implementation checks the requests one at a time, and is overridden by the prescribers that can
+     * check a whole batch with a few queries
+     *
+     * @param requests the prescriptions to check
+     * @return the interactions of each request, in the same order as the requests
+     */
+    default List<List<DrugInteraction>> findInteractionsBatch(List<PrescriptionRequest> requests) {
+        List<List<DrugInteraction>> interactionsOfRequests = new ArrayList<>(requests.size());
+        for (PrescriptionRequest request : requests)
+            interactionsOfRequests.add(findInteractions(request.getDrug(), request.getPatient()));
+        return interactionsOfRequests;
+    }
+
+    /**
+     * Checks many drugs that could be prescribed to a patient, for example every drug that shares a GCN with a drug that
+     * interacts, and ranks them from the safest to the least safe
+     * <p>
+     * Drugs the patient is allergic to rank last. The others rank by their most severe drug to drug interaction, then by
+     * their number of interactions, and drugs that are as safe keep the order of the candidates. The candidates are checked
+     * with {@link #findInteractionsBatch(List)}. Interactions whose severity the prescriber does not know are
+     * {@link DrugInteraction.Severity#UNKNOWN}, which ranks after moderate and before severe, so a drug is never ranked
+     * safer only because the severity of its interaction is missing
+     *
+     * @param candidates the drugs that could be prescribed
+     * @param patient    the patient they would be prescribed to
+     * @return a ranked alternative for each candidate, the safest first
+     */
+    default List<RankedAlternative> rankAlternatives(List<Drug> candidates, Patient patient) {
+        return RankedAlternative.rankAlternatives(candidates,
+                findInteractionsBatch(InteractionBatch.createRequests(candidates, patient)));
+    }
+
+    /**
+     * Finds all interactions between the drugs a patient already takes, for example to review their medications on
+     * admission
+     * <p>
+     * Each pair of drugs is checked once, with the drug that comes first in {@link Patient#getDrugsPrescribed()} as
+     * the drug being prescribed, so an interacting pair is not reported a second time the other way around. The
+     * interactions are ordered by that first drug, then by the drug it interacts with. This default implementation
+     * checks each drug against the drugs after it with {@link #findInteractions(Drug, Patient)}, so a patient taking n
+     * drugs costs n - 1 full checks, whose food interactions are looked up and thrown away. It is overridden by the
+     * prescribers that can check every pair at once
+     *
+     * @param patient the patient whose drugs are checked against each other
+     * @return the drug to drug interactions between the patient's drugs
+     */
+    default List<DrugInteraction> reviewRegimen(Patient patient) {
+        List<DrugInteraction> drugToDrugInteractions = new ArrayList<>();
+        List<Drug> drugsPrescribed = new ArrayList<>(patient.getDrugsPrescribed());
+        for (int i = 0; i + 1 < drugsPrescribed.size(); i++) {
+            Patient patientTakingLaterDrugs = new Patient();
+            for (Drug laterDrug : drugsPrescribed.subList(i + 1, drugsPrescribed.size()))
+                patientTakingLaterDrugs.addDrug(laterDrug);
+            for (DrugInteraction drugInteraction : findInteractions(drugsPrescribed.get(i), patientTakingLaterDrugs)) {
+                if (drugInteraction.getInteractionType() == DrugInteraction.InteractionType.DRUG_TO_DRUG)
+                    drugToDrugInteractions.add(drugInteraction);
+            }
+        }
+        return drugToDrugInteractions;
+    }
+
     /**
      * Adds a drug to the prescribed drugs of the patient
      *
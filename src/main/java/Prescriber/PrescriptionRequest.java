@@ -0,0 +1,42 @@
+package Prescriber;
+
+import Info.Drug;
+import Info.Patient;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A drug that is waiting to be prescribed to a patient, for checking many orders at once with {@link
+ * Prescriber#findInteractionsBatch(java.util.List)}
+ */
+public final class PrescriptionRequest {
+
+    private final Drug DRUG;
+    private final Patient PATIENT;
+
+    private PrescriptionRequest(Drug drug, Patient patient) {
+        DRUG = drug;
+        PATIENT = patient;
+    }
+
+    /**
+     * @param drug    the drug being prescribed
+     * @param patient the patient it is being prescribed to
+     */
+    public static PrescriptionRequest createPrescriptionRequest(Drug drug, Patient patient) {
+        Validate.notNull(drug, "The drug of a prescription request cannot be null");
+        Validate.notNull(patient, "The patient of a prescription request cannot be null");
+        return new PrescriptionRequest(drug, patient);
+    }
+
+    public final Drug getDrug() {
+        return DRUG;
+    }
+
+    public final Patient getPatient() {
+        return PATIENT;
+    }
+
+    public final String toString() {
+        return "PrescriptionRequest -> drug: " + DRUG.getDisplayName() + " patient: " + PATIENT.getDisplayName();
+    }
+}
@@ -0,0 +1,103 @@
+package Prescriber;
+
+import Info.Drug;
+import Info.DrugInteraction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A drug that could be prescribed instead of another, with the interactions it would have with a patient
+ *
+ * @see Prescriber#rankAlternatives(List, Info.Patient)
+ */
+public final class RankedAlternative {
+
+    /**
+     * Severities from the least to the most severe. An unknown severity could be anything up to contraindicated, so it
+     * ranks after moderate rather than where it sits in {@link DrugInteraction.Severity}
+     */
+    private static final List<DrugInteraction.Severity> SEVERITIES_IN_RANK_ORDER = Arrays.asList(
+            DrugInteraction.Severity.NONE, DrugInteraction.Severity.MODERATE, DrugInteraction.Severity.UNKNOWN,
+            DrugInteraction.Severity.SEVERE, DrugInteraction.Severity.CONTRAINDICATED);
+    private static final Comparator<DrugInteraction.Severity> LEAST_SEVERE_FIRST = Comparator.comparingInt(SEVERITIES_IN_RANK_ORDER::indexOf);
+
+    /**
+     * Candidates the patient is allergic to come last, then candidates with more severe drug to drug interactions, then
+     * candidates with more interactions
+     */
+    private static final Comparator<RankedAlternative> SAFEST_FIRST = Comparator
+            .comparing(RankedAlternative::isAllergen)
+            .thenComparing(RankedAlternative::getSeverity, LEAST_SEVERE_FIRST)
+            .thenComparingInt(RankedAlternative::getInteractionCount);
+
+    private final Drug DRUG;
+    private final List<DrugInteraction> INTERACTIONS;
+    private final DrugInteraction.Severity SEVERITY;
+
+    private RankedAlternative(Drug drug, List<DrugInteraction> interactions) {
+        DRUG = drug;
+        INTERACTIONS = Collections.unmodifiableList(interactions);
+        DrugInteraction.Severity severity = DrugInteraction.Severity.NONE;
+        for (DrugInteraction interaction : interactions) {
+            if (interaction.getInteractionType() == DrugInteraction.InteractionType.DRUG_TO_DRUG
+                    && LEAST_SEVERE_FIRST.compare(interaction.getSeverity(), severity) > 0)
+                severity = interaction.getSeverity();
+        }
+        SEVERITY = severity;
+    }
+
+    /**
+     * Ranks candidates from the safest to the least safe, keeping the order of the candidates when they are as safe
+     *
+     * @param candidates               the drugs that could be prescribed
+     * @param interactionsOfCandidates the interactions of each candidate with the patient
+     * @return the ranked candidates
+     */
+    static List<RankedAlternative> rankAlternatives(List<Drug> candidates, List<List<DrugInteraction>> interactionsOfCandidates) {
+        List<RankedAlternative> alternatives = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++)
+            alternatives.add(new RankedAlternative(candidates.get(i), interactionsOfCandidates.get(i)));
+        alternatives.sort(SAFEST_FIRST);
+        return alternatives;
+    }
+
+    public final Drug getDrug() {
+        return DRUG;
+    }
+
+    /**
+     * @return the interactions the drug would have with the patient, in the order of {@link
+     * Prescriber#findInteractions(Drug, Info.Patient)}
+     */
+    public final List<DrugInteraction> getInteractions() {
+        return INTERACTIONS;
+    }
+
+    public final int getInteractionCount() {
+        return INTERACTIONS.size();
+    }
+
+    /**
+     * @return the severity of the most severe drug to drug interaction, counting an unknown severity as more severe than
+     * moderate, or {@link DrugInteraction.Severity#NONE} if there are none
+     */
+    public final DrugInteraction.Severity getSeverity() {
+        return SEVERITY;
+    }
+
+    /**
+     * @return true if the patient is allergic to the drug
+     */
+    public final boolean isAllergen() {
+        return INTERACTIONS.stream().anyMatch(interaction -> interaction.getInteractionType() == DrugInteraction.InteractionType.DRUG_TO_ALLERGY);
+    }
+
+    public final String toString() {
+        return "RankedAlternative -> drug: " + DRUG.getDisplayName() + " interactions: " + INTERACTIONS.size()
+                + " severity: " + SEVERITY;
+    }
+}
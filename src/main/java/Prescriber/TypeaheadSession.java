@@ -0,0 +1,154 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Displayable;
+import Info.Drug;
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Searches drugs or allergies as a user types, reusing the result of the previous keystroke when it can
+ * <p>
+ * Drugs are found by names containing the pattern, so when the new pattern contains the previous one its matches are a
+ * subset of the previous matches, and they are filtered in memory instead of queried. Allergies are found by names
+ * starting with the pattern, so the same holds when the new pattern starts with the previous one. A small set of
+ * patterns that had no matches is also kept, and any pattern that refines one of them has no matches either
+ * <p>
+ * Patterns containing SQL wildcard characters are always queried, since they do not mean the same thing in memory
+ *
+ * @param <T> the type of what is searched
+ */
+public final class TypeaheadSession<T extends Displayable> {
+
+    private static final int MAX_EMPTY_PATTERNS = 32;
+
+    private final Function<String, List<T>> QUERY;
+    private final boolean MATCHES_PREFIX;
+    // Least recently added first
+    private final Set<String> EMPTY_PATTERNS = new LinkedHashSet<>();
+    private String lastPattern;
+    private List<T> lastResults;
+    private long queryCount;
+
+    private TypeaheadSession(Function<String, List<T>> query, boolean matchesPrefix) {
+        QUERY = query;
+        MATCHES_PREFIX = matchesPrefix;
+    }
+
+    /**
+     * Creates a session that searches drugs with {@link Prescriber#queryDrugs(String)}
+     */
+    public static TypeaheadSession<Drug> createDrugTypeaheadSession(Prescriber prescriber) {
+        Validate.notNull(prescriber, "The prescriber of a typeahead session cannot be null");
+        return new TypeaheadSession<>(prescriber::queryDrugs, false);
+    }
+
+    /**
+     * Creates a session that searches allergies with {@link Prescriber#queryAllergies(String)}
+     */
+    public static TypeaheadSession<Allergy> createAllergyTypeaheadSession(Prescriber prescriber) {
+        Validate.notNull(prescriber, "The prescriber of a typeahead session cannot be null");
+        return new TypeaheadSession<>(prescriber::queryAllergies, true);
+    }
+
+    /**
+     * Returns everything matching a pattern, the same as querying the prescriber would
+     *
+     * @param pattern what the user has typed so far
+     * @return the matches, in the order the prescriber returns them
+     */
+    public synchronized List<T> search(String pattern) {
+        List<T> results;
+        if (hasWildcard(pattern)) {
+            results = query(pattern);
+        } else if (refinesEmptyPattern(pattern)) {
+            results = Collections.emptyList();
+        } else if (lastPattern != null && refines(pattern, lastPattern)) {
+            results = new ArrayList<>();
+            for (T result : lastResults) {
+                if (matches(result.getDisplayName(), pattern))
+                    results.add(result);
+            }
+        } else {
+            results = query(pattern);
+        }
+
+        if (results.isEmpty() && !hasWildcard(pattern))
+            addEmptyPattern(pattern);
+        lastPattern = hasWildcard(pattern) ? null : pattern;
+        lastResults = results;
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * @return the number of searches that had to query the prescriber
+     */
+    public synchronized long getQueryCount() {
+        return queryCount;
+    }
+
+    /**
+     * Forgets every earlier search, for example after a drug or allergy was added to FDB
+     */
+    public synchronized void reset() {
+        lastPattern = null;
+        lastResults = null;
+        EMPTY_PATTERNS.clear();
+    }
+
+    private List<T> query(String pattern) {
+        queryCount++;
+        return QUERY.apply(pattern);
+    }
+
+    /**
+     * @return whether everything matching a pattern also matches an earlier pattern
+     */
+    private boolean refines(String pattern, String earlierPattern) {
+        return MATCHES_PREFIX ? startsWithIgnoreCase(pattern, earlierPattern) : containsIgnoreCase(pattern, earlierPattern);
+    }
+
+    private boolean matches(String displayName, String pattern) {
+        return MATCHES_PREFIX ? startsWithIgnoreCase(displayName, pattern) : containsIgnoreCase(displayName, pattern);
+    }
+
+    private boolean refinesEmptyPattern(String pattern) {
+        for (String emptyPattern : EMPTY_PATTERNS) {
+            if (refines(pattern, emptyPattern))
+                return true;
+        }
+        return false;
+    }
+
+    private void addEmptyPattern(String pattern) {
+        EMPTY_PATTERNS.add(pattern);
+        if (EMPTY_PATTERNS.size() > MAX_EMPTY_PATTERNS) {
+            Iterator<String> oldestPattern = EMPTY_PATTERNS.iterator();
+            oldestPattern.next();
+            oldestPattern.remove();
+        }
+    }
+
+    private static boolean hasWildcard(String pattern) {
+        return pattern.indexOf('%') >= 0 || pattern.indexOf('_') >= 0 || pattern.indexOf('[') >= 0;
+    }
+
+    private static boolean startsWithIgnoreCase(String string, String prefix) {
+        return string.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    private static boolean containsIgnoreCase(String string, String pattern) {
+        for (int start = 0; start + pattern.length() <= string.length(); start++) {
+            if (string.regionMatches(true, start, pattern, 0, pattern.length()))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,183 @@
+package Apps;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+import Prescriber.Prescriber;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class PopulationScreeningTest {
+    private Path directory;
+
+    //Finds one food interaction per drug, slowly enough that patients finish out of order
+    private final Prescriber prescriber = new Prescriber() {
+        public List<Drug> queryDrugs(String pattern) { return Collections.emptyList(); }
+        public List<Drug> queryDrugs(String pattern, int page) { return Collections.emptyList(); }
+        public List<Allergy> queryAllergies(String prefix) { return Collections.singletonList(Allergy.createFdbAllergy(140, "Xanthines")); }
+        public List<Drug> getDrugsByDin(int... dins) {
+            return Arrays.stream(dins).filter(din -> din < 1000)
+                    .mapToObj(din -> Drug.createFdbDrug(din, din, din, "DRUG " + din)).collect(Collectors.toList());
+        }
+        public List<DrugInteraction> findInteractions(Drug drug, Patient patient) {
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Collections.singletonList(DrugInteraction.createFdbFoodInteraction(drug, "Avoid " + patient.getName()));
+        }
+        public void prescribeDrug(Drug drug, Patient patient) { }
+        public boolean closePrescriber() { return true; }
+    };
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("screening");
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList()))
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testParseCsvLine() {
+        PopulationScreening.PatientLine patientLine = PopulationScreening.parsePatientLine("P1, 2242924;2244993 ,140", false);
+        Assert.assertEquals(patientLine.PATIENT_ID, "P1");
+        Assert.assertEquals(patientLine.DINS, new int[]{2242924, 2244993});
+        Assert.assertEquals(patientLine.ALLERGEN_IDS, new int[]{140});
+
+        patientLine = PopulationScreening.parsePatientLine("\"Smith, \"\"J\"\"\",2242924,", false);
+        Assert.assertEquals(patientLine.PATIENT_ID, "Smith, \"J\"");
+        Assert.assertEquals(patientLine.ALLERGEN_IDS.length, 0);
+    }
+
+    @Test
+    public void testParseJsonLine() {
+        PopulationScreening.PatientLine patientLine = PopulationScreening.parsePatientLine(
+                "{\"patient_id\": \"P \\\"1\\\"\", \"dins\": [2242924, 2244993], \"allergen_ids\": []}", true);
+        Assert.assertEquals(patientLine.PATIENT_ID, "P \"1\"");
+        Assert.assertEquals(patientLine.DINS, new int[]{2242924, 2244993});
+        Assert.assertEquals(patientLine.ALLERGEN_IDS.length, 0);
+    }
+
+    @Test
+    public void testMalformedLinesAreRejected() {
+        for (String line : new String[]{"P1,22429x4,140", "P1,2242924", ",2242924,140", "\"P1,2242924,140"}) {
+            try {
+                PopulationScreening.parsePatientLine(line, false);
+                Assert.fail("Accepted " + line);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        try {
+            PopulationScreening.parsePatientLine("{\"dins\": [2242924]}", true);
+            Assert.fail("Accepted a line without a patient id");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testOpenAtCheckpointCutsOffWhatCameAfter() throws IOException {
+        Path file = directory.resolve("output.csv");
+        Files.write(file, "complete\nincomplete".getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = PopulationScreening.openAtCheckpoint(file, 9)) {
+            Assert.assertEquals(channel.position(), 9);
+        }
+        Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "complete\n");
+
+        Path checkpointFile = directory.resolve("output.csv.checkpoint");
+        Assert.assertEquals(PopulationScreening.readCheckpoint(checkpointFile).PATIENTS_WRITTEN, 0);
+        // A checkpoint from before there was a rejects file
+        Files.write(checkpointFile, "1000 52311".getBytes(StandardCharsets.UTF_8));
+        PopulationScreening.Checkpoint checkpoint = PopulationScreening.readCheckpoint(checkpointFile);
+        Assert.assertEquals(checkpoint.OUTPUT_LENGTH, 52311);
+        Assert.assertEquals(checkpoint.REJECTS_LENGTH, 0);
+    }
+
+    @Test
+    public void testScreeningKeepsFileOrderAndRejectsBadLines() throws IOException, InterruptedException {
+        List<String> lines = new ArrayList<>();
+        lines.add("patient_id,drug_dins,allergen_ids");
+        for (int i = 0; i < 200; i++)
+            lines.add(i % 50 == 7 ? "P" + i + ",not a din," : "P" + i + "," + (i % 900) + ";" + (i % 900 + 1) + ",140");
+        Path patientsFile = directory.resolve("patients.csv");
+        Path outputFile = directory.resolve("output.csv");
+        Files.write(patientsFile, lines, StandardCharsets.UTF_8);
+
+        PopulationScreening.screenPopulation(prescriber, patientsFile, outputFile, 4);
+        List<String> output = Files.readAllLines(outputFile, StandardCharsets.UTF_8);
+        List<String> rejects = Files.readAllLines(Paths.get(outputFile + ".rejects"), StandardCharsets.UTF_8);
+
+        Assert.assertEquals(output.size(), 1 + 196 * 2);
+        for (int i = 1, patient = 0; i < output.size(); i += 2, patient++) {
+            if (patient % 50 == 7)
+                patient++;
+            Assert.assertTrue(output.get(i).startsWith("P" + patient + ","), output.get(i));
+        }
+        Assert.assertEquals(rejects.size(), 4);
+        Assert.assertTrue(rejects.get(0).startsWith("9\t"), rejects.get(0));
+        Assert.assertTrue(rejects.get(0).endsWith("\tP7,not a din,"), rejects.get(0));
+    }
+
+    @Test
+    public void testResumeWritesTheSameOutput() throws IOException, InterruptedException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 30; i++)
+            lines.add(i == 20 ? "{\"dins\": [1]}" : "{\"patient_id\": \"P" + i + "\", \"dins\": [" + i + "], \"allergen_ids\": []}");
+        Path patientsFile = directory.resolve("patients.jsonl");
+        Path outputFile = directory.resolve("output.csv");
+        Files.write(patientsFile, lines, StandardCharsets.UTF_8);
+        PopulationScreening.screenPopulation(prescriber, patientsFile, outputFile, 3);
+        String completeOutput = new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8);
+        byte[] completeRejects = Files.readAllBytes(Paths.get(outputFile + ".rejects"));
+
+        // A run that stopped after a checkpoint at 10 patients, having written half of another patient
+        List<String> outputLines = Files.readAllLines(outputFile, StandardCharsets.UTF_8);
+        String checkpointedOutput = String.join(System.lineSeparator(), outputLines.subList(0, 11)) + System.lineSeparator();
+        Files.write(outputFile, (checkpointedOutput + "P10,1").getBytes(StandardCharsets.UTF_8));
+        Files.write(Paths.get(outputFile + ".rejects"), completeRejects);
+        Files.write(Paths.get(outputFile + ".checkpoint"),
+                ("10 " + checkpointedOutput.getBytes(StandardCharsets.UTF_8).length + " 0").getBytes(StandardCharsets.UTF_8));
+
+        PopulationScreening.screenPopulation(prescriber, patientsFile, outputFile, 3);
+        Assert.assertEquals(new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8), completeOutput);
+        Assert.assertEquals(new String(Files.readAllBytes(Paths.get(outputFile + ".rejects")), StandardCharsets.UTF_8),
+                new String(completeRejects, StandardCharsets.UTF_8));
+        Assert.assertTrue(new String(Files.readAllBytes(Paths.get(outputFile + ".checkpoint")), StandardCharsets.UTF_8)
+                .startsWith("30 "));
+    }
+
+    @Test
+    public void testLatencyPercentilesAreWithinTwoPercent() {
+        PopulationScreening.LatencyHistogram histogram = new PopulationScreening.LatencyHistogram();
+        Assert.assertEquals(histogram.percentile(50), 0);
+        for (long latency = 1; latency <= 100_000; latency++)
+            histogram.add(latency * 1000);
+        Assert.assertEquals(histogram.percentile(50), 50_000_000, 1_000_000);
+        Assert.assertEquals(histogram.percentile(99), 99_000_000, 1_980_000);
+        Assert.assertTrue(histogram.percentile(100) >= 100_000_000);
+    }
+}
@@ -0,0 +1,56 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+public class AllergenBitmapIndexTest {
+    //Pairs of allergen group and ingredient list sorted like the loading query
+    private final AllergenBitmapIndex allergenBitmapIndex = new AllergenBitmapIndex(
+            new int[]{140, 140, 175, 861, 861},
+            new int[]{1847, 70000, 2433, 1820, 1847});
+
+    @Test
+    public void testContains() {
+        Assert.assertEquals(allergenBitmapIndex.size(), 3);
+        Assert.assertTrue(allergenBitmapIndex.contains(140, 70000));
+        Assert.assertFalse(allergenBitmapIndex.contains(140, 2433));
+        Assert.assertFalse(allergenBitmapIndex.contains(53, 1847));
+    }
+
+    @Test
+    public void testFindInteractionsReturnsOneInteractionPerAllergy() {
+        Patient patient = new Patient();
+        patient.addAllergy(Allergy.createFdbAllergy(861, "Coffee"));
+        patient.addAllergy(Allergy.createFdbAllergy(140, "Xanthines"));
+        patient.addAllergy(Allergy.createFdbAllergy(175, "Iodine and Iodide Containing Products"));
+        Drug warfarin = Drug.createFdbDrug(2242924, 1847, 6564, "COUMADIN 1MG");
+
+        List<DrugInteraction> interactions = allergenBitmapIndex.findInteractions(warfarin, patient);
+        Assert.assertEquals(interactions.size(), 2);
+        Assert.assertEquals(interactions.get(0).getInteractionDescription(),
+                "Patient is allergic to Xanthines which is an  ingredient in \"COUMADIN 1MG\"");
+    }
+
+    @Test
+    public void testDenseBitmapChunk() {
+        int[] values = new int[5000];
+        for (int i = 0; i < values.length; i++)
+            values[i] = 65536 + 2 * i;
+        IntBitmap bitmap = new IntBitmap(values);
+        Assert.assertEquals(bitmap.size(), 5000);
+        Assert.assertTrue(bitmap.contains(65536 + 9998));
+        Assert.assertFalse(bitmap.contains(65536 + 9997));
+        Assert.assertFalse(bitmap.contains(2));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBitmapValuesMustBeSorted() {
+        new IntBitmap(new int[]{5, 3});
+    }
+}
@@ -0,0 +1,66 @@
+package Prescriber;
+
+import Info.Allergy;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class AllergyIndexTest {
+    private AllergyIndex allergyIndex;
+
+    //Builds a small index sorted by allergen group, like the loading query
+    @BeforeClass
+    public void init() {
+        int[] ids = {53, 140, 175, 294, 518, 861};
+        String[] names = {"Haemophilus influenzae Vaccines", "Xanthines", "Iodine and Iodide Containing Products",
+                "Beta-Adrenergic Agents", "Gram Negative Bacilli (Non-Enteric) Vaccines", "Coffee"};
+        allergyIndex = new AllergyIndex(ids, names);
+    }
+
+    @Test
+    public void testQueryAllergiesIgnoresCase() {
+        List<Allergy> allergies = allergyIndex.queryAllergies("xan");
+        Assert.assertEquals(allergies.size(), 1);
+        Assert.assertEquals(allergies.get(0).getName(), "Xanthines");
+    }
+
+    @Test
+    public void testQueryAllergiesOnlyMatchesPrefix() {
+        Assert.assertEquals(allergyIndex.queryAllergies("Vaccines").size(), 0);
+    }
+
+    @Test
+    public void testQueryAllergiesReturnsMatchesInIdOrder() {
+        List<Allergy> allergies = allergyIndex.queryAllergies("");
+        Assert.assertEquals(allergies.size(), 6);
+        Assert.assertEquals(allergies.get(0).getId(), 53);
+        Assert.assertEquals(allergies.get(5).getId(), 861);
+    }
+
+    @Test
+    public void testQueryAllergiesMatchesWildcardsLikeTheQuery() {
+        // The query matches LIKE prefix + '%', so wildcards work but the match still starts the description
+        Assert.assertEquals(ids(allergyIndex.queryAllergies("_offee")), "861");
+        Assert.assertEquals(ids(allergyIndex.queryAllergies("%vaccines")), "53 518");
+        Assert.assertEquals(ids(allergyIndex.queryAllergies("[xc]")), "140 861");
+        Assert.assertEquals(ids(allergyIndex.queryAllergies("beta-%agents")), "294");
+        Assert.assertEquals(ids(allergyIndex.queryAllergies("i%[^a-z]")), "175");
+        Assert.assertEquals(ids(allergyIndex.queryAllergies("_anthines_")), "");
+        Assert.assertEquals(ids(allergyIndex.queryAllergies("anthines%")), "");
+    }
+
+    @Test
+    public void testQueryAllergiesWithManyMatches() {
+        AllergyIndex smallIndex = new AllergyIndex(new int[]{1, 2, 3}, new String[]{"Codeine", "Coffee", "Cocoa"});
+        List<Allergy> allergies = smallIndex.queryAllergies("co");
+        Assert.assertEquals(allergies.size(), 3);
+        Assert.assertEquals(allergies.get(0).getName(), "Codeine");
+    }
+
+    private static String ids(List<Allergy> allergies) {
+        return allergies.stream().map(allergy -> String.valueOf(allergy.getId())).collect(Collectors.joining(" "));
+    }
+}
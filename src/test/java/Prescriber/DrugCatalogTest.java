@@ -0,0 +1,104 @@
+package Prescriber;
+
+import Info.Drug;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+public class DrugCatalogTest {
+    private DrugCatalog drugCatalog;
+
+    //Builds a small catalog already sorted by name then DIN, like the loading query
+    @BeforeClass
+    public void init() {
+        String[] names = {"ALERT TABLET", "APO-QUIN-G 325 MG TABLET", "CANADIAN HOMEOPATHIC", "CANASA 1 G SUPPOSITORY",
+                "DUKORAL SUSPENSION", "PLACIDYL 200 MG CAPSULE", "PLACIDYL 200 MG CAPSULE"};
+        int[] dins = {10, 20, 30, 40, 50, 60, 61};
+        int[] hicls = {1, 2, 3, 4, 5, 6, 6};
+        int[] gcns = {100, 200, 300, 400, 500, 600, 600};
+        drugCatalog = new DrugCatalog(dins, hicls, gcns, names);
+    }
+
+    @Test
+    public void testQueryDrugsIgnoresCase() {
+        List<Drug> drugs = drugCatalog.queryDrugs("tablet");
+        Assert.assertEquals(drugs.size(), 2);
+        Assert.assertEquals(drugs.get(0).getDisplayName(), "ALERT TABLET");
+        Assert.assertEquals(drugs.get(1).getDisplayName(), "APO-QUIN-G 325 MG TABLET");
+    }
+
+    @Test
+    public void testQueryDrugsMatchesInsideName() {
+        List<Drug> drugs = drugCatalog.queryDrugs("CANA");
+        Assert.assertEquals(drugs.size(), 2);
+        Assert.assertEquals(drugs.get(0).getId(), 30);
+        Assert.assertEquals(drugs.get(1).getId(), 40);
+    }
+
+    @Test
+    public void testStreamDrugsMatchesQueryDrugs() {
+        Assert.assertEquals(drugCatalog.streamDrugs("MG").count(), drugCatalog.queryDrugs("MG").size());
+        Assert.assertEquals(drugCatalog.streamDrugs("G").count(), 4);
+        Assert.assertEquals(drugCatalog.streamDrugs("CANA").findFirst().get().getId(), 30);
+    }
+
+    @Test
+    public void testGetDrugsByDinKeepsOrderAndSkipsUnknown() {
+        List<Drug> drugs = drugCatalog.getDrugsByDin(new int[]{61, 10, 999, 40, 10});
+        Assert.assertEquals(drugs.size(), 4);
+        Assert.assertEquals(drugs.get(0).getDisplayName(), "PLACIDYL 200 MG CAPSULE");
+        Assert.assertEquals(drugs.get(1).getId(), 10);
+        Assert.assertEquals(drugs.get(2).getIngredientIdentifier(), 4);
+        Assert.assertEquals(drugs.get(3).getId(), 10);
+        Assert.assertEquals(drugCatalog.getDrugsByDin(new int[]{0, 62}).size(), 0);
+    }
+
+    @Test
+    public void testQueryDrugsMatchesLikeWildcards() {
+        DrugCatalog digoxinCatalog = new DrugCatalog(new int[]{2245426, 2245427, 2245428, 2335700},
+                new int[]{71, 71, 71, 71}, new int[]{700, 701, 702, 703},
+                new String[]{"PMS-DIGOXIN 0.0625MG TABLET", "PMS-DIGOXIN 0.125MG TABLET", "PMS-DIGOXIN 0.25MG TABLET",
+                        "PMSDIGOXIN 0.25MG TABLET"});
+        Assert.assertEquals(digoxinCatalog.queryDrugs("PMS_DIGOXIN").size(), 3);
+        Assert.assertEquals(digoxinCatalog.streamDrugs("pms_digoxin").count(), 3);
+        Assert.assertEquals(digoxinCatalog.queryDrugs("DIGOXIN%0.25").size(), 2);
+        Assert.assertEquals(digoxinCatalog.queryDrugs("0.[0-1]").size(), 2);
+        Assert.assertEquals(digoxinCatalog.queryDrugs("PMS[^-]").get(0).getId(), 2335700);
+        Assert.assertEquals(digoxinCatalog.queryDrugs("PMS[DIGOXIN").size(), 0);
+    }
+
+    @Test
+    public void testPageResumesAfterDrugNoLongerInCatalog() {
+        DrugPage page = drugCatalog.queryDrugPage("", new DrugPage.Position("CANA-DRUG 5 MG TABLET", 35), 2);
+        Assert.assertEquals(page.getDrugs().get(0).getDisplayName(), "CANASA 1 G SUPPOSITORY");
+        Assert.assertEquals(page.getDrugs().get(1).getDisplayName(), "DUKORAL SUSPENSION");
+    }
+
+    @Test
+    public void testQueryDrugsWithShortPattern() {
+        Assert.assertEquals(drugCatalog.queryDrugs("G").size(), 4);
+    }
+
+    @Test
+    public void testQueryDrugsWithNoMatch() {
+        Assert.assertEquals(drugCatalog.queryDrugs("XYZ").size(), 0);
+    }
+
+    @Test
+    public void testQueryDrugsKeepsDuplicateNamesInDinOrder() {
+        List<Drug> drugs = drugCatalog.queryDrugs("PLACIDYL 200 MG CAPSULE");
+        Assert.assertEquals(drugs.size(), 2);
+        Assert.assertEquals(drugs.get(0).getId(), 60);
+        Assert.assertEquals(drugs.get(1).getId(), 61);
+    }
+
+    @Test
+    public void testQueryDrugsPage() {
+        List<Drug> drugs = drugCatalog.queryDrugs("A", 2, 2);
+        Assert.assertEquals(drugs.size(), 2);
+        Assert.assertEquals(drugs.get(0).getDisplayName(), "CANADIAN HOMEOPATHIC");
+        Assert.assertEquals(drugs.get(1).getDisplayName(), "CANASA 1 G SUPPOSITORY");
+    }
+}
@@ -0,0 +1,113 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+public class DrugInteractionMatrixTest {
+    private final Drug warfarin = Drug.createFdbDrug(2242924, 1847, 6564, "COUMADIN 1MG");
+    private final Drug aspirin = Drug.createFdbDrug(2244993, 1820, 4376, "ASPIRIN 81MG");
+    private final Drug lipitor = Drug.createFdbDrug(2230711, 2433, 16466, "LIPITOR 10MG");
+
+    //Builds a small matrix with rows grouped by pair, like the loading query, keyed by the formulation the patient takes
+    private DrugInteractionMatrix buildMatrix(boolean offHeap) {
+        return new DrugInteractionMatrix.Builder()
+                .add(1847, 4376, "E12", "Increased risk of bleeding", 2)
+                .add(1847, 4376, "E12", "Increased risk of bleeding", 3)
+                .add(1847, 4376, "E7", "Anticoagulant effect may be increased", 1)
+                .add(1847, 16466, "E31", "Increased INR", 3)
+                .build(offHeap);
+    }
+
+    @Test
+    public void testFindInteractionsListsEachEffectOnceInDinOrder() {
+        Patient patient = new Patient();
+        patient.addDrug(aspirin);
+        patient.addDrug(lipitor);
+        List<DrugInteraction> interactions = buildMatrix(false).findInteractions(warfarin, patient);
+
+        Assert.assertEquals(interactions.size(), 3);
+        Assert.assertEquals(interactions.get(0).getInteractionDescription(), "COUMADIN 1MG Increased INR LIPITOR 10MG");
+        Assert.assertEquals(interactions.get(1).getInteractionDescription(),
+                "COUMADIN 1MG Increased risk of bleeding ASPIRIN 81MG");
+    }
+
+    @Test
+    public void testPairsAreDirected() {
+        Patient patient = new Patient();
+        patient.addDrug(warfarin);
+        Assert.assertEquals(buildMatrix(true).findInteractions(aspirin, patient).size(), 0);
+    }
+
+    @Test
+    public void testSeverityLevelIsTheMostSevere() {
+        DrugInteractionMatrix matrix = buildMatrix(true);
+        Assert.assertEquals(matrix.size(), 2);
+        Assert.assertEquals(matrix.getSeverityLevel(1847, 4376), 1);
+        Assert.assertEquals(matrix.getSeverityLevel(1820, 6564), 0);
+    }
+
+    @Test
+    public void testOnlyTheFormulationThePatientTakesIsChecked() {
+        // Another formulation of ASPIRIN's ingredient list, whose interaction codes do not interact with COUMADIN
+        Drug entericAspirin = Drug.createFdbDrug(2284413, 1820, 4377, "ASPIRIN EC 325MG");
+        Patient patient = new Patient();
+        patient.addDrug(entericAspirin);
+        Assert.assertEquals(buildMatrix(false).findInteractions(warfarin, patient).size(), 0);
+
+        patient.addDrug(aspirin);
+        Assert.assertEquals(buildMatrix(true).findInteractions(warfarin, patient).size(), 2);
+    }
+
+    @Test
+    public void testInteractionsCarryTheirSeverityAndDrugs() {
+        Patient patient = new Patient();
+        patient.addDrug(aspirin);
+        patient.addDrug(lipitor);
+        List<DrugInteraction> interactions = buildMatrix(false).findInteractions(warfarin, patient);
+
+        Assert.assertEquals(interactions.get(0).getSeverity(), DrugInteraction.Severity.MODERATE);
+        // The same effect at levels 2 and 3 is reported once, as the more severe one
+        Assert.assertEquals(interactions.get(1).getEffect(), "Increased risk of bleeding");
+        Assert.assertEquals(interactions.get(1).getEffectCode(), "E12");
+        Assert.assertEquals(interactions.get(1).getSeverity(), DrugInteraction.Severity.SEVERE);
+        Assert.assertEquals(interactions.get(2).getSeverity(), DrugInteraction.Severity.CONTRAINDICATED);
+        Assert.assertEquals(interactions.get(2).getEffectCode(), "E7");
+        Assert.assertSame(interactions.get(2).getDrugInteractingWith(), aspirin);
+        Assert.assertNull(interactions.get(2).getAllergy());
+        Assert.assertSame(interactions.get(2).getInteractionDescription(), interactions.get(2).getInteractionDescription());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testPairsMustBeAddedTogether() {
+        new DrugInteractionMatrix.Builder()
+                .add(1847, 4376, "E12", "Increased risk of bleeding", 2)
+                .add(1847, 16466, "E31", "Increased INR", 3)
+                .add(1847, 4376, "E7", "Anticoagulant effect may be increased", 1)
+                .build(false);
+    }
+
+    @Test
+    public void testInteractionsWithoutTheirPartsAreRejectedWhenCreated() {
+        Runnable[] creations = {
+                () -> DrugInteraction.createFdbDrugToDrugInteraction(warfarin, null, "E12", "Increased risk of bleeding",
+                        DrugInteraction.Severity.SEVERE),
+                () -> DrugInteraction.createFdbDrugToDrugInteraction(null, aspirin, "Increased risk of bleeding"),
+                () -> DrugInteraction.createFdbDrugToDrugInteraction(warfarin, aspirin, null),
+                () -> DrugInteraction.createFdbAllergyInteraction(null, warfarin),
+                () -> DrugInteraction.createFdbAllergyInteraction(Allergy.createFdbAllergy(140, null), warfarin),
+                () -> DrugInteraction.createFdbFoodInteraction(warfarin, null)};
+        for (Runnable creation : creations) {
+            try {
+                creation.run();
+                Assert.fail("An interaction without all of its parts was created");
+            } catch (NullPointerException expected) {
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package Prescriber;
+
+import Info.Drug;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DrugPageTest {
+    //Drugs sorted by name then DIN, like the catalog query
+    private final DrugCatalog drugCatalog = new DrugCatalog(
+            new int[]{2244993, 2246707, 2242924, 2242925, 2230711},
+            new int[]{1820, 1820, 1847, 1847, 2433},
+            new int[]{4376, 4376, 6564, 6565, 16466},
+            new String[]{"ASPIRIN 81MG", "ASPIRIN 81MG", "COUMADIN 1MG", "COUMADIN 2MG", "LIPITOR 10MG"});
+
+    @Test
+    public void testTokenRoundTrip() {
+        List<Drug> drugs = drugCatalog.queryDrugs("");
+        DrugPage page = DrugPage.createDrugPage(drugs, 2);
+        DrugPage.Position lastDrug = DrugPage.decodeToken(page.getContinuationToken());
+        Assert.assertEquals(lastDrug.NAME, "ASPIRIN 81MG");
+        Assert.assertEquals(lastDrug.DIN, 2246707);
+    }
+
+    @Test
+    public void testCatalogPagesCoverEveryMatchOnce() {
+        List<Drug> drugsPaged = new ArrayList<>();
+        DrugPage page = drugCatalog.queryDrugPage("MG", null, 2);
+        drugsPaged.addAll(page.getDrugs());
+        while (page.hasNextPage()) {
+            page = drugCatalog.queryDrugPage("MG", DrugPage.decodeToken(page.getContinuationToken()), 2);
+            drugsPaged.addAll(page.getDrugs());
+        }
+        List<Drug> drugs = drugCatalog.queryDrugs("MG");
+        Assert.assertEquals(drugsPaged.size(), drugs.size());
+        for (int i = 0; i < drugs.size(); i++)
+            Assert.assertEquals(drugsPaged.get(i).getId(), drugs.get(i).getId());
+    }
+
+    @Test
+    public void testLastPageHasNoToken() {
+        DrugPage page = drugCatalog.queryDrugPage("COUMADIN", null, 2);
+        Assert.assertEquals(page.getDrugs().size(), 2);
+        Assert.assertFalse(page.hasNextPage());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testEmptyPageSizeIsRejected() {
+        drugCatalog.queryDrugPage("MG", null, 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidToken() {
+        DrugPage.decodeToken("not a token");
+    }
+}
@@ -0,0 +1,192 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public class FdbSnapshotFileTest {
+    private final Drug warfarin = Drug.createFdbDrug(2242924, 1847, 6564, "COUMADIN 1MG");
+    private final Drug aspirin = Drug.createFdbDrug(2244993, 1820, 4376, "ASPIRIN 81MG");
+    private Path snapshotFile;
+    private FdbPrescriberSnapshotFile prescriber;
+
+    //Writes a small snapshot, with a dense bitmap chunk, and maps it like an edge site would
+    @BeforeClass
+    public void writeSnapshotFile() throws IOException {
+        int[] allergenGroups = new int[5002];
+        int[] ingredientLists = new int[5002];
+        allergenGroups[0] = 140;
+        ingredientLists[0] = 1847;
+        for (int i = 1; i < allergenGroups.length; i++) {
+            allergenGroups[i] = 861;
+            ingredientLists[i] = 65536 + i;
+        }
+        allergenGroups[5001] = 900;
+        ingredientLists[5001] = 1820;
+
+        snapshotFile = Files.createTempFile("fdb", ".snapshot");
+        FdbSnapshotFile.writeSnapshotFile(snapshotFile, "20200101/20200201",
+                new DrugCatalog(new int[]{2244993, 2242924, 2242925},
+                        new int[]{1820, 1847, 1847},
+                        new int[]{4376, 6564, 6565},
+                        new String[]{"ASPIRIN 81MG", "COUMADIN 1MG", "COUMADIN 2MG"}),
+                new AllergyIndex(new int[]{140, 861, 900}, new String[]{"Xanthines", "Coffee", "Salicylates"}),
+                new AllergenBitmapIndex(allergenGroups, ingredientLists),
+                new FoodInteractionTable(new int[]{6564, 6564}, new String[]{"Avoid alcohol", "Avoid large changes in vitamin K"}),
+                new DrugInteractionMatrix.Builder()
+                        .add(1847, 4376, "E12", "Increased risk of bleeding", 2)
+                        .add(1820, 6564, "E12", "Increased risk of bleeding", 2)
+                        .build(false));
+        prescriber = new FdbPrescriberSnapshotFile(snapshotFile, 2);
+    }
+
+    @AfterClass
+    public void deleteSnapshotFile() throws IOException {
+        Files.deleteIfExists(snapshotFile);
+    }
+
+    @Test
+    public void testQueriesFromSnapshotFile() {
+        Assert.assertEquals(prescriber.getVersion(), "20200101/20200201");
+        List<Drug> drugs = prescriber.queryDrugs("coumadin");
+        Assert.assertEquals(drugs.size(), 2);
+        Assert.assertEquals(drugs.get(0).getId(), 2242924);
+        Assert.assertEquals(prescriber.queryDrugs("MG", 1).size(), 1);
+        List<Allergy> allergies = prescriber.queryAllergies("co");
+        Assert.assertEquals(allergies.size(), 1);
+        Assert.assertEquals(allergies.get(0).getId(), 861);
+    }
+
+    @Test
+    public void testFindInteractionsFromSnapshotFile() {
+        Patient patient = new Patient();
+        patient.addDrug(aspirin);
+        patient.addAllergy(Allergy.createFdbAllergy(140, "Xanthines"));
+        patient.addAllergy(Allergy.createFdbAllergy(861, "Coffee"));
+        List<DrugInteraction> interactions = prescriber.findInteractions(warfarin, patient);
+
+        Assert.assertEquals(interactions.size(), 4);
+        Assert.assertEquals(interactions.get(0).getInteractionType(), DrugInteraction.InteractionType.DRUG_TO_FOOD);
+        Assert.assertEquals(interactions.get(2).getInteractionDescription(),
+                "Patient is allergic to Xanthines which is an  ingredient in \"COUMADIN 1MG\"");
+        Assert.assertEquals(interactions.get(3).getInteractionDescription(),
+                "COUMADIN 1MG Increased risk of bleeding ASPIRIN 81MG");
+        Assert.assertEquals(interactions.get(3).getEffectCode(), "E12");
+    }
+
+    @Test
+    public void testFindInteractionsBatchMatchesFindInteractions() {
+        Patient patientTakingAspirin = new Patient();
+        patientTakingAspirin.addDrug(aspirin);
+        Patient patientAllergicToXanthines = new Patient();
+        patientAllergicToXanthines.addAllergy(Allergy.createFdbAllergy(140, "Xanthines"));
+        List<PrescriptionRequest> requests = Arrays.asList(
+                PrescriptionRequest.createPrescriptionRequest(warfarin, patientTakingAspirin),
+                PrescriptionRequest.createPrescriptionRequest(aspirin, patientAllergicToXanthines),
+                PrescriptionRequest.createPrescriptionRequest(warfarin, patientAllergicToXanthines));
+
+        List<List<DrugInteraction>> interactionsOfRequests = prescriber.findInteractionsBatch(requests);
+        Assert.assertEquals(interactionsOfRequests.size(), 3);
+        for (int i = 0; i < requests.size(); i++) {
+            List<DrugInteraction> expected = prescriber.findInteractions(requests.get(i).getDrug(), requests.get(i).getPatient());
+            Assert.assertEquals(interactionsOfRequests.get(i).size(), expected.size());
+            for (int j = 0; j < expected.size(); j++)
+                Assert.assertEquals(interactionsOfRequests.get(i).get(j).getInteractionDescription(),
+                        expected.get(j).getInteractionDescription());
+        }
+        Assert.assertEquals(interactionsOfRequests.get(1).size(), 0);
+    }
+
+    @Test
+    public void testReviewRegimenReportsEachPairOnce() {
+        Patient patient = new Patient();
+        patient.addDrug(warfarin);
+        patient.addDrug(aspirin);
+        patient.addDrug(Drug.createFdbDrug(2242925, 1847, 6565, "COUMADIN 2MG"));
+        List<DrugInteraction> interactions = prescriber.reviewRegimen(patient);
+
+        // Both COUMADIN strengths interact with ASPIRIN, but not with each other
+        Assert.assertEquals(interactions.size(), 2);
+        Assert.assertEquals(interactions.get(0).getInteractionDescription(),
+                "COUMADIN 1MG Increased risk of bleeding ASPIRIN 81MG");
+        Assert.assertEquals(interactions.get(1).getDrugBeingPrescribed().getId(), 2242925);
+
+        List<DrugInteraction> expected = new Prescriber() {
+            // Only the default reviewRegimen of the interface is used
+            public List<Drug> queryDrugs(String pattern) { return null; }
+            public List<Drug> queryDrugs(String pattern, int page) { return null; }
+            public List<Allergy> queryAllergies(String prefix) { return null; }
+            public List<DrugInteraction> findInteractions(Drug drug, Patient patient) { return prescriber.findInteractions(drug, patient); }
+            public void prescribeDrug(Drug drug, Patient patient) { }
+            public boolean closePrescriber() { return true; }
+        }.reviewRegimen(patient);
+        Assert.assertEquals(interactions.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++)
+            Assert.assertEquals(interactions.get(i).getInteractionDescription(), expected.get(i).getInteractionDescription());
+    }
+
+    @Test
+    public void testRankAlternativesSafestFirst() {
+        Patient patient = new Patient();
+        patient.addDrug(aspirin);
+        Drug coumadin2mg = Drug.createFdbDrug(2242925, 1847, 6565, "COUMADIN 2MG");
+        List<RankedAlternative> alternatives = prescriber.rankAlternatives(Arrays.asList(warfarin, coumadin2mg, aspirin), patient);
+
+        Assert.assertEquals(alternatives.size(), 3);
+        Assert.assertEquals(alternatives.get(0).getDrug().getId(), aspirin.getId());
+        Assert.assertEquals(alternatives.get(0).getSeverity(), DrugInteraction.Severity.NONE);
+        // Both strengths interact with ASPIRIN just as severely, but COUMADIN 1MG also interacts with food
+        Assert.assertEquals(alternatives.get(1).getDrug().getId(), coumadin2mg.getId());
+        Assert.assertEquals(alternatives.get(1).getSeverity(), DrugInteraction.Severity.SEVERE);
+        Assert.assertEquals(alternatives.get(2).getDrug().getId(), warfarin.getId());
+        Assert.assertEquals(alternatives.get(2).getInteractionCount(), 3);
+
+        patient.addAllergy(Allergy.createFdbAllergy(900, "Salicylates"));
+        Assert.assertEquals(prescriber.rankAlternatives(Arrays.asList(aspirin, coumadin2mg), patient).get(1).getDrug().getId(),
+                aspirin.getId());
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testRejectsEffectIndexesOutOfRange() throws IOException {
+        Path corruptFile = Files.createTempFile("fdb", ".snapshot");
+        try {
+            FdbSnapshotFile.writeSnapshotFile(corruptFile, "20200101/20200201",
+                    new DrugCatalog(new int[0], new int[0], new int[0], new String[0]),
+                    new AllergyIndex(new int[0], new String[0]),
+                    new AllergenBitmapIndex(new int[0], new int[0]),
+                    new FoodInteractionTable(new int[0], new String[0]),
+                    new DrugInteractionMatrix.Builder().add(1847, 4376, "E12", "Bleeding", 2).build(false));
+            // The effect codes and texts end the file, so dropping them leaves the pair pointing at effect 0 of none
+            byte[] bytes = Files.readAllBytes(corruptFile);
+            int effectsLength = 2 * Integer.BYTES + "E12".length() + 2 * Integer.BYTES + "Bleeding".length();
+            byte[] corruptBytes = Arrays.copyOf(bytes, bytes.length - effectsLength + 2 * Integer.BYTES);
+            Arrays.fill(corruptBytes, bytes.length - effectsLength, corruptBytes.length, (byte) 0);
+            Files.write(corruptFile, corruptBytes);
+            FdbSnapshotFile.mapSnapshotFile(corruptFile);
+        } finally {
+            Files.deleteIfExists(corruptFile);
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        Path otherFile = Files.createTempFile("fdb", ".txt");
+        try {
+            Files.write(otherFile, "SELECT * FROM RICAIDC1".getBytes());
+            FdbSnapshotFile.mapSnapshotFile(otherFile);
+        } finally {
+            Files.deleteIfExists(otherFile);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package Prescriber;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class FdbSnapshotManagerTest {
+    //Creates a manager that is only refreshed by hand, with generations that never touch a database
+    private FdbSnapshotManager createManager(AtomicReference<String> databaseVersion, AtomicInteger swapCount) {
+        return new FdbSnapshotManager(databaseVersion::get, version -> new FdbSnapshot(version, null, false),
+                0, swapCount::incrementAndGet);
+    }
+
+    @Test
+    public void testRefreshWithoutNewReleaseKeepsGeneration() {
+        AtomicReference<String> databaseVersion = new AtomicReference<>("2020-01-01/2020-01-01");
+        AtomicInteger swapCount = new AtomicInteger();
+        FdbSnapshotManager manager = createManager(databaseVersion, swapCount);
+        FdbSnapshot snapshot;
+        try (FdbSnapshotManager.Lease lease = manager.acquire()) {
+            snapshot = lease.getSnapshot();
+        }
+        Assert.assertFalse(manager.refresh());
+        try (FdbSnapshotManager.Lease lease = manager.acquire()) {
+            Assert.assertSame(lease.getSnapshot(), snapshot);
+        }
+        Assert.assertEquals(swapCount.get(), 0);
+    }
+
+    @Test
+    public void testOldGenerationIsReleasedAfterItsLastLease() {
+        AtomicReference<String> databaseVersion = new AtomicReference<>("2020-01-01/2020-01-01");
+        AtomicInteger swapCount = new AtomicInteger();
+        FdbSnapshotManager manager = createManager(databaseVersion, swapCount);
+        FdbSnapshotManager.Lease inFlightLease = manager.acquire();
+        FdbSnapshot oldSnapshot = inFlightLease.getSnapshot();
+
+        databaseVersion.set("2020-02-01/2020-01-15");
+        Assert.assertTrue(manager.refresh());
+        try (FdbSnapshotManager.Lease lease = manager.acquire()) {
+            Assert.assertEquals(lease.getSnapshot().getVersion(), "2020-02-01/2020-01-15");
+        }
+
+        // The call that started on the old generation can still finish on it
+        Assert.assertFalse(oldSnapshot.isReleased());
+        inFlightLease.close();
+        inFlightLease.close();
+        Assert.assertTrue(oldSnapshot.isReleased());
+        Assert.assertEquals(swapCount.get(), 1);
+    }
+
+    @Test
+    public void testCloseReleasesCurrentGeneration() {
+        AtomicReference<String> databaseVersion = new AtomicReference<>("2020-01-01/2020-01-01");
+        AtomicInteger swapCount = new AtomicInteger();
+        FdbSnapshotManager manager = createManager(databaseVersion, swapCount);
+        FdbSnapshot snapshot;
+        try (FdbSnapshotManager.Lease lease = manager.acquire()) {
+            snapshot = lease.getSnapshot();
+        }
+        manager.close();
+        Assert.assertTrue(snapshot.isReleased());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testAcquireAfterCloseFails() {
+        FdbSnapshotManager manager = createManager(new AtomicReference<>("2020-01-01/2020-01-01"), new AtomicInteger());
+        manager.acquire().close();
+        manager.close();
+        manager.acquire();
+    }
+}
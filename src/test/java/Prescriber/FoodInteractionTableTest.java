@@ -0,0 +1,34 @@
+package Prescriber;
+
+import Info.Drug;
+import Info.DrugInteraction;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+public class FoodInteractionTableTest {
+    private final FoodInteractionTable foodInteractionTable = new FoodInteractionTable(new int[]{4376, 6564, 6564},
+            new String[]{"Avoid alcohol", "Avoid large changes in vitamin K", "Avoid alcohol"});
+
+    @Test
+    public void testGetFoodInteractionsOfGcnSeqno() {
+        Drug warfarin = Drug.createFdbDrug(2242924, 1847, 6564, "COUMADIN 1MG");
+        List<DrugInteraction> foodInteractions = foodInteractionTable.getFoodInteractions(warfarin);
+        Assert.assertEquals(foodInteractionTable.size(), 2);
+        Assert.assertEquals(foodInteractions.size(), 2);
+        Assert.assertEquals(foodInteractions.get(0).getInteractionDescription(), "Avoid large changes in vitamin K");
+        Assert.assertEquals(foodInteractions.get(0).getInteractionType(), DrugInteraction.InteractionType.DRUG_TO_FOOD);
+    }
+
+    @Test
+    public void testGcnSeqnoWithoutFoodInteractions() {
+        Drug lipitor = Drug.createFdbDrug(2230711, 2433, 16466, "LIPITOR 10MG");
+        Assert.assertEquals(foodInteractionTable.getFoodInteractions(lipitor).size(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testFoodInteractionsMustBeSorted() {
+        new FoodInteractionTable(new int[]{6564, 4376}, new String[]{"Avoid alcohol", "Avoid alcohol"});
+    }
+}
@@ -0,0 +1,85 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class InteractionBatchTest {
+    private Prescriber prescriber;
+    private List<Drug> drugs;
+    private List<Allergy> allergies;
+
+    //Queries a synthetic FDB, so the batch and the single checks both go through SQL
+    @BeforeClass
+    public void init() throws SQLException {
+        prescriber = SyntheticFdbGenerator.createTestPrescriber(Prescriber::createFdbPrescriber);
+        drugs = prescriber.queryDrugs("");
+        allergies = prescriber.queryAllergies("");
+    }
+
+    @AfterClass
+    public void end() {
+        prescriber.closePrescriber();
+    }
+
+    @Test
+    public void testQueriedBatchMatchesFindInteractions() {
+        Random random = new Random(18);
+        List<PrescriptionRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Patient patient = new Patient();
+            for (int j = random.nextInt(4); j > 0; j--)
+                patient.addDrug(drugs.get(random.nextInt(drugs.size())));
+            for (int j = random.nextInt(3); j > 0; j--)
+                patient.addAllergy(allergies.get(random.nextInt(allergies.size())));
+            requests.add(PrescriptionRequest.createPrescriptionRequest(drugs.get(random.nextInt(drugs.size())), patient));
+        }
+        assertBatchMatchesFindInteractions(requests);
+    }
+
+    @Test
+    public void testQueriedBatchReportsEachAllergyOnce() {
+        Patient patientAllergicToEverything = new Patient();
+        allergies.forEach(patientAllergicToEverything::addAllergy);
+        List<PrescriptionRequest> requests = InteractionBatch.createRequests(drugs.subList(0, 40), patientAllergicToEverything);
+
+        int allergyInteractions = assertBatchMatchesFindInteractions(requests);
+        Assert.assertTrue(allergyInteractions > 0);
+    }
+
+    /**
+     * @return the number of allergy interactions found
+     */
+    private int assertBatchMatchesFindInteractions(List<PrescriptionRequest> requests) {
+        List<List<DrugInteraction>> interactionsOfRequests = prescriber.findInteractionsBatch(requests);
+        Assert.assertEquals(interactionsOfRequests.size(), requests.size());
+        int allergyInteractions = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            List<DrugInteraction> expected = prescriber.findInteractions(requests.get(i).getDrug(), requests.get(i).getPatient());
+            // SQL Server does not order the effects of one DIN, so they are compared in any order
+            Assert.assertEquals(sortedDescriptions(interactionsOfRequests.get(i)), sortedDescriptions(expected));
+            for (DrugInteraction interaction : expected) {
+                if (interaction.getInteractionType() == DrugInteraction.InteractionType.DRUG_TO_ALLERGY) {
+                    Assert.assertTrue(requests.get(i).getPatient().getPatientAllergies().contains(interaction.getAllergy()));
+                    allergyInteractions++;
+                }
+            }
+        }
+        return allergyInteractions;
+    }
+
+    private static List<String> sortedDescriptions(List<DrugInteraction> interactions) {
+        return interactions.stream().map(DrugInteraction::getInteractionDescription).sorted().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,120 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InteractionCacheTest {
+    private final Drug warfarin = Drug.createFdbDrug(2242924, 1847, 6564, "COUMADIN 1MG");
+    private final Drug aspirin = Drug.createFdbDrug(2244993, 1820, 4376, "ASPIRIN 81MG");
+
+    private final Patient patient = new Patient();
+
+    public InteractionCacheTest() {
+        patient.addAllergy(Allergy.createFdbAllergy(175, "Iodine and Iodide Containing Products"));
+        patient.addAllergy(Allergy.createFdbAllergy(861, "Coffee"));
+    }
+
+    //Counts the queries the cache lets through
+    private InteractionCache.CachedInteractions loadAllergies(AtomicInteger queries) {
+        queries.incrementAndGet();
+        IntList allergenGroups = new IntList();
+        allergenGroups.add(175);
+        allergenGroups.add(861);
+        return new InteractionCache.CachedInteractions(allergenGroups,
+                Arrays.asList("Iodine and Iodide Containing Products", "Coffee"));
+    }
+
+    @Test
+    public void testAllergyInteractionsAreOnlyQueriedOnce() throws Exception {
+        InteractionCache cache = InteractionCache.createInteractionCache();
+        AtomicInteger queries = new AtomicInteger();
+        cache.getAllergyInteractions(warfarin, patient, () -> loadAllergies(queries));
+        List<DrugInteraction> allergyInteractions = cache.getAllergyInteractions(warfarin, patient,
+                () -> loadAllergies(queries));
+
+        Assert.assertEquals(queries.get(), 1);
+        Assert.assertEquals(cache.getHitCount(), 1);
+        Assert.assertEquals(cache.getMissCount(), 1);
+        Assert.assertEquals(allergyInteractions.size(), 2);
+        Assert.assertSame(allergyInteractions.get(0).getDrugBeingPrescribed(), warfarin);
+        Assert.assertEquals(allergyInteractions.get(1).getInteractionDescription(),
+                "Patient is allergic to Coffee which is an  ingredient in \"COUMADIN 1MG\"");
+    }
+
+    @Test
+    public void testDrugToDrugInteractionsAreKeyedByMedications() throws Exception {
+        InteractionCache cache = InteractionCache.createInteractionCache();
+        Patient patient = new Patient();
+        patient.addDrug(aspirin);
+        AtomicInteger queries = new AtomicInteger();
+        InteractionCache.InteractionLoader loader = () -> {
+            queries.incrementAndGet();
+            IntList dins = new IntList();
+            dins.add(aspirin.getId());
+            return new InteractionCache.CachedInteractions(dins, Arrays.asList("Increased risk of bleeding"));
+        };
+
+        List<DrugInteraction> drugToDrugInteractions = cache.getDrugToDrugInteractions(warfarin, patient, loader);
+        Assert.assertEquals(drugToDrugInteractions.size(), 1);
+        Assert.assertEquals(drugToDrugInteractions.get(0).getInteractionDescription(),
+                "COUMADIN 1MG Increased risk of bleeding ASPIRIN 81MG");
+
+        // A new medication makes a new key
+        patient.addDrug(Drug.createFdbDrug(2246707, 2433, 16466, "LIPITOR 10MG"));
+        cache.getDrugToDrugInteractions(warfarin, patient, loader);
+        Assert.assertEquals(queries.get(), 2);
+        Assert.assertEquals(cache.size(), 2);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+        InteractionCache cache = InteractionCache.createInteractionCache(1, 60_000,
+                InteractionCache.EvictionPolicy.LEAST_RECENTLY_USED);
+        AtomicInteger queries = new AtomicInteger();
+        cache.getAllergyInteractions(warfarin, patient, () -> loadAllergies(queries));
+        cache.getAllergyInteractions(aspirin, patient, () -> loadAllergies(queries));
+        cache.getAllergyInteractions(warfarin, patient, () -> loadAllergies(queries));
+
+        Assert.assertEquals(queries.get(), 3);
+        Assert.assertEquals(cache.getEvictionCount(), 2);
+        Assert.assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testExpiredEntryIsQueriedAgain() throws Exception {
+        InteractionCache cache = InteractionCache.createInteractionCache(10, 1,
+                InteractionCache.EvictionPolicy.FIRST_IN_FIRST_OUT);
+        AtomicInteger queries = new AtomicInteger();
+        cache.getAllergyInteractions(warfarin, patient, () -> loadAllergies(queries));
+        Thread.sleep(5);
+        cache.getAllergyInteractions(warfarin, patient, () -> loadAllergies(queries));
+
+        Assert.assertEquals(queries.get(), 2);
+        Assert.assertEquals(cache.getExpiryCount(), 1);
+        Assert.assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testResultLoadedAcrossAClearIsNotCached() throws Exception {
+        InteractionCache cache = InteractionCache.createInteractionCache();
+        AtomicInteger queries = new AtomicInteger();
+        // A new release is swapped in while the query for the old one is running
+        cache.getAllergyInteractions(warfarin, patient, () -> {
+            cache.clear();
+            return loadAllergies(queries);
+        });
+        Assert.assertEquals(cache.size(), 0);
+
+        cache.getAllergyInteractions(warfarin, patient, () -> loadAllergies(queries));
+        Assert.assertEquals(queries.get(), 2);
+        Assert.assertEquals(cache.size(), 1);
+    }
+}
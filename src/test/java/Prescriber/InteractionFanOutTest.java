@@ -0,0 +1,150 @@
+package Prescriber;
+
+import Apps.ConnectionPool;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.DrugInteraction.InteractionType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class InteractionFanOutTest {
+
+    private static final Drug DRUG = Drug.createFdbDrug(1, 2, 3, "TEST DRUG");
+
+    @Test
+    public void testAllChecksFinishingGivesCompleteResultInCheckOrder() {
+        Map<InteractionType, Supplier<List<DrugInteraction>>> checks = new LinkedHashMap<>();
+        checks.put(InteractionType.DRUG_TO_FOOD, () -> slowly(50, interaction("food")));
+        checks.put(InteractionType.DRUG_TO_ALLERGY, () -> interaction("allergy"));
+        InteractionResult result = InteractionFanOut.runChecks(checks, Long.MAX_VALUE);
+
+        Assert.assertTrue(result.isComplete());
+        Assert.assertEquals(result.getInteractions().size(), 2);
+        Assert.assertEquals(result.getInteractions().get(0).getInteractionDescription(), "food");
+        Assert.assertEquals(result.getInteractions().get(1).getInteractionDescription(), "allergy");
+    }
+
+    @Test
+    public void testCheckPastDeadlineIsReportedAsTimedOut() {
+        CountDownLatch neverReleased = new CountDownLatch(1);
+        Map<InteractionType, Supplier<List<DrugInteraction>>> checks = new LinkedHashMap<>();
+        checks.put(InteractionType.DRUG_TO_FOOD, () -> interaction("food"));
+        checks.put(InteractionType.DRUG_TO_DRUG, () -> {
+            try {
+                neverReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return interaction("drug");
+        });
+        InteractionResult result = InteractionFanOut.runChecks(checks, 100);
+
+        Assert.assertFalse(result.isComplete());
+        Assert.assertEquals(result.getTimedOutChecks(), EnumSet.of(InteractionType.DRUG_TO_DRUG));
+        Assert.assertEquals(result.getInteractions().size(), 1);
+        neverReleased.countDown();
+    }
+
+    @Test
+    public void testCheckPastDeadlineIsInterrupted() throws InterruptedException {
+        CountDownLatch neverReleased = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Map<InteractionType, Supplier<List<DrugInteraction>>> checks = new LinkedHashMap<>();
+        checks.put(InteractionType.DRUG_TO_DRUG, () -> {
+            try {
+                neverReleased.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return interaction("drug");
+        });
+        InteractionFanOut.runChecks(checks, 50);
+
+        Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testFailingCheckIsRethrown() {
+        Map<InteractionType, Supplier<List<DrugInteraction>>> checks = new LinkedHashMap<>();
+        checks.put(InteractionType.DRUG_TO_FOOD, () -> {
+            throw new IllegalStateException("SQL is bad for querying food interactions.");
+        });
+        InteractionFanOut.runChecks(checks, 1000);
+    }
+
+    @Test
+    public void testCheckPastDeadlineDoesNotCancelASharedLoad() throws SQLException {
+        AtomicInteger loads = new AtomicInteger();
+        try (ConnectionPool connectionPool = ConnectionPool.createConnectionPool(InteractionFanOutTest::fakeConnection, 2)) {
+            Preloaded<String> preloaded = new Preloaded<>(connectionPool, fdbConnection -> {
+                loads.incrementAndGet();
+                waitUninterruptibly(300);
+                fdbConnection.prepareStatement("SELECT 1").close();
+                return "loaded";
+            }, "test table");
+            Map<InteractionType, Supplier<List<DrugInteraction>>> checks = new LinkedHashMap<>();
+            checks.put(InteractionType.DRUG_TO_FOOD, () -> interaction(preloaded.get()));
+            InteractionResult result = InteractionFanOut.runChecks(checks, 50);
+            Assert.assertFalse(result.isComplete());
+
+            // The next caller waits for the load the timed out check started, rather than loading again
+            Assert.assertEquals(preloaded.get(), "loaded");
+            Assert.assertEquals(loads.get(), 1);
+        }
+    }
+
+    private static List<DrugInteraction> interaction(String description) {
+        return Collections.singletonList(DrugInteraction.createFdbFoodInteraction(DRUG, description));
+    }
+
+    private static List<DrugInteraction> slowly(long millis, List<DrugInteraction> interactions) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return interactions;
+    }
+
+    private static void waitUninterruptibly(long millis) {
+        boolean interrupted = false;
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        for (long left = millis; left > 0; left = TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime())) {
+            try {
+                Thread.sleep(left);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    //A connection that is always valid, whose statements do nothing
+    private static Connection fakeConnection() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement"))
+                        return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                                new Class<?>[]{PreparedStatement.class}, (statement, statementMethod, statementArgs) ->
+                                        statementMethod.getReturnType() == boolean.class ? false : null);
+                    if (method.getName().equals("isValid") || method.getName().equals("getAutoCommit"))
+                        return true;
+                    return method.getReturnType() == boolean.class ? false : null;
+                });
+    }
+}
@@ -0,0 +1,41 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class InterningTest {
+
+    @Test
+    public void testSameDrugIsSameInstance() {
+        Drug drug = Drug.createFdbDrug(2242924, 1847, 6564, "COUMADIN 1MG");
+        Assert.assertSame(Drug.createFdbDrug(2242924, 1847, 6564, new String("COUMADIN 1MG")), drug);
+        Assert.assertNotSame(Drug.createFdbDrug(2244993, 1820, 4376, "ASPIRIN 81MG"), drug);
+    }
+
+    @Test
+    public void testChangedDrugReplacesInstance() {
+        Drug drug = Drug.createFdbDrug(2242925, 1847, 6565, "COUMADIN 2MG");
+        Drug renamedDrug = Drug.createFdbDrug(2242925, 1847, 6565, "COUMADIN 2 MG TABLET");
+        Assert.assertNotSame(renamedDrug, drug);
+        Assert.assertEquals(drug.getDisplayName(), "COUMADIN 2MG");
+        Assert.assertSame(Drug.createFdbDrug(2242925, 1847, 6565, "COUMADIN 2 MG TABLET"), renamedDrug);
+    }
+
+    @Test
+    public void testDinListedUnderTwoNamesKeepsBothInstances() {
+        Drug brandName = Drug.createFdbDrug(2243001, 1847, 6564, "COUMADIN 1MG");
+        Drug genericName = Drug.createFdbDrug(2243001, 1847, 6564, "WARFARIN SODIUM 1MG");
+        Assert.assertNotSame(genericName, brandName);
+        Assert.assertSame(Drug.createFdbDrug(2243001, 1847, 6564, "COUMADIN 1MG"), brandName);
+        Assert.assertSame(Drug.createFdbDrug(2243001, 1847, 6564, "WARFARIN SODIUM 1MG"), genericName);
+    }
+
+    @Test
+    public void testSameAllergyIsSameInstance() {
+        Allergy allergy = Allergy.createFdbAllergy(140, "Xanthines");
+        Assert.assertSame(Allergy.createFdbAllergy(140, "Xanthines"), allergy);
+        Assert.assertSame(Allergy.createFdbAllergy(900654, null), Allergy.createFdbAllergy(900654, null));
+    }
+}
@@ -0,0 +1,59 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.Patient;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.SortedSet;
+
+public class PatientTest {
+    private final Drug warfarin = Drug.createFdbDrug(2242924, 1847, 6564, "COUMADIN 1MG");
+    private final Drug aspirin = Drug.createFdbDrug(2244993, 1820, 4376, "ASPIRIN 81MG");
+    private final Drug coumadin2mg = Drug.createFdbDrug(2242925, 1847, 6565, "COUMADIN 2MG");
+
+    @Test
+    public void testDrugsAreSortedByDinWithoutDuplicates() {
+        Patient patient = new Patient();
+        Assert.assertTrue(patient.addDrug(aspirin));
+        Assert.assertTrue(patient.addDrug(warfarin));
+        Assert.assertTrue(patient.addDrug(coumadin2mg));
+        Assert.assertFalse(patient.addDrug(Drug.createFdbDrug(2242924, 1847, 6564, "COUMADIN 1MG")));
+
+        SortedSet<Drug> drugs = patient.getDrugsPrescribed();
+        Assert.assertEquals(drugs.size(), 3);
+        Assert.assertEquals(drugs.first().getId(), 2242924);
+        Assert.assertEquals(drugs.last().getId(), 2244993);
+        Assert.assertTrue(drugs.contains(coumadin2mg));
+        Assert.assertEquals(drugs.headSet(aspirin).size(), 2);
+        Assert.assertEquals(drugs.tailSet(coumadin2mg).first().getId(), 2242925);
+    }
+
+    @Test
+    public void testRemovingLeavesEarlierSetsAsTheyWere() {
+        Patient patient = new Patient();
+        patient.addDrug(aspirin);
+        patient.addDrug(warfarin);
+        patient.addDrug(coumadin2mg);
+        SortedSet<Drug> drugsBefore = patient.getDrugsPrescribed();
+
+        patient.removeDrug(1);
+        Assert.assertTrue(patient.removeDrug(aspirin));
+        Assert.assertFalse(patient.removeDrug(aspirin));
+        Assert.assertEquals(patient.getDrugsPrescribed().size(), 1);
+        Assert.assertEquals(patient.getDrugsPrescribed().first().getId(), 2242924);
+        Assert.assertEquals(drugsBefore.size(), 3);
+
+        patient.addAllergy(Allergy.createFdbAllergy(900, "Salicylates"));
+        patient.addAllergy(Allergy.createFdbAllergy(140, "Xanthines"));
+        patient.removeAllergy(0);
+        Assert.assertEquals(patient.getPatientAllergies().first().getId(), 900);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testSetsCannotBeModified() {
+        Patient patient = new Patient();
+        patient.getDrugsPrescribed().add(aspirin);
+    }
+}
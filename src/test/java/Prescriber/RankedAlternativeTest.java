@@ -0,0 +1,96 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RankedAlternativeTest {
+    private final Drug warfarin = Drug.createFdbDrug(2242924, 1847, 6564, "COUMADIN 1MG");
+    private final Drug coumadin2mg = Drug.createFdbDrug(2242925, 1847, 6565, "COUMADIN 2MG");
+    private final Drug aspirin = Drug.createFdbDrug(2244993, 1820, 4376, "ASPIRIN 81MG");
+    private final Drug lipitor = Drug.createFdbDrug(2230711, 2433, 16466, "LIPITOR 10MG");
+    private final Drug patientDrug = Drug.createFdbDrug(2231234, 1500, 5000, "DIGOXIN 0.125MG");
+
+    private DrugInteraction drugToDrug(Drug drug, DrugInteraction.Severity severity) {
+        return DrugInteraction.createFdbDrugToDrugInteraction(drug, patientDrug, "Increased risk of bleeding", severity);
+    }
+
+    private List<Drug> rankedDrugs(List<Drug> candidates, List<List<DrugInteraction>> interactionsOfCandidates) {
+        List<RankedAlternative> alternatives = RankedAlternative.rankAlternatives(candidates, interactionsOfCandidates);
+        Assert.assertEquals(alternatives.size(), candidates.size());
+        return Arrays.asList(alternatives.stream().map(RankedAlternative::getDrug).toArray(Drug[]::new));
+    }
+
+    @Test
+    public void testAllergensComeLastWhateverTheirSeverity() {
+        List<Drug> ranked = rankedDrugs(Arrays.asList(aspirin, warfarin),
+                Arrays.asList(
+                        Collections.singletonList(DrugInteraction.createFdbAllergyInteraction(Allergy.createFdbAllergy(900, "Salicylates"), aspirin)),
+                        Collections.singletonList(drugToDrug(warfarin, DrugInteraction.Severity.CONTRAINDICATED))));
+
+        Assert.assertEquals(ranked, Arrays.asList(warfarin, aspirin));
+    }
+
+    @Test
+    public void testUnknownSeverityRanksBetweenModerateAndSevere() {
+        List<Drug> ranked = rankedDrugs(Arrays.asList(aspirin, warfarin, lipitor),
+                Arrays.asList(
+                        Collections.singletonList(drugToDrug(aspirin, DrugInteraction.Severity.SEVERE)),
+                        Collections.singletonList(drugToDrug(warfarin, DrugInteraction.Severity.UNKNOWN)),
+                        Collections.singletonList(drugToDrug(lipitor, DrugInteraction.Severity.MODERATE))));
+
+        Assert.assertEquals(ranked, Arrays.asList(lipitor, warfarin, aspirin));
+    }
+
+    @Test
+    public void testUnknownSeverityOutweighsModerate() {
+        RankedAlternative alternative = RankedAlternative.rankAlternatives(Collections.singletonList(warfarin),
+                Collections.singletonList(Arrays.asList(drugToDrug(warfarin, DrugInteraction.Severity.UNKNOWN),
+                        drugToDrug(warfarin, DrugInteraction.Severity.MODERATE)))).get(0);
+
+        Assert.assertEquals(alternative.getSeverity(), DrugInteraction.Severity.UNKNOWN);
+    }
+
+    @Test
+    public void testFoodInteractionsOnlyBreakTiesByCount() {
+        List<RankedAlternative> alternatives = RankedAlternative.rankAlternatives(Arrays.asList(warfarin, coumadin2mg),
+                Arrays.asList(
+                        Arrays.asList(DrugInteraction.createFdbFoodInteraction(warfarin, "Avoid alcohol"),
+                                drugToDrug(warfarin, DrugInteraction.Severity.SEVERE)),
+                        Collections.singletonList(drugToDrug(coumadin2mg, DrugInteraction.Severity.SEVERE))));
+
+        // A food interaction does not make COUMADIN 1MG more severe, but it has one more interaction
+        Assert.assertEquals(alternatives.get(1).getSeverity(), DrugInteraction.Severity.SEVERE);
+        Assert.assertEquals(alternatives.get(0).getDrug(), coumadin2mg);
+        Assert.assertEquals(alternatives.get(1).getInteractionCount(), 2);
+    }
+
+    @Test
+    public void testEquallySafeCandidatesKeepTheirOrder() {
+        List<DrugInteraction> none = Collections.emptyList();
+        List<Drug> candidates = Arrays.asList(lipitor, warfarin, aspirin, coumadin2mg);
+        Assert.assertEquals(rankedDrugs(candidates, Arrays.asList(none, none, none, none)), candidates);
+
+        List<Drug> ranked = rankedDrugs(candidates, Arrays.asList(
+                Collections.singletonList(drugToDrug(lipitor, DrugInteraction.Severity.MODERATE)),
+                none,
+                Collections.singletonList(drugToDrug(aspirin, DrugInteraction.Severity.MODERATE)),
+                none));
+        Assert.assertEquals(ranked, Arrays.asList(warfarin, coumadin2mg, lipitor, aspirin));
+    }
+
+    @Test
+    public void testSeverityIsNoneWithoutDrugToDrugInteractions() {
+        RankedAlternative alternative = RankedAlternative.rankAlternatives(Collections.singletonList(warfarin),
+                Collections.singletonList(Collections.singletonList(DrugInteraction.createFdbFoodInteraction(warfarin, "Avoid alcohol")))).get(0);
+
+        Assert.assertEquals(alternative.getSeverity(), DrugInteraction.Severity.NONE);
+        Assert.assertFalse(alternative.isAllergen());
+    }
+}
@@ -0,0 +1,87 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class ReviewRegimenTest {
+    private Prescriber optimizedPrescriber;
+    private Prescriber unoptimizedPrescriber;
+    private List<Drug> drugs;
+
+    //Queries a synthetic FDB, so the regimens are reviewed with the one query that loads every pair
+    @BeforeClass
+    public void init() throws SQLException {
+        optimizedPrescriber = SyntheticFdbGenerator.createTestPrescriber(Prescriber::createFdbPrescriber);
+        unoptimizedPrescriber = SyntheticFdbGenerator.createTestPrescriber(Prescriber::createFdbPrescriberUnoptimized);
+        drugs = optimizedPrescriber.queryDrugs("");
+    }
+
+    @AfterClass
+    public void end() {
+        optimizedPrescriber.closePrescriber();
+        unoptimizedPrescriber.closePrescriber();
+    }
+
+    @Test
+    public void testQueriedReviewMatchesCheckingEachDrug() {
+        Random random = new Random(19);
+        int drugToDrugInteractions = 0;
+        for (int i = 0; i < 20; i++) {
+            Patient patient = new Patient();
+            for (int j = 2 + random.nextInt(6); j > 0; j--)
+                patient.addDrug(drugs.get(random.nextInt(drugs.size())));
+            List<String> expected = descriptions(reviewEachDrug(optimizedPrescriber, patient));
+            Assert.assertEquals(descriptions(optimizedPrescriber.reviewRegimen(patient)), expected);
+            Assert.assertEquals(descriptions(unoptimizedPrescriber.reviewRegimen(patient)), expected);
+            drugToDrugInteractions += expected.size();
+        }
+        Assert.assertTrue(drugToDrugInteractions > 0);
+    }
+
+    @Test
+    public void testOneDrugHasNothingToReview() {
+        Patient patient = new Patient();
+        patient.addDrug(drugs.get(0));
+        Assert.assertEquals(optimizedPrescriber.reviewRegimen(patient).size(), 0);
+        Assert.assertEquals(unoptimizedPrescriber.reviewRegimen(patient).size(), 0);
+    }
+
+    /**
+     * Reviews a regimen with the default implementation of {@link Prescriber#reviewRegimen(Patient)}
+     */
+    private static List<DrugInteraction> reviewEachDrug(Prescriber prescriber, Patient patient) {
+        return new Prescriber() {
+            public List<Drug> queryDrugs(String pattern) { return null; }
+            public List<Drug> queryDrugs(String pattern, int page) { return null; }
+            public List<Allergy> queryAllergies(String prefix) { return null; }
+            public List<DrugInteraction> findInteractions(Drug drug, Patient patient) { return prescriber.findInteractions(drug, patient); }
+            public void prescribeDrug(Drug drug, Patient patient) { }
+            public boolean closePrescriber() { return true; }
+        }.reviewRegimen(patient);
+    }
+
+    /**
+     * SQL Server does not order the effects of one pair of drugs, so they are sorted by description within each pair.
+     * The pairs are already in DIN order, since the drugs of a patient are
+     */
+    private static List<String> descriptions(List<DrugInteraction> interactions) {
+        return interactions.stream()
+                .sorted(Comparator.comparingInt((DrugInteraction interaction) -> interaction.getDrugBeingPrescribed().getId())
+                        .thenComparingInt(interaction -> interaction.getDrugInteractingWith().getId())
+                        .thenComparing(DrugInteraction::getInteractionDescription))
+                .map(DrugInteraction::getInteractionDescription)
+                .collect(Collectors.toList());
+    }
+}
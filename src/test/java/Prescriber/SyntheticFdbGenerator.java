@@ -0,0 +1,411 @@
+package Prescriber;
+
+import Apps.ConnectionConfiguration;
+import Info.Allergy;
+import Info.Drug;
+import Info.Patient;
+import org.apache.commons.lang3.Validate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Generates a synthetic FDB database with the tables and columns that the FDB prescribers query, so they can be
+ * benchmarked against catalogs of any size without a licensed FDB SQL Server instance
+ * <p>
+ * Drugs (RICAIDC1) share clinical formulations (RGCNSEQ4), which share ingredient lists (RHICL1) of one to three
+ * ingredients (RHICD5). Each ingredient list has a drug to drug interaction code (RADIMGC4, RADIMMA5) that its
+ * formulations share, except that every other formulation after the first has the code of the next list, so the
+ * formulations of one list do not all interact alike. A fraction of all pairs of codes, the DDI pair density, share an
+ * interaction monograph with one or two effects (RADIMIE4, RADIMEF0). Allergen groups (RDAMAGD1, RDAMGHC0) each hold a
+ * few ingredients, and every tenth formulation has a food interaction (RDFIMGC0, RDFIMMA0)
+ * <p>
+ * The data is random but seeded, so the same configuration always generates the same database. The default target is
+ * an in-memory H2 database in SQL Server mode, which ignores case in LIKE the way the FDB collation does, and needs
+ * the H2 driver on the test classpath
+ * <p>
+ * Running {@link #main(String[])} generates catalogs of increasing size and times each prescriber against them
+ */
+public final class SyntheticFdbGenerator {
+
+    /**
+     * An in-memory H2 database that lives until the JVM exits
+     */
+    static final String DEFAULT_JDBC_URL = "jdbc:h2:mem:fdb;MODE=MSSQLServer;IGNORECASE=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int LABELER_COUNT = 50;
+    private static final int EFFECT_COUNT = 200;
+    private static final String[] SYLLABLES = {"ab", "ac", "al", "am", "an", "ar", "ba", "bi", "ca", "ce", "co", "da",
+            "di", "do", "el", "en", "ex", "fa", "fi", "ga", "hy", "in", "ka", "la", "li", "lo", "ma", "mi", "mo", "na",
+            "ne", "ni", "no", "ol", "on", "or", "pa", "pe", "pi", "pra", "ra", "re", "ri", "ro", "sa", "si", "ta", "te",
+            "ti", "to", "tra", "va", "vi", "xa", "zo"};
+    private static final String[] STRENGTHS = {"1MG", "2.5MG", "5MG", "10MG", "20MG", "40MG", "50MG", "81MG", "100MG",
+            "250MG", "500MG"};
+
+    private final int DRUG_COUNT;
+    private final double DDI_PAIR_DENSITY;
+    private final int ALLERGEN_GROUP_COUNT;
+    private final int FOOD_CODE_COUNT;
+    private final long SEED;
+
+    private SyntheticFdbGenerator(int drugCount, double ddiPairDensity, int allergenGroupCount, int foodCodeCount,
+                                  long seed) {
+        DRUG_COUNT = drugCount;
+        DDI_PAIR_DENSITY = ddiPairDensity;
+        ALLERGEN_GROUP_COUNT = allergenGroupCount;
+        FOOD_CODE_COUNT = foodCodeCount;
+        SEED = seed;
+    }
+
+    /**
+     * Creates a generator
+     *
+     * @param drugCount          the number of drugs, of which there are half as many formulations and a quarter as
+     *                           many ingredient lists
+     * @param ddiPairDensity     the fraction of all pairs of ingredient lists that interact, from 0 to 1
+     * @param allergenGroupCount the number of allergen groups
+     * @param foodCodeCount      the number of distinct food interactions
+     * @param seed               the seed of the random data
+     */
+    static SyntheticFdbGenerator createSyntheticFdbGenerator(int drugCount, double ddiPairDensity, int allergenGroupCount,
+                                                             int foodCodeCount, long seed) {
+        Validate.isTrue(drugCount >= 4, "A synthetic FDB needs at least 4 drugs");
+        Validate.isTrue(ddiPairDensity >= 0 && ddiPairDensity <= 1, "The DDI pair density must be between 0 and 1");
+        Validate.isTrue(allergenGroupCount > 0, "A synthetic FDB needs at least one allergen group");
+        Validate.isTrue(foodCodeCount > 0, "A synthetic FDB needs at least one food code");
+        return new SyntheticFdbGenerator(drugCount, ddiPairDensity, allergenGroupCount, foodCodeCount, seed);
+    }
+
+    /**
+     * Generates catalogs of increasing size into the default database and times each prescriber against them
+     * <p>
+     * Usage: SyntheticFdbGenerator [drug count ...]
+     */
+    public static void main(String[] args) throws SQLException {
+        int[] drugCounts = args.length > 0 ? new int[args.length] : new int[]{1_000, 10_000, 100_000};
+        for (int i = 0; i < args.length; i++)
+            drugCounts[i] = Integer.parseInt(args[i]);
+
+        System.setProperty(ConnectionConfiguration.JDBC_URL_PROPERTY, DEFAULT_JDBC_URL);
+        for (int drugCount : drugCounts) {
+            try (Connection connection = DriverManager.getConnection(DEFAULT_JDBC_URL)) {
+                createSyntheticFdbGenerator(drugCount, 0.01, 500, 100, 404).generate(connection);
+            }
+            System.out.println("Catalog of " + drugCount + " drugs");
+            timePrescriber("Unoptimized", Prescriber.createFdbPrescriberUnoptimized());
+            timePrescriber("Parallel", Prescriber.createFdbPrescriberParallel());
+            timePrescriber("Relational", Prescriber.createFdbPrescriberRelational());
+            timePrescriber("Page", Prescriber.createFdbPrescriberPage());
+            timePrescriber("Page Relational", Prescriber.createFdbPrescriberPageRelation());
+            timePrescriber("Parallel Relational", Prescriber.createFdbPrescriberParallelRelation());
+            timePrescriber("Optimized", Prescriber.createFdbPrescriber());
+            timePrescriber("Optimized with catalog", Prescriber.createFdbPrescriberWithCatalog());
+            System.out.println();
+        }
+    }
+
+    /**
+     * Fills the default database with a small synthetic FDB in which many drugs interact, and creates a prescriber
+     * against it, for testing the query paths of the prescribers without a licensed FDB
+     * <p>
+     * The {@value ConnectionConfiguration#JDBC_URL_PROPERTY} property is only set while the prescriber opens its
+     * connection pool, so tests that run later still use the configured FDB database
+     *
+     * @param creator creates the prescriber, for example {@link Prescriber#createFdbPrescriber()}
+     * @return the prescriber, which the test should close
+     * @throws SQLException if the database could not be filled
+     */
+    static <T extends Prescriber> T createTestPrescriber(Supplier<T> creator) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(DEFAULT_JDBC_URL)) {
+            createSyntheticFdbGenerator(400, 0.2, 30, 10, 404).generate(connection);
+        }
+        String configuredJdbcUrl = System.getProperty(ConnectionConfiguration.JDBC_URL_PROPERTY);
+        System.setProperty(ConnectionConfiguration.JDBC_URL_PROPERTY, DEFAULT_JDBC_URL);
+        try {
+            return creator.get();
+        } finally {
+            if (configuredJdbcUrl == null)
+                System.clearProperty(ConnectionConfiguration.JDBC_URL_PROPERTY);
+            else
+                System.setProperty(ConnectionConfiguration.JDBC_URL_PROPERTY, configuredJdbcUrl);
+        }
+    }
+
+    /**
+     * Times querying drugs and allergies, and checking a drug against a patient taking five drugs with two allergies
+     */
+    private static void timePrescriber(String name, Prescriber prescriber) {
+        try {
+            List<Drug> drugs = time(name + " queryDrugs", () -> prescriber.queryDrugs("an"));
+            List<Allergy> allergies = time(name + " queryAllergies", () -> prescriber.queryAllergies("a"));
+            time(name + " queryDrugs page", () -> prescriber.queryDrugs("an", 2));
+
+            Patient patient = new Patient();
+            for (int i = 1; i <= 5 && i < drugs.size(); i++)
+                patient.addDrug(drugs.get(i * drugs.size() / 6));
+            for (int i = 0; i < 2 && i < allergies.size(); i++)
+                patient.addAllergy(allergies.get(i));
+            if (!drugs.isEmpty()) {
+                prescriber.findInteractions(drugs.get(0), patient);
+                time(name + " findInteractions", () -> prescriber.findInteractions(drugs.get(0), patient));
+            }
+        } finally {
+            prescriber.closePrescriber();
+        }
+    }
+
+    private static <T> T time(String name, Supplier<T> call) {
+        long start = System.nanoTime();
+        T result = call.get();
+        System.out.printf("%-45s %8.2f ms\n", name, (System.nanoTime() - start) / 1e6);
+        return result;
+    }
+
+    /**
+     * Replaces the FDB tables of a database with synthetic data
+     *
+     * @param connection connection to the database to fill
+     * @throws SQLException if the tables could not be created or filled
+     */
+    void generate(Connection connection) throws SQLException {
+        Random random = new Random(SEED);
+        int gcnCount = Math.max(2, DRUG_COUNT / 2);
+        int hiclCount = Math.max(2, DRUG_COUNT / 4);
+        int hicCount = hiclCount;
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            createTables(connection);
+
+            try (PreparedStatement labelers = connection.prepareStatement("INSERT INTO RLBLRCA1 VALUES (?, ?)")) {
+                for (int labeler = 1; labeler <= LABELER_COUNT; labeler++) {
+                    labelers.setInt(1, labeler);
+                    labelers.setString(2, name(random, 2).toUpperCase() + " PHARMA");
+                    labelers.addBatch();
+                }
+                labelers.executeBatch();
+            }
+
+            // Every drug has a formulation, and every formulation an ingredient list, by id modulo the counts
+            try (PreparedStatement drugs = connection.prepareStatement("INSERT INTO RICAIDC1 VALUES (?, ?, ?, ?, ?, ?)")) {
+                String[] brandNames = new String[gcnCount];
+                for (int gcn = 1; gcn <= gcnCount; gcn++)
+                    brandNames[gcn - 1] = name(random, 2 + random.nextInt(2)).toUpperCase();
+                for (int drug = 1; drug <= DRUG_COUNT; drug++) {
+                    int gcn = 1 + (drug - 1) % gcnCount;
+                    drugs.setInt(1, 2_000_000 + drug);
+                    drugs.setString(2, brandNames[gcn - 1] + " " + STRENGTHS[random.nextInt(STRENGTHS.length)]);
+                    drugs.setInt(3, gcn);
+                    drugs.setInt(4, 1 + random.nextInt(LABELER_COUNT));
+                    drugs.setString(5, String.format("%04d%02d%02d", 1990 + random.nextInt(30), 1 + random.nextInt(12), 1 + random.nextInt(28)));
+                    drugs.setString(6, random.nextInt(10) == 0 ? String.format("%04d%02d%02d", 2020, 1 + random.nextInt(12), 1 + random.nextInt(28)) : null);
+                    addToBatch(drugs, drug);
+                }
+                drugs.executeBatch();
+            }
+
+            try (PreparedStatement formulations = connection.prepareStatement("INSERT INTO RGCNSEQ4 VALUES (?, ?)");
+                 PreparedStatement interactionCodes = connection.prepareStatement("INSERT INTO RADIMGC4 VALUES (?, ?)");
+                 PreparedStatement foodCodes = connection.prepareStatement("INSERT INTO RDFIMGC0 VALUES (?, ?)")) {
+                for (int gcn = 1; gcn <= gcnCount; gcn++) {
+                    int hicl = 1 + (gcn - 1) % hiclCount;
+                    formulations.setInt(1, gcn);
+                    formulations.setInt(2, hicl);
+                    addToBatch(formulations, gcn);
+                    // The interaction code of a formulation is the one of its ingredient list, except that every other
+                    // later formulation of a list has the code of the next list
+                    interactionCodes.setInt(1, gcn);
+                    interactionCodes.setInt(2, gcn > hiclCount && gcn % 2 == 0 ? 1 + hicl % hiclCount : hicl);
+                    addToBatch(interactionCodes, gcn);
+                    if (gcn % 10 == 0) {
+                        foodCodes.setInt(1, gcn);
+                        foodCodes.setInt(2, 1 + random.nextInt(FOOD_CODE_COUNT));
+                        addToBatch(foodCodes, gcn);
+                    }
+                }
+                formulations.executeBatch();
+                interactionCodes.executeBatch();
+                foodCodes.executeBatch();
+            }
+
+            try (PreparedStatement ingredients = connection.prepareStatement("INSERT INTO RHICD5 VALUES (?, ?)");
+                 PreparedStatement ingredientLists = connection.prepareStatement("INSERT INTO RHICL1 VALUES (?, ?, ?)")) {
+                for (int hic = 1; hic <= hicCount; hic++) {
+                    ingredients.setInt(1, hic);
+                    ingredients.setString(2, name(random, 3) + " " + (random.nextBoolean() ? "sodium" : "hydrochloride"));
+                    addToBatch(ingredients, hic);
+                }
+                int rows = 0;
+                for (int hicl = 1; hicl <= hiclCount; hicl++) {
+                    Set<Integer> hicsOfList = new HashSet<>();
+                    hicsOfList.add(hicl);
+                    for (int extra = random.nextInt(3); extra > 0; extra--)
+                        hicsOfList.add(1 + random.nextInt(hicCount));
+                    for (int hic : hicsOfList) {
+                        ingredientLists.setInt(1, hicl);
+                        ingredientLists.setInt(2, hic);
+                        ingredientLists.setString(3, String.format("%03X", hic % 4096));
+                        addToBatch(ingredientLists, ++rows);
+                    }
+                }
+                ingredients.executeBatch();
+                ingredientLists.executeBatch();
+            }
+
+            generateDrugToDrugInteractions(connection, random, hiclCount);
+
+            try (PreparedStatement foods = connection.prepareStatement("INSERT INTO RDFIMMA0 VALUES (?, ?)")) {
+                for (int food = 1; food <= FOOD_CODE_COUNT; food++) {
+                    foods.setInt(1, food);
+                    foods.setString(2, "Avoid " + name(random, 2) + " while taking this drug");
+                    addToBatch(foods, food);
+                }
+                foods.executeBatch();
+            }
+
+            try (PreparedStatement groups = connection.prepareStatement("INSERT INTO RDAMAGD1 VALUES (?, ?)");
+                 PreparedStatement groupIngredients = connection.prepareStatement("INSERT INTO RDAMGHC0 VALUES (?, ?)")) {
+                int rows = 0;
+                for (int group = 1; group <= ALLERGEN_GROUP_COUNT; group++) {
+                    groups.setInt(1, group);
+                    groups.setString(2, Character.toUpperCase(SYLLABLES[group % SYLLABLES.length].charAt(0))
+                            + name(random, 3).substring(1) + " Allergy");
+                    addToBatch(groups, group);
+                    Set<Integer> hicsOfGroup = new HashSet<>();
+                    for (int hic = 1 + random.nextInt(5); hic > 0; hic--)
+                        hicsOfGroup.add(1 + random.nextInt(hicCount));
+                    for (int hic : hicsOfGroup) {
+                        groupIngredients.setInt(1, group);
+                        groupIngredients.setInt(2, hic);
+                        addToBatch(groupIngredients, ++rows);
+                    }
+                }
+                groups.executeBatch();
+                groupIngredients.executeBatch();
+            }
+
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Puts every interacting pair of ingredient lists in a monograph of its own, since two interaction codes interact
+     * when they share a monograph
+     */
+    private void generateDrugToDrugInteractions(Connection connection, Random random, int hiclCount) throws SQLException {
+        try (PreparedStatement effects = connection.prepareStatement("INSERT INTO RADIMEF0 VALUES (?, ?)");
+             PreparedStatement severityLevels = connection.prepareStatement("INSERT INTO RADIMSL1 VALUES (?, ?)");
+             PreparedStatement codeEffects = connection.prepareStatement("INSERT INTO RADIMIE4 VALUES (?, ?)");
+             PreparedStatement monographs = connection.prepareStatement("INSERT INTO RADIMMA5 VALUES (?, ?, ?, ?)")) {
+            for (int effect = 1; effect <= EFFECT_COUNT; effect++) {
+                effects.setString(1, String.format("E%03d", effect));
+                effects.setString(2, (random.nextBoolean() ? "Increased " : "Decreased ") + name(random, 3) + " effect");
+                addToBatch(effects, effect);
+            }
+            String[] severityDescriptions = {"Contraindicated", "Severe", "Moderate"};
+            for (int severityLevel = 1; severityLevel <= severityDescriptions.length; severityLevel++) {
+                severityLevels.setInt(1, severityLevel);
+                severityLevels.setString(2, severityDescriptions[severityLevel - 1]);
+                severityLevels.addBatch();
+            }
+
+            int rows = 0;
+            for (int codex = 1; codex <= hiclCount; codex++) {
+                Set<Integer> effectsOfCode = new HashSet<>();
+                for (int effect = 1 + random.nextInt(2); effect > 0; effect--)
+                    effectsOfCode.add(1 + random.nextInt(EFFECT_COUNT));
+                for (int effect : effectsOfCode) {
+                    codeEffects.setInt(1, codex);
+                    codeEffects.setString(2, String.format("E%03d", effect));
+                    addToBatch(codeEffects, ++rows);
+                }
+            }
+
+            // Sampling with replacement is close enough for the small densities real catalogs have
+            long pairCount = Math.round(DDI_PAIR_DENSITY * hiclCount * (hiclCount - 1L) / 2);
+            Set<Long> pairs = new HashSet<>();
+            rows = 0;
+            for (long attempt = 0; attempt < pairCount; attempt++) {
+                int codex = 1 + random.nextInt(hiclCount);
+                int otherCodex = 1 + random.nextInt(hiclCount);
+                if (codex == otherCodex || !pairs.add((long) Math.min(codex, otherCodex) << 32 | Math.max(codex, otherCodex)))
+                    continue;
+                int monograph = pairs.size();
+                int severityLevel = 1 + random.nextInt(severityDescriptions.length);
+                for (int codexOfPair : new int[]{codex, otherCodex}) {
+                    monographs.setInt(1, codexOfPair);
+                    monographs.setInt(2, monograph);
+                    monographs.setString(3, "Monograph " + monograph);
+                    monographs.setInt(4, severityLevel);
+                    addToBatch(monographs, ++rows);
+                }
+            }
+            effects.executeBatch();
+            severityLevels.executeBatch();
+            codeEffects.executeBatch();
+            monographs.executeBatch();
+        }
+    }
+
+    /**
+     * Creates every table, with the columns the prescribers use. DDI_SL is only in RADIMMA5 and RADIMSL1, like FDB, so
+     * the unqualified DDI_SL in the interaction queries is not ambiguous
+     */
+    private static void createTables(Connection connection) throws SQLException {
+        String[] tables = {
+                "RICAIDC1 (DIN INT PRIMARY KEY, LN VARCHAR(100), GCN_SEQNO INT, ILBLRID INT, IADDDTE VARCHAR(8), IOBSDTE VARCHAR(8))",
+                "RLBLRCA1 (ILBLRID INT PRIMARY KEY, MFG VARCHAR(60))",
+                "RGCNSEQ4 (GCN_SEQNO INT PRIMARY KEY, HICL_SEQNO INT)",
+                "RHICL1 (HICL_SEQNO INT, HIC_SEQN INT, HIC VARCHAR(3))",
+                "RHICD5 (HIC_SEQN INT PRIMARY KEY, HIC_DESC VARCHAR(60))",
+                "RADIMGC4 (GCN_SEQNO INT, DDI_CODEX INT)",
+                "RADIMMA5 (DDI_CODEX INT, DDI_MONOX INT, DDI_DES VARCHAR(60), DDI_SL INT)",
+                "RADIMIE4 (DDI_CODEX INT, ADI_EFFTC VARCHAR(4))",
+                "RADIMEF0 (ADI_EFFTC VARCHAR(4) PRIMARY KEY, ADI_EFFTXT VARCHAR(60))",
+                "RADIMSL1 (DDI_SL INT PRIMARY KEY, DDI_SLDESC VARCHAR(60))",
+                "RDFIMGC0 (GCN_SEQNO INT, FDCDE INT)",
+                "RDFIMMA0 (FDCDE INT PRIMARY KEY, RESULT VARCHAR(100))",
+                "RDAMAGD1 (DAM_ALRGN_GRP INT PRIMARY KEY, DAM_ALRGN_GRP_DESC VARCHAR(60))",
+                "RDAMGHC0 (DAM_ALRGN_GRP INT, HIC_SEQN INT)"};
+        String[] indexes = {
+                "RICAIDC1 (LN, DIN)", "RICAIDC1 (GCN_SEQNO)", "RHICL1 (HIC_SEQN)", "RHICL1 (HICL_SEQNO)",
+                "RADIMGC4 (GCN_SEQNO)", "RADIMMA5 (DDI_CODEX)", "RADIMMA5 (DDI_MONOX)", "RADIMIE4 (DDI_CODEX)",
+                "RDFIMGC0 (GCN_SEQNO)", "RDAMGHC0 (HIC_SEQN)", "RDAMGHC0 (DAM_ALRGN_GRP)"};
+        try (Statement statement = connection.createStatement()) {
+            for (String table : tables) {
+                statement.execute("DROP TABLE IF EXISTS " + table.substring(0, table.indexOf(' ')));
+                statement.execute("CREATE TABLE " + table);
+            }
+            for (int i = 0; i < indexes.length; i++)
+                statement.execute("CREATE INDEX IX_FDB_" + i + " ON " + indexes[i]);
+        }
+    }
+
+    private static void addToBatch(PreparedStatement statement, int row) throws SQLException {
+        statement.addBatch();
+        if (row % BATCH_SIZE == 0)
+            statement.executeBatch();
+    }
+
+    private static String name(Random random, int syllableCount) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < syllableCount; i++)
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        return name.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package Prescriber;
+
+import Info.Allergy;
+import Info.Drug;
+import Info.DrugInteraction;
+import Info.Patient;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TypeaheadSessionTest {
+
+    //Answers from a few drugs and allergies, matching names the same way the SQL does
+    private static final class ListPrescriber implements Prescriber {
+        private final List<Drug> DRUGS = new ArrayList<>();
+        private final List<Allergy> ALLERGIES = new ArrayList<>();
+
+        private ListPrescriber() {
+            DRUGS.add(Drug.createFdbDrug(2244993, 1820, 4376, "ASPIRIN 81MG"));
+            DRUGS.add(Drug.createFdbDrug(2242924, 1847, 6564, "COUMADIN 1MG"));
+            DRUGS.add(Drug.createFdbDrug(2242925, 1847, 6565, "COUMADIN 2MG"));
+            DRUGS.add(Drug.createFdbDrug(2230711, 2433, 16466, "LIPITOR 10MG"));
+            ALLERGIES.add(Allergy.createFdbAllergy(900, "Penicillins"));
+            ALLERGIES.add(Allergy.createFdbAllergy(901, "Peanut"));
+            ALLERGIES.add(Allergy.createFdbAllergy(902, "Sulfonamides"));
+        }
+
+        @Override
+        public List<Drug> queryDrugs(String pattern) {
+            List<Drug> drugs = new ArrayList<>();
+            for (Drug drug : DRUGS) {
+                if (drug.getDisplayName().toUpperCase().contains(pattern.toUpperCase()))
+                    drugs.add(drug);
+            }
+            return drugs;
+        }
+
+        @Override
+        public List<Drug> queryDrugs(String pattern, int page) {
+            return queryDrugs(pattern);
+        }
+
+        @Override
+        public List<Allergy> queryAllergies(String prefix) {
+            List<Allergy> allergies = new ArrayList<>();
+            for (Allergy allergy : ALLERGIES) {
+                if (allergy.getDisplayName().toUpperCase().startsWith(prefix.toUpperCase()))
+                    allergies.add(allergy);
+            }
+            return allergies;
+        }
+
+        @Override
+        public List<DrugInteraction> findInteractions(Drug drugBeingPrescribed, Patient patient) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void prescribeDrug(Drug drug, Patient patient) {
+        }
+
+        @Override
+        public boolean closePrescriber() {
+            return true;
+        }
+    }
+
+    @Test
+    public void testRefiningADrugPatternFiltersTheLastResult() {
+        ListPrescriber prescriber = new ListPrescriber();
+        TypeaheadSession<Drug> session = TypeaheadSession.createDrugTypeaheadSession(prescriber);
+        for (String pattern : new String[]{"m", "mg", "1mg", "1MG"}) {
+            List<Drug> expected = prescriber.queryDrugs(pattern);
+            List<Drug> drugs = session.search(pattern);
+            Assert.assertEquals(drugs.size(), expected.size());
+            for (int i = 0; i < drugs.size(); i++)
+                Assert.assertEquals(drugs.get(i).getId(), expected.get(i).getId());
+        }
+        Assert.assertEquals(session.getQueryCount(), 1);
+    }
+
+    @Test
+    public void testAllergiesOnlyRefineByPrefix() {
+        TypeaheadSession<Allergy> session = TypeaheadSession.createAllergyTypeaheadSession(new ListPrescriber());
+        Assert.assertEquals(session.search("pe").size(), 2);
+        Assert.assertEquals(session.search("pen").size(), 1);
+        Assert.assertEquals(session.getQueryCount(), 1);
+        //"en" is contained in "pen" but does not start with it, so it is queried
+        Assert.assertEquals(session.search("en").size(), 0);
+        Assert.assertEquals(session.getQueryCount(), 2);
+    }
+
+    @Test
+    public void testPatternsRefiningAnEmptyPatternAreNotQueried() {
+        TypeaheadSession<Drug> session = TypeaheadSession.createDrugTypeaheadSession(new ListPrescriber());
+        Assert.assertEquals(session.search("xyz").size(), 0);
+        Assert.assertEquals(session.search("aspirin").size(), 1);
+        Assert.assertEquals(session.search("axyzb").size(), 0);
+        Assert.assertEquals(session.getQueryCount(), 2);
+    }
+
+    @Test
+    public void testWildcardsAndResetAlwaysQuery() {
+        TypeaheadSession<Drug> session = TypeaheadSession.createDrugTypeaheadSession(new ListPrescriber());
+        session.search("mg");
+        session.search("mg%");
+        Assert.assertEquals(session.getQueryCount(), 2);
+        session.search("mg");
+        session.reset();
+        session.search("1mg");
+        Assert.assertEquals(session.getQueryCount(), 4);
+    }
+}